@@ -0,0 +1,40 @@
+package bguspl.set;
+
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates the environments of the benchmarks: no logging and no user interface.
+ */
+public final class BenchmarkEnv {
+
+    private BenchmarkEnv() {
+    }
+
+    /**
+     * @param ui         - the user interface (e.g. a tee of no user interfaces).
+     * @param listener   - the game listener.
+     * @param properties - pairs of property names and values that override the defaults.
+     * @return - an environment on the system clock.
+     */
+    public static Env create(UserInterface ui, GameListener listener, String... properties) {
+        Properties props = new Properties();
+        props.setProperty("LogLevel", "OFF");
+        for (int i = 0; i + 1 < properties.length; i += 2)
+            props.setProperty(properties[i], properties[i + 1]);
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.OFF);
+        Config config = new Config(logger, props);
+        return new Env(logger, config, ui, new UtilImpl(config), listener);
+    }
+
+    /**
+     * @param properties - pairs of property names and values that override the defaults.
+     * @return - an environment without a user interface or listener.
+     */
+    public static Env create(String... properties) {
+        return create(UserInterface.NONE, GameListener.NONE, properties);
+    }
+}
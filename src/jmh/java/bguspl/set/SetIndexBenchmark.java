@@ -0,0 +1,85 @@
+package bguspl.set;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The card completing a pair of cards: looked up in a mapped set index or computed feature by feature.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SetIndexBenchmark {
+
+    /**
+     * The number of features (of 3 choices each): 81 cards (an index of 6 KB) and 6561 cards (an index of 41 MB).
+     */
+    @Param({"4", "8"})
+    public int featureCount;
+
+    /**
+     * The number of prepared pairs (a power of 2), cycled through.
+     */
+    private static final int SAMPLES = 1024;
+
+    private Path file;
+    private SetIndex index;
+    private int[] firsts;
+    private int[] seconds;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        Env env = BenchmarkEnv.create("FeatureCount", Integer.toString(featureCount));
+        file = Files.createTempFile("set-index", ".seti");
+        SetIndex.generate(file, featureCount);
+        index = SetIndex.open(file, env.config);
+        Random random = new Random(0);
+        firsts = new int[SAMPLES];
+        seconds = new int[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            firsts[i] = random.nextInt(env.config.deckSize);
+            do seconds[i] = random.nextInt(env.config.deckSize); while (seconds[i] == firsts[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private int nextSample() {
+        return next++ & (SAMPLES - 1);
+    }
+
+    @Benchmark
+    public int mapped() {
+        int i = nextSample();
+        return index.third(firsts[i], seconds[i]);
+    }
+
+    @Benchmark
+    public int arithmetic() {
+        int i = nextSample();
+        return SetIndex.third(firsts[i], seconds[i], featureCount);
+    }
+}
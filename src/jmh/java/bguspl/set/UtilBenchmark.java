@@ -0,0 +1,92 @@
+package bguspl.set;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The set engine: checking, finding and decoding sets on decks of different shapes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilBenchmark {
+
+    /**
+     * The deck variant: feature size x feature count (3x4 is the standard 81 card deck).
+     */
+    @Param({"3x4", "3x5", "4x4"})
+    public String deck;
+
+    /**
+     * The number of prepared hands and tables (a power of 2), cycled through so that branches are not predicted.
+     */
+    private static final int SAMPLES = 1024;
+
+    private Util util;
+    private int[][] hands;
+    private List<List<Integer>> tables;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        String[] shape = deck.split("x");
+        Env env = BenchmarkEnv.create("FeatureSize", shape[0], "FeatureCount", shape[1]);
+        util = env.util;
+        Random random = new Random(0);
+        hands = new int[SAMPLES][];
+        tables = new ArrayList<>(SAMPLES);
+        for (int i = 0; i < SAMPLES; i++) {
+            List<Integer> table = new ArrayList<>();
+            while (table.size() < env.config.tableSize) {
+                int card = random.nextInt(env.config.deckSize);
+                if (!table.contains(card)) table.add(card);
+            }
+            tables.add(table);
+            // every other hand is a legal set, the rest are (mostly) not
+            List<int[]> sets = util.findSets(table, 1);
+            hands[i] = i % 2 == 0 && !sets.isEmpty() ? sets.get(0)
+                    : table.subList(0, env.config.featureSize).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private int nextSample() {
+        return next++ & (SAMPLES - 1);
+    }
+
+    @Benchmark
+    public boolean testSet() {
+        return util.testSet(hands[nextSample()]);
+    }
+
+    @Benchmark
+    public int[][] cardsToFeatures() {
+        return util.cardsToFeatures(hands[nextSample()]);
+    }
+
+    @Benchmark
+    public List<int[]> findFirstSet() {
+        return util.findSets(tables.get(nextSample()), 1);
+    }
+
+    @Benchmark
+    public List<int[]> findAllSets() {
+        return util.findSets(tables.get(nextSample()), Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,187 @@
+package bguspl.set.ex;
+
+import bguspl.set.BenchmarkEnv;
+import bguspl.set.Env;
+import bguspl.set.GameListener;
+import bguspl.set.UserInterfaceTee;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The claim pipeline: a human player presses the keys of a legal set and the benchmark waits for the dealer's
+ * verdict. The game runs on the system clock with no table delay and no freeze, so the measured time is the hand-off
+ * between the player and dealer threads plus the check itself. Waiting for the table to be refilled (and starting a
+ * new game when the table has no set) is not measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClaimBenchmark {
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    private GameProbe game;
+    private int[] set;
+
+    /**
+     * The games that were replaced by new ones (the dealer may take a while to finish).
+     */
+    private final List<GameProbe> finished = new ArrayList<>();
+
+    /**
+     * A game with a single human player, observed through its user interface and listener.
+     */
+    private static class GameProbe extends UserInterfaceTee implements GameListener {
+
+        final Env env;
+        final Table table;
+        final Dealer dealer;
+        final Player player;
+        final Thread dealerThread;
+
+        // guarded by this
+        final Integer[] slotToCard;
+        int cards;
+        int placed;
+        int removed;
+        int verdicts;
+        int legalVerdicts;
+        int unfreezes;
+
+        GameProbe() {
+            env = BenchmarkEnv.create(this, this, "HumanPlayers", "1", "ComputerPlayers", "0",
+                    "TableDelaySeconds", "0", "PointFreezeSeconds", "0", "PenaltyFreezeSeconds", "0",
+                    "TurnTimeoutSeconds", "3600");
+            slotToCard = new Integer[env.config.tableSize];
+            table = new Table(env);
+            Player[] players = new Player[1];
+            dealer = new Dealer(env, table, players);
+            player = players[0] = new Player(env, dealer, table, 0, true);
+            dealerThread = new Thread(dealer, "dealer");
+            dealerThread.start();
+        }
+
+        @Override
+        public synchronized void placeCard(int card, int slot) {
+            slotToCard[slot] = card;
+            cards++;
+            placed++;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void removeCard(int slot) {
+            slotToCard[slot] = null;
+            cards--;
+            removed++;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void setFreeze(int player, long millis) {
+            if (millis == 0) unfreezes++;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void claimResolved(int player, boolean legal) {
+            verdicts++;
+            if (legal) legalVerdicts++;
+            notifyAll();
+        }
+
+        private void await(long deadline) throws InterruptedException {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) throw new IllegalStateException("the game did not respond");
+            wait(left);
+        }
+
+        /**
+         * Waits until the table is refilled and the player accepts keys again.
+         *
+         * @return - the slots of a legal set on the table, or null if there is none.
+         */
+        synchronized int[] awaitSet() throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (removed < legalVerdicts * env.config.featureSize || unfreezes < verdicts
+                    || cards < env.config.tableSize && placed < env.config.deckSize)
+                await(deadline);
+            while (player.isFrozen() || dealer.dealerActive) {
+                wait(1);
+                if (System.currentTimeMillis() > deadline) throw new IllegalStateException("the player is frozen");
+            }
+            List<Integer> cardsOnTable = new ArrayList<>();
+            for (Integer card : slotToCard)
+                if (card != null) cardsOnTable.add(card);
+            List<int[]> sets = env.util.findSets(cardsOnTable, 1);
+            if (sets.isEmpty()) return null;
+            int[] slots = new int[env.config.featureSize];
+            for (int i = 0; i < slots.length; i++)
+                for (int slot = 0; slot < slotToCard.length; slot++)
+                    if (slotToCard[slot] != null && slotToCard[slot] == sets.get(0)[i]) slots[i] = slot;
+            return slots;
+        }
+
+        synchronized void awaitVerdict(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (verdicts < count)
+                await(deadline);
+        }
+
+        synchronized int verdicts() {
+            return verdicts;
+        }
+
+        void terminate() {
+            dealer.terminate();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void prepare() throws InterruptedException {
+        if (game == null) game = new GameProbe();
+        set = game.awaitSet();
+        while (set == null) {
+            game.terminate();
+            finished.add(game);
+            game = new GameProbe();
+            set = game.awaitSet();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        if (game != null) {
+            game.terminate();
+            finished.add(game);
+        }
+        for (GameProbe probe : finished)
+            probe.dealerThread.join();
+        finished.clear();
+    }
+
+    @Benchmark
+    public void claimLegalSet() throws InterruptedException {
+        int verdicts = game.verdicts();
+        for (int slot : set)
+            game.player.keyPressed(slot);
+        game.awaitVerdict(verdicts + 1);
+    }
+}
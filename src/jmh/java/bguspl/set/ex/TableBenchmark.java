@@ -0,0 +1,103 @@
+package bguspl.set.ex;
+
+import bguspl.set.BenchmarkEnv;
+import bguspl.set.Env;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Token operations on a full table, alone and with several players (threads) pressing keys at the same time.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TableBenchmark {
+
+    private Env env;
+    private Table table;
+    private final AtomicInteger players = new AtomicInteger();
+
+    @Setup
+    public void setUp() {
+        env = BenchmarkEnv.create("TableDelaySeconds", "0");
+        table = new Table(env);
+        for (int slot = 0; slot < env.config.tableSize; slot++)
+            table.placeCard(slot, slot);
+    }
+
+    /**
+     * A player of the benchmark: its id and the slot it presses next.
+     */
+    @State(Scope.Thread)
+    public static class Presser {
+
+        int id = -1;
+        int slot;
+
+        int id(TableBenchmark benchmark) {
+            if (id < 0) {
+                id = benchmark.players.getAndIncrement();
+                slot = id;
+            }
+            return id;
+        }
+
+        int nextSlot(int tableSize) {
+            slot = (slot + 1) % tableSize;
+            return slot;
+        }
+    }
+
+    private boolean toggle(Presser presser) {
+        int player = presser.id(this);
+        int slot = presser.nextSlot(env.config.tableSize);
+        table.placeToken(player, slot);
+        return table.removeToken(player, slot);
+    }
+
+    private int[] tokens(Presser presser) {
+        return table.getPlayerTokens(false, presser.id(this));
+    }
+
+    @Benchmark
+    @Group("placeAndRemoveToken")
+    public boolean placeAndRemoveToken(Presser presser) {
+        return toggle(presser);
+    }
+
+    @Benchmark
+    @Group("getPlayerTokens")
+    public int[] getPlayerTokens(Presser presser) {
+        return tokens(presser);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public boolean contendedPlaceAndRemoveToken(Presser presser) {
+        return toggle(presser);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public int[] contendedGetPlayerTokens(Presser presser) {
+        return tokens(presser);
+    }
+}
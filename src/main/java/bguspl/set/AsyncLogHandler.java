@@ -0,0 +1,289 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * A log handler that never formats or does I/O on the calling thread.
+ * Records are put in a lock-free ring buffer (templated records are stored as primitives, so logging them does not
+ * allocate) and a background thread writes them in batches to a binary log file. Use the LogDecoder to turn the
+ * file into the text format of the regular log.
+ */
+public class AsyncLogHandler extends Handler {
+
+    /**
+     * The log file header (magic number and format version).
+     */
+    static final int MAGIC = 0x5345544c; // "SETL"
+    static final int VERSION = 1;
+
+    /**
+     * Record kinds in the log file.
+     */
+    static final byte TEMPLATE_RECORD = 1;
+    static final byte TEXT_RECORD = 2;
+    static final byte FORMAT_RECORD = 3;
+
+    private static final int TEXT = -1;
+    private static final int FORMAT = -2;
+
+    private static final int BATCH_BYTES = 1 << 16;
+    private static final long IDLE_PARK_NANOS = 1_000_000L;
+
+    private final FileChannel channel;
+    private final ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_BYTES);
+
+    /**
+     * The ring buffer slots (kept as parallel primitive arrays).
+     */
+    private final int mask;
+    private final long[] times;
+    private final int[] levels;
+    private final int[] templates; // template ordinal, or TEXT / FORMAT
+    private final int[] argCounts;
+    private final long[] args;
+    private final String[] texts;
+
+    /**
+     * The sequence number published in each slot (-1 if none yet).
+     */
+    private final AtomicLongArray published;
+
+    /**
+     * The next sequence number to be claimed by a producer.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * The next sequence number to be written by the writer thread.
+     */
+    private volatile long tail;
+
+    private volatile boolean closed;
+    private final Thread writer;
+
+    /**
+     * @param file     - the binary log file to create.
+     * @param capacity - the number of records the ring buffer can hold (rounded up to a power of 2).
+     * @throws IOException - if the file cannot be created.
+     */
+    public AsyncLogHandler(Path file, int capacity) throws IOException {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        times = new long[size];
+        levels = new int[size];
+        templates = new int[size];
+        argCounts = new int[size];
+        args = new long[size * LogTemplate.MAX_ARGS];
+        texts = new String[size];
+        published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++)
+            published.set(i, -1);
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        batch.putInt(MAGIC).putInt(VERSION);
+
+        writer = new Thread(this::drainLoop, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Finds the asynchronous handler of a logger.
+     *
+     * @param logger - the logger.
+     * @return - the first AsyncLogHandler of the logger, or null if it has none.
+     */
+    public static AsyncLogHandler of(Logger logger) {
+        Handler[] handlers = logger.getHandlers();
+        if (handlers != null)
+            for (Handler handler : handlers)
+                if (handler instanceof AsyncLogHandler)
+                    return (AsyncLogHandler) handler;
+        return null;
+    }
+
+    /**
+     * Claims the next ring slot, waiting for the writer if the ring is full.
+     */
+    private long claim() {
+        long sequence = head.getAndIncrement();
+        while (sequence - tail > mask) {
+            if (closed) return -1;
+            Thread.yield();
+        }
+        return sequence;
+    }
+
+    /**
+     * Logs a templated record (the caller is expected to have checked the level already).
+     *
+     * @param level    - the record level.
+     * @param template - the message template.
+     * @param count    - the number of arguments used.
+     * @param arg0     - the first argument.
+     * @param arg1     - the second argument.
+     * @param arg2     - the third argument.
+     */
+    public void publish(Level level, LogTemplate template, int count, long arg0, long arg1, long arg2) {
+        long sequence = claim();
+        if (sequence < 0) return;
+        int slot = (int) sequence & mask;
+        times[slot] = System.currentTimeMillis();
+        levels[slot] = level.intValue();
+        templates[slot] = template.ordinal();
+        argCounts[slot] = count;
+        int base = slot * LogTemplate.MAX_ARGS;
+        args[base] = arg0;
+        args[base + 1] = arg1;
+        args[base + 2] = arg2;
+        published.lazySet(slot, sequence);
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) return;
+        publishText(TEXT, record.getMillis(), record.getLevel().intValue(), record.getMessage());
+    }
+
+    private void publishText(int kind, long millis, int level, String text) {
+        long sequence = claim();
+        if (sequence < 0) return;
+        int slot = (int) sequence & mask;
+        times[slot] = millis;
+        levels[slot] = level;
+        templates[slot] = kind;
+        texts[slot] = text;
+        published.lazySet(slot, sequence);
+    }
+
+    /**
+     * Sets the text format the decoder should use for the records that follow.
+     *
+     * @param format - a java.util.Formatter format with the time, level name and message as arguments.
+     */
+    public void setTextFormat(String format) {
+        publishText(FORMAT, 0, 0, format);
+    }
+
+    /**
+     * Writes every record published so far to the file.
+     */
+    @Override
+    public void flush() {
+        long target = head.get();
+        while (tail < target && writer.isAlive())
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.FLUSH_FAILURE);
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        closed = true;
+        try {
+            writer.join();
+            channel.close();
+        } catch (InterruptedException ignored) {
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+
+    private void drainLoop() {
+        boolean stopping;
+        do {
+            stopping = closed;
+            if (drain() == 0 && !stopping)
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        } while (!stopping);
+    }
+
+    /**
+     * Encodes all the consecutive published records and writes them to the file in one batch.
+     *
+     * @return - the number of records written.
+     */
+    private int drain() {
+        long next = tail;
+        int slot = (int) next & mask;
+        while (published.get(slot) == next) {
+            encode(slot);
+            texts[slot] = null;
+            slot = (int) ++next & mask;
+        }
+        if (batch.position() > 0)
+            write();
+        int drained = (int) (next - tail);
+        tail = next;
+        return drained;
+    }
+
+    private void encode(int slot) {
+        if (templates[slot] >= 0) {
+            int count = argCounts[slot];
+            ensureRoom(1 + 8 + 4 + 2 + 1 + 8 * count);
+            batch.put(TEMPLATE_RECORD).putLong(times[slot]).putInt(levels[slot])
+                    .putShort((short) templates[slot]).put((byte) count);
+            int base = slot * LogTemplate.MAX_ARGS;
+            for (int i = 0; i < count; i++)
+                batch.putLong(args[base + i]);
+        } else {
+            byte[] text = String.valueOf(texts[slot]).getBytes(StandardCharsets.UTF_8);
+            boolean format = templates[slot] == FORMAT;
+            int header = format ? 1 + 4 : 1 + 8 + 4 + 4;
+            ensureRoom(header);
+            if (format) {
+                batch.put(FORMAT_RECORD).putInt(text.length);
+            } else {
+                batch.put(TEXT_RECORD).putLong(times[slot]).putInt(levels[slot]).putInt(text.length);
+            }
+            if (batch.remaining() < text.length) {
+                write();
+                if (text.length > batch.capacity()) {
+                    writeFully(ByteBuffer.wrap(text));
+                    return;
+                }
+            }
+            batch.put(text);
+        }
+    }
+
+    private void ensureRoom(int bytes) {
+        if (batch.remaining() < bytes)
+            write();
+    }
+
+    private void write() {
+        batch.flip();
+        writeFully(batch);
+        batch.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer) {
+        try {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+            buffer.position(buffer.limit());
+        }
+    }
+
+}
@@ -0,0 +1,268 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
+
+/**
+ * Lets bot processes play the human players over TCP (loopback only).
+ * A bot is a spectator (it gets the table snapshot and deltas, see SpectatorServer) that authenticates as one of the
+ * human players and then sends its key presses in batches. The key presses are fed to the player by a thread per
+ * bot, so a bot that presses faster than its player takes the keys is not read from until the player catches up
+ * (the bot's writes then block in its own process, not in the game).
+ * Messages from the bot (big-endian):
+ * AUTH: byte 1, short player, short length, byte[length] secret (UTF-8, see the BotSecret property)
+ * KEYS: byte 2, short count, short[count] slots (1 to MAX_BATCH key presses, only after AUTH)
+ * Messages to the bot, in addition to the spectator messages:
+ * AUTHENTICATED: byte 9, short player
+ * VERDICTS: byte 10, short player, int legal, int illegal (the totals of the player's checked claims so far)
+ * A bot that sends anything else, or fails to authenticate, is disconnected. See ReferenceBot for a bot.
+ */
+public class BotGateway extends SpectatorServer implements GameListener {
+
+    static final byte AUTH = 1;
+    static final byte KEYS = 2;
+    static final byte AUTHENTICATED = 9;
+    static final byte VERDICTS = 10;
+
+    /**
+     * The largest number of key presses in a KEYS message, and the longest secret.
+     */
+    public static final int MAX_BATCH = 64;
+    public static final int MAX_SECRET = 256;
+
+    /**
+     * The number of key presses of a bot that are buffered before the gateway stops reading from it.
+     */
+    private static final int PENDING_KEYS = 2 * MAX_BATCH;
+
+    private final Player[] players;
+    private final byte[] secret;
+
+    /**
+     * The bot playing each player, and the totals of the checked claims of each player.
+     */
+    private final AtomicReferenceArray<Bot> seats;
+    private final AtomicIntegerArray legal;
+    private final AtomicIntegerArray illegal;
+
+    /**
+     * @param logger  - the logger.
+     * @param config  - the game configuration.
+     * @param port    - the loopback port to listen on (0 for any free port).
+     * @param players - the players (the bots play the human ones; filled in by the game).
+     * @throws IOException - if the server socket cannot be opened.
+     */
+    public BotGateway(Logger logger, Config config, int port, Player[] players) throws IOException {
+        super(logger, config, port, 3 + 11, "bot-gateway");
+        this.players = players;
+        this.secret = config.botSecret.getBytes(StandardCharsets.UTF_8);
+        seats = new AtomicReferenceArray<>(config.players);
+        legal = new AtomicIntegerArray(config.players);
+        illegal = new AtomicIntegerArray(config.players);
+        start();
+    }
+
+    /**
+     * A connected bot: its unparsed input, the key presses not yet fed to its player and what was last sent to it.
+     */
+    private class Bot extends Client implements Runnable {
+
+        private final ByteBuffer in = ByteBuffer.allocate(Math.max(5 + MAX_SECRET, 3 + 2 * MAX_BATCH));
+        private SelectionKey key;
+        private volatile int player = -1;
+        private boolean acknowledged;
+        private int sentLegal = -1;
+        private int sentIllegal = -1;
+
+        // the ring of key presses (guarded by this), and whether reading stopped for lack of room in it
+        private final int[] keys = new int[PENDING_KEYS];
+        private int keysHead;
+        private int keysCount;
+        private boolean stalled;
+        private boolean closed;
+
+        private Bot(SocketChannel channel) {
+            super(channel);
+        }
+
+        @Override
+        protected boolean pending() {
+            int player = this.player;
+            return player >= 0 && (!acknowledged || legal.get(player) != sentLegal
+                    || illegal.get(player) != sentIllegal);
+        }
+
+        @Override
+        protected void frame(ByteBuffer out) {
+            int player = this.player;
+            if (player < 0) return;
+            if (!acknowledged) {
+                out.put(AUTHENTICATED).putShort((short) player);
+                acknowledged = true;
+            }
+            int legalClaims = legal.get(player);
+            int illegalClaims = illegal.get(player);
+            if (legalClaims != sentLegal || illegalClaims != sentIllegal) {
+                out.put(VERDICTS).putShort((short) player).putInt(legalClaims).putInt(illegalClaims);
+                sentLegal = legalClaims;
+                sentIllegal = illegalClaims;
+            }
+        }
+
+        @Override
+        protected void closed() {
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+            if (player >= 0 && seats.compareAndSet(player, this, null))
+                logger.info("bot of player " + (player + 1) + " disconnected");
+        }
+
+        /**
+         * Parses the complete messages in the input buffer (as long as their key presses fit in the ring).
+         *
+         * @return - false iff the bot broke the protocol.
+         */
+        private synchronized boolean parse() {
+            in.flip();
+            try {
+                while (in.hasRemaining()) {
+                    int start = in.position();
+                    byte type = in.get(start);
+                    if (type == AUTH) {
+                        if (player >= 0) return false;
+                        if (in.remaining() < 5) break;
+                        int seat = in.getShort(start + 1);
+                        int length = in.getShort(start + 3);
+                        if (length < 0 || length > MAX_SECRET) return false;
+                        if (in.remaining() < 5 + length) break;
+                        byte[] given = new byte[length];
+                        in.position(start + 5);
+                        in.get(given);
+                        if (!authenticate(seat, given)) return false;
+                    } else if (type == KEYS) {
+                        if (player < 0) return false;
+                        if (in.remaining() < 3) break;
+                        int count = in.getShort(start + 1);
+                        if (count < 1 || count > MAX_BATCH) return false;
+                        if (in.remaining() < 3 + 2 * count) break;
+                        if (keys.length - keysCount < count) { // read on once the player took some keys
+                            stalled = true;
+                            break;
+                        }
+                        in.position(start + 3);
+                        for (int i = 0; i < count; i++) {
+                            int slot = in.getShort();
+                            if (slot < 0 || slot >= config.tableSize) return false;
+                            keys[(keysHead + keysCount++) % keys.length] = slot;
+                        }
+                        notifyAll();
+                    } else {
+                        return false;
+                    }
+                }
+                return true;
+            } finally {
+                in.compact();
+            }
+        }
+
+        private boolean authenticate(int seat, byte[] given) {
+            if (seat < 0 || seat >= config.humanPlayers || !MessageDigest.isEqual(secret, given)
+                    || !seats.compareAndSet(seat, null, this)) {
+                logger.warning("bot authentication for player " + (seat + 1) + " refused");
+                return false;
+            }
+            player = seat;
+            Thread feeder = new Thread(this, "bot-" + seat);
+            feeder.setDaemon(true);
+            feeder.start();
+            logger.info("bot authenticated as player " + (seat + 1));
+            return true;
+        }
+
+        /**
+         * Feeds the key presses to the player.
+         */
+        @Override
+        public void run() {
+            while (true) {
+                int slot;
+                synchronized (this) {
+                    while (!closed && keysCount == 0)
+                        try {
+                            wait();
+                        } catch (InterruptedException ignored) {
+                        }
+                    if (closed) return;
+                    slot = keys[keysHead];
+                    keysHead = (keysHead + 1) % keys.length;
+                    keysCount--;
+                    if (stalled && keys.length - keysCount >= MAX_BATCH)
+                        resume();
+                }
+                Player target = players[player];
+                if (target != null) // the game did not start yet otherwise
+                    target.keyPressed(slot); // waits while the player's queue of keys is full
+            }
+        }
+
+        /**
+         * Parses the messages that did not fit and reads from the bot again (called by the feeder thread).
+         */
+        private void resume() {
+            stalled = false;
+            if (!parse()) {
+                close(key); // frees the seat and ends this thread (closing a key is safe from any thread)
+                return;
+            }
+            if (!stalled && key.isValid()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+                selector.wakeup();
+            }
+        }
+    }
+
+    @Override
+    protected Client accepted(SocketChannel channel) {
+        return new Bot(channel);
+    }
+
+    @Override
+    protected void read(SelectionKey key) {
+        Bot bot = (Bot) key.attachment();
+        bot.key = key;
+        try {
+            synchronized (bot) {
+                if (bot.channel.read(bot.in) < 0) {
+                    close(key);
+                    return;
+                }
+                if (!bot.parse()) {
+                    close(key);
+                    return;
+                }
+                if (bot.stalled)
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            }
+        } catch (IOException e) {
+            close(key);
+        }
+    }
+
+    @Override
+    public void claimResolved(int player, boolean legal) {
+        if (legal) this.legal.incrementAndGet(player);
+        else illegal.incrementAndGet(player);
+    }
+}
@@ -0,0 +1,197 @@
+package bguspl.set;
+
+import javax.swing.ImageIcon;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Polygon;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Provides the images of the cards: the card image resources where there are any (the standard deck), otherwise a
+ * drawing of the card's features. The images are kept in a bounded LRU cache, so the memory used does not depend on
+ * the deck size.
+ * The features are drawn as: the number of shapes, their color, their shape, their shading and (for decks with more
+ * than 4 features) a row of small marks per extra feature at the bottom of the card.
+ */
+class CardRenderer {
+
+    private static final Color[] COLORS = {new Color(0xD0021B), new Color(0x1E8C2E), new Color(0x6A1B9A)};
+
+    private final Config config;
+    private final Util util;
+    private final Map<Integer, Image> cache;
+
+    /**
+     * @param config - the game configuration (deck shape, cell size and cache size).
+     */
+    CardRenderer(Config config) {
+        this.config = config;
+        this.util = new UtilImpl(config);
+        int capacity = Math.max(config.cardCacheSize, config.tableSize);
+        cache = new LinkedHashMap<Integer, Image>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Image> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @param card - the card id.
+     * @return - the image of the card.
+     */
+    synchronized Image image(int card) {
+        Image image = cache.get(card);
+        if (image == null) {
+            image = config.proceduralCards ? null : loadImage(card);
+            if (image == null) image = render(card);
+            cache.put(card, image);
+        }
+        return image;
+    }
+
+    /**
+     * @return - the number of cached images.
+     */
+    synchronized int cached() {
+        return cache.size();
+    }
+
+    private Image loadImage(int card) {
+        if (config.featureSize >= 10) return null; // the file names have a digit per feature
+        String name = "cards/" + UserInterfaceSwing.intInBaseToPaddedString(card, config.featureCount, config.featureSize) + ".png";
+        URL resource = getClass().getClassLoader().getResource(name);
+        return resource == null ? null : new ImageIcon(resource).getImage();
+    }
+
+    /**
+     * Draws a card from its features.
+     *
+     * @param card - the card id.
+     * @return - an image of the size of a table cell.
+     */
+    BufferedImage render(int card) {
+        int[] features = util.cardToFeatures(card);
+        int width = config.cellWidth, height = config.cellHeight;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        int margin = Math.max(2, Math.min(width, height) / 20);
+        Shape face = new RoundRectangle2D.Double(margin, margin, width - 2 * margin, height - 2 * margin, 4 * margin, 4 * margin);
+        g.setColor(Color.WHITE);
+        g.fill(face);
+        g.setColor(Color.GRAY);
+        g.draw(face);
+
+        int count = features.length > 0 ? features[0] + 1 : 1;
+        Color color = color(features.length > 1 ? features[1] : 0);
+        int shape = features.length > 2 ? features[2] : 0;
+        int shading = features.length > 3 ? features[3] : 0;
+
+        // the shapes side by side, centered (leaving room for the marks of the extra features)
+        int marksHeight = features.length > 4 ? height / 8 : 0;
+        double slot = (width - 4.0 * margin) / Math.max(count, config.featureSize);
+        double shapeWidth = slot * 0.7;
+        double shapeHeight = Math.min((height - 4.0 * margin - marksHeight) * 0.8, shapeWidth * 2.2);
+        double left = (width - slot * count) / 2 + (slot - shapeWidth) / 2;
+        double top = (height - marksHeight - shapeHeight) / 2;
+        g.setStroke(new BasicStroke(Math.max(1.5f, (float) shapeWidth / 20)));
+        for (int i = 0; i < count; i++) {
+            Shape outline = shape(shape, left + i * slot, top, shapeWidth, shapeHeight);
+            shade(g, outline, shading, color);
+        }
+
+        // one row of small marks (value + 1 of them) per extra feature
+        double markSize = marksHeight * 0.6;
+        for (int feature = 4; feature < features.length; feature++) {
+            double y = height - 2 * margin - marksHeight + (marksHeight - markSize) / 2;
+            double x = 2 * margin + (feature - 4) * (markSize * (config.featureSize + 1));
+            g.setColor(color(feature - 4));
+            for (int i = 0; i <= features[feature]; i++)
+                g.fill(new Ellipse2D.Double(x + i * markSize, y, markSize * 0.8, markSize * 0.8));
+        }
+        g.dispose();
+        return image;
+    }
+
+    private Color color(int value) {
+        if (value < COLORS.length) return COLORS[value];
+        return Color.getHSBColor((float) value / config.featureSize, 0.8f, 0.75f);
+    }
+
+    /**
+     * @return - an oval, a diamond, a squiggle, or (for more values) a polygon with value sides.
+     */
+    private static Shape shape(int value, double x, double y, double width, double height) {
+        switch (value) {
+            case 0:
+                return new RoundRectangle2D.Double(x, y, width, height, width, width);
+            case 1: {
+                GeneralPath diamond = new GeneralPath();
+                diamond.moveTo(x + width / 2, y);
+                diamond.lineTo(x + width, y + height / 2);
+                diamond.lineTo(x + width / 2, y + height);
+                diamond.lineTo(x, y + height / 2);
+                diamond.closePath();
+                return diamond;
+            }
+            case 2: {
+                GeneralPath squiggle = new GeneralPath();
+                squiggle.moveTo(x + width * 0.2, y);
+                squiggle.curveTo(x + width * 1.1, y, x + width * 0.5, y + height * 0.5, x + width, y + height);
+                squiggle.curveTo(x - width * 0.1, y + height, x + width * 0.5, y + height * 0.5, x, y);
+                squiggle.closePath();
+                return squiggle;
+            }
+            default: {
+                Polygon polygon = new Polygon();
+                for (int i = 0; i < value; i++) {
+                    double angle = 2 * Math.PI * i / value - Math.PI / 2;
+                    polygon.addPoint((int) Math.round(x + width / 2 + Math.cos(angle) * width / 2),
+                            (int) Math.round(y + height / 2 + Math.sin(angle) * height / 2));
+                }
+                return polygon;
+            }
+        }
+    }
+
+    /**
+     * Fills a shape: solid, striped, empty, or (for more values) increasingly transparent.
+     */
+    private static void shade(Graphics2D g, Shape outline, int shading, Color color) {
+        g.setColor(color);
+        switch (shading) {
+            case 0:
+                g.fill(outline);
+                break;
+            case 1: {
+                Shape clip = g.getClip();
+                g.clip(outline);
+                Rectangle2D bounds = outline.getBounds2D();
+                for (double y = bounds.getY(); y < bounds.getMaxY(); y += 4)
+                    g.fill(new Rectangle2D.Double(bounds.getX(), y, bounds.getWidth(), 1.5));
+                g.setClip(clip);
+                break;
+            }
+            case 2:
+                break;
+            default:
+                g.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), Math.max(24, 160 - 32 * (shading - 3))));
+                g.fill(outline);
+                g.setColor(color);
+        }
+        g.draw(outline);
+    }
+}
@@ -0,0 +1,56 @@
+package bguspl.set;
+
+/**
+ * The source of time for the game. All the timing of the game (reading the time, sleeping and timed waits) goes
+ * through the clock, so the game can run either in real time (SystemClock) or in simulated time (VirtualClock).
+ */
+public interface Clock {
+
+    /**
+     * @return - the current time in milliseconds.
+     */
+    long currentTimeMillis();
+
+    /**
+     * Sleeps for the specified time.
+     * @param millis - the time to sleep in milliseconds (nothing is done if millis <= 0).
+     * @throws InterruptedException - if the thread was interrupted while sleeping.
+     */
+    void sleep(long millis) throws InterruptedException;
+
+    /**
+     * Waits on a monitor held by the caller (like Object.wait) until it is signaled, the time elapses or the thread is
+     * interrupted. As with Object.wait, spurious wake-ups are possible and the condition should be checked in a loop.
+     * @param monitor - the monitor to wait on.
+     * @param millis  - the maximal time to wait in milliseconds (if millis <= 0, waits until signaled).
+     * @throws InterruptedException - if the thread was interrupted while waiting.
+     */
+    void await(Object monitor, long millis) throws InterruptedException;
+
+    /**
+     * Wakes up all the threads waiting on a monitor held by the caller (like Object.notifyAll).
+     * @param monitor - the monitor.
+     */
+    void signalAll(Object monitor);
+
+    /**
+     * Waits for a thread to end (like Thread.join), e.g. a game thread waiting for another one.
+     * @param thread - the thread.
+     * @param millis - the maximal time to wait in milliseconds (if millis <= 0, waits until the thread ends).
+     * @throws InterruptedException - if the calling thread was interrupted while waiting.
+     */
+    void join(Thread thread, long millis) throws InterruptedException;
+
+    /**
+     * Interrupts a thread (like Thread.interrupt), ending its wait in the clock.
+     * @param thread - the thread.
+     */
+    void interrupt(Thread thread);
+
+    /**
+     * Registers a game thread with the clock. Must be called before the thread is started.
+     * @param task - the code the thread will run.
+     * @return - the code the thread should run instead.
+     */
+    Runnable track(Runnable task);
+}
@@ -0,0 +1,415 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+
+/**
+ * Exports what happens in games (every board state, token action, claim and verdict) for offline analysis, e.g.
+ * training and evaluating strategies, into a columnar file (see ColumnarReader): a row per event, in fixed-width
+ * primitive columns that are compressed chunk by chunk.
+ * Every game records through a Recorder of its own (a user interface and a game listener), which fills a chunk of
+ * columns in memory; full chunks are compressed by a few writer threads (each with its own deflater) and appended to
+ * the file through a single buffered channel. A recorder waits for the writers when they fall QUEUE_CHUNKS chunks
+ * behind, so it must not run on the game threads (add it to a UserInterfaceBus as a growing sink); only the rows of
+ * games still recording when the exporter is closed are dropped (and counted in the file).
+ * File layout (big-endian): int magic, int version, int column count, then per column its name (a UTF string) and
+ * width in bytes; the chunks, each an int row count, an int compressed size per column and then the deflated values
+ * of every column in turn; the chunk index (per chunk its file offset, row count and game); and the trailer: long
+ * dropped rows, int chunk count, long index offset and int magic.
+ * Columns: game (long), time (long, game clock), type (byte, see the row types), player (short), slot (short),
+ * legal (byte, of verdicts) and card0..cardN (short, N + 1 = the larger of the table size and the feature size: the
+ * cards of every slot for board states, the claimed cards for claims and the card in the slot for tokens; -1 none).
+ * So the cards of an exported game are at most Short.MAX_VALUE (see cards(Config)).
+ */
+public class ColumnarExporter {
+
+    static final int MAGIC = 0x53455458; // "SETX"
+    static final int VERSION = 1;
+    static final int TRAILER_BYTES = 24;
+
+    /**
+     * Row types.
+     */
+    public static final byte BOARD = 1;
+    public static final byte PLACE_TOKEN = 2;
+    public static final byte REMOVE_TOKEN = 3;
+    public static final byte CLAIM = 4;
+    public static final byte VERDICT = 5;
+
+    // the fixed columns (the card columns follow)
+    static final String[] FIXED_COLUMNS = {"game", "time", "type", "player", "slot", "legal"};
+    static final int[] FIXED_WIDTHS = {Long.BYTES, Long.BYTES, Byte.BYTES, Short.BYTES, Short.BYTES, Byte.BYTES};
+    private static final int GAME = 0, TIME = 1, TYPE = 2, PLAYER = 3, SLOT = 4, LEGAL = 5, CARDS = 6;
+
+    /**
+     * The rows per chunk, and the most chunks that may wait for the writers.
+     */
+    static final int CHUNK_ROWS = 1024;
+    private static final int QUEUE_CHUNKS = 4096;
+
+    private final Logger logger;
+    private final int cards; // the number of card columns
+    private final int[] widths;
+
+    private final FileChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(1 << 20);
+    private final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(QUEUE_CHUNKS);
+    private final ConcurrentLinkedQueue<Chunk> free = new ConcurrentLinkedQueue<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final List<Thread> writers = new ArrayList<>();
+    private volatile boolean closed;
+
+    // the file position of the write buffer and the chunk index (guarded by out)
+    private long position;
+    private final List<long[]> index = new ArrayList<>();
+
+    /**
+     * @param logger - the logger.
+     * @param file   - the file to create.
+     * @param cards  - the number of card columns (at least the table size and the feature size of every game, see
+     *               cards(Config)).
+     * @throws IOException - if the file cannot be created.
+     */
+    public ColumnarExporter(Logger logger, Path file, int cards) throws IOException {
+        this.logger = logger;
+        this.cards = cards;
+        widths = Arrays.copyOf(FIXED_WIDTHS, CARDS + cards);
+        Arrays.fill(widths, CARDS, widths.length, Short.BYTES);
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        out.putInt(MAGIC).putInt(VERSION).putInt(widths.length);
+        for (int column = 0; column < widths.length; column++) {
+            putString(column < CARDS ? FIXED_COLUMNS[column] : "card" + (column - CARDS));
+            out.putInt(widths[column]);
+        }
+        for (int i = 0; i < Math.max(1, Runtime.getRuntime().availableProcessors() / 4); i++) {
+            Thread writer = new Thread(this::write, "columnar-exporter-" + i);
+            writer.setDaemon(true);
+            writers.add(writer);
+            writer.start();
+        }
+    }
+
+    /**
+     * @return - the number of card columns the rows of a game need.
+     * @throws IOException - if the cards of the game do not fit the card columns (a deck of more than Short.MAX_VALUE
+     *                     cards).
+     */
+    public static int cards(Config config) throws IOException {
+        if (config.deckSize - 1 > Short.MAX_VALUE)
+            throw new IOException("a deck of " + config.deckSize + " cards cannot be exported (at most "
+                    + (Short.MAX_VALUE + 1) + " cards)");
+        return Math.max(config.tableSize, config.featureSize);
+    }
+
+    private void putString(String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.putShort((short) bytes.length).put(bytes);
+    }
+
+    /**
+     * The columns of CHUNK_ROWS rows of a game.
+     */
+    private class Chunk {
+
+        private final ByteBuffer[] columns = new ByteBuffer[widths.length];
+        private long game;
+        private int rows;
+
+        private Chunk() {
+            for (int column = 0; column < columns.length; column++)
+                columns[column] = ByteBuffer.allocate(CHUNK_ROWS * widths[column]);
+        }
+    }
+
+    private Chunk chunk(long game) {
+        Chunk chunk = free.poll();
+        if (chunk == null) chunk = new Chunk();
+        for (ByteBuffer column : chunk.columns)
+            column.clear();
+        chunk.game = game;
+        chunk.rows = 0;
+        return chunk;
+    }
+
+    /**
+     * Hands a chunk to the writers, waiting for room in their queue (or drops it if the exporter is closed).
+     */
+    private void submit(Chunk chunk) {
+        if (chunk.rows > 0 && !closed)
+            try {
+                queue.put(chunk);
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        drop(chunk);
+    }
+
+    private void drop(Chunk chunk) {
+        if (chunk.rows > 0 && dropped.getAndAdd(chunk.rows) == 0)
+            logger.warning("the columnar exporter was closed or interrupted, dropping rows");
+        free.offer(chunk);
+    }
+
+    /**
+     * Creates the recorder of a game.
+     *
+     * @param game  - the game id (e.g. its seed), stored in every row of the game.
+     * @param clock - the clock of the row times (the event clock of the bus, see UserInterfaceBus.eventClock).
+     * @return - the recorder (add it to the bus of the game as a growing sink with a listener).
+     */
+    public Recorder recorder(long game, Clock clock) {
+        return new Recorder(game, clock);
+    }
+
+    /**
+     * Records the events of a single game into chunks (calls from several threads are serialized).
+     */
+    public class Recorder implements UserInterface, GameListener {
+
+        private final long game;
+        private final Clock clock;
+        private final short[] board = new short[cards];
+        private Chunk chunk;
+
+        private Recorder(long game, Clock clock) {
+            this.game = game;
+            this.clock = clock;
+            Arrays.fill(board, (short) -1);
+            chunk = chunk(game);
+        }
+
+        /**
+         * Adds a row (the caller then adds its cards).
+         */
+        private void row(byte type, int player, int slot, int legal) {
+            if (chunk == null) return;
+            if (chunk.rows == CHUNK_ROWS) {
+                submit(chunk);
+                chunk = chunk(game);
+            }
+            ByteBuffer[] columns = chunk.columns;
+            columns[GAME].putLong(game);
+            columns[TIME].putLong(clock.currentTimeMillis());
+            columns[TYPE].put(type);
+            columns[PLAYER].putShort((short) player);
+            columns[SLOT].putShort((short) slot);
+            columns[LEGAL].put((byte) legal);
+            chunk.rows++;
+        }
+
+        private void boardRow() {
+            row(BOARD, -1, -1, -1);
+            if (chunk == null) return;
+            for (int i = 0; i < cards; i++)
+                chunk.columns[CARDS + i].putShort(board[i]);
+        }
+
+        private void tokenRow(byte type, int player, int slot) {
+            row(type, player, slot, -1);
+            if (chunk == null) return;
+            for (int i = 0; i < cards; i++)
+                chunk.columns[CARDS + i].putShort(i == 0 && slot < board.length ? board[slot] : -1);
+        }
+
+        @Override
+        public synchronized void placeCard(int card, int slot) {
+            board[slot] = (short) card;
+            boardRow();
+        }
+
+        @Override
+        public synchronized void removeCard(int slot) {
+            board[slot] = -1;
+            boardRow();
+        }
+
+        @Override
+        public synchronized void placeToken(int player, int slot) {
+            tokenRow(PLACE_TOKEN, player, slot);
+        }
+
+        @Override
+        public synchronized void removeToken(int player, int slot) {
+            tokenRow(REMOVE_TOKEN, player, slot);
+        }
+
+        @Override
+        public synchronized void claimSubmitted(int player, int[] cards) {
+            row(CLAIM, player, -1, -1);
+            if (chunk == null) return;
+            for (int i = 0; i < ColumnarExporter.this.cards; i++)
+                chunk.columns[CARDS + i].putShort((short) (i < cards.length ? cards[i] : -1));
+        }
+
+        @Override
+        public synchronized void claimResolved(int player, boolean legal) {
+            row(VERDICT, player, -1, legal ? 1 : 0);
+            if (chunk == null) return;
+            for (int i = 0; i < cards; i++)
+                chunk.columns[CARDS + i].putShort((short) -1);
+        }
+
+        // the tokens removed with their cards, the timer, scores, freezes and winners are not exported
+
+        @Override
+        public void removeTokens() {
+        }
+
+        @Override
+        public void removeTokens(int slot) {
+        }
+
+        @Override
+        public void setCountdown(long millies, boolean warn) {
+        }
+
+        @Override
+        public void setElapsed(long millies) {
+        }
+
+        @Override
+        public void setScore(int player, int score) {
+        }
+
+        @Override
+        public void setFreeze(int player, long millies) {
+        }
+
+        @Override
+        public void announceWinner(int[] players) {
+        }
+
+        /**
+         * Hands the rows recorded so far to the writers (the recorder ignores the calls that follow).
+         */
+        @Override
+        public synchronized void dispose() {
+            if (chunk == null) return;
+            submit(chunk);
+            chunk = null;
+        }
+    }
+
+    /**
+     * A writer thread: compresses the chunks and appends them to the file until the exporter is closed.
+     */
+    private void write() {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte[] compressed = new byte[CHUNK_ROWS * Long.BYTES + 1024];
+        int[] sizes = new int[widths.length];
+        ByteBuffer chunkBytes = ByteBuffer.allocate(Integer.BYTES * (1 + widths.length)
+                + widths.length * compressed.length);
+        try {
+            while (true) {
+                Chunk chunk = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (chunk == null) {
+                    if (closed && queue.isEmpty()) return;
+                    continue;
+                }
+                chunkBytes.clear();
+                chunkBytes.position(Integer.BYTES * (1 + widths.length));
+                for (int column = 0; column < widths.length; column++) {
+                    deflater.reset();
+                    deflater.setInput(chunk.columns[column].array(), 0, chunk.rows * widths[column]);
+                    deflater.finish();
+                    int size = 0;
+                    while (!deflater.finished())
+                        size += deflater.deflate(compressed, size, compressed.length - size);
+                    sizes[column] = size;
+                    chunkBytes.put(compressed, 0, size);
+                }
+                chunkBytes.putInt(0, chunk.rows);
+                for (int column = 0; column < widths.length; column++)
+                    chunkBytes.putInt(Integer.BYTES * (1 + column), sizes[column]);
+                chunkBytes.flip();
+                synchronized (out) {
+                    index.add(new long[]{position + out.position(), chunk.rows, chunk.game});
+                    put(chunkBytes);
+                }
+                free.offer(chunk);
+            }
+        } catch (IOException e) {
+            logger.severe("error writing columnar export: " + e);
+        } catch (InterruptedException ignored) {
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Appends bytes to the write buffer (writing it out whenever it fills up).
+     */
+    private void put(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            if (!out.hasRemaining()) flush();
+            int length = Math.min(bytes.remaining(), out.remaining());
+            ByteBuffer slice = bytes.duplicate();
+            slice.limit(slice.position() + length);
+            out.put(slice);
+            bytes.position(bytes.position() + length);
+        }
+    }
+
+    private void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining())
+            position += channel.write(out);
+        out.clear();
+    }
+
+    /**
+     * @return - the number of rows dropped so far (of recorders still recording when the exporter was closed).
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Writes the chunks queued so far, completes the file and closes it (the chunks of games still recording are
+     * dropped).
+     *
+     * @throws InterruptedException - if interrupted while waiting for the writers.
+     */
+    public void close() throws InterruptedException {
+        closed = true;
+        for (Thread writer : writers)
+            writer.join();
+        for (Chunk chunk = queue.poll(); chunk != null; chunk = queue.poll())
+            drop(chunk); // submitted after the writers were done
+        synchronized (out) {
+            try {
+                // the index and the trailer
+                long indexOffset = position + out.position();
+                for (long[] entry : index)
+                    put(ByteBuffer.allocate(20).putLong(0, entry[0]).putInt(8, (int) entry[1]).putLong(12, entry[2]));
+                put(ByteBuffer.allocate(TRAILER_BYTES).putLong(0, dropped.get()).putInt(8, index.size())
+                        .putLong(12, indexOffset).putInt(20, MAGIC));
+                flush();
+            } catch (IOException e) {
+                logger.severe("error writing columnar export: " + e);
+            } finally {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a columnar export of games (see ColumnarExporter): the file is memory-mapped and a column is read by
+ * inflating only its part of every chunk, so scanning a few columns skips the bytes of all the others.
+ * Usage: ColumnarReader file (prints the number of rows of every type and the size of every column).
+ */
+public class ColumnarReader implements AutoCloseable {
+
+    private final FileChannel channel;
+    private final List<String> names = new ArrayList<>();
+    private final int[] widths;
+    private final long dropped;
+
+    // per chunk: its file offset, row count and game
+    private final long[] offsets;
+    private final int[] rows;
+    private final long[] games;
+    private final long totalRows;
+    private final long indexOffset;
+
+    /**
+     * The whole file (null if it is too large for a single mapping: its chunks are mapped one at a time then).
+     */
+    private final MappedByteBuffer data;
+
+    /**
+     * @param file - the export file.
+     * @throws IOException - if the file cannot be read or is not a complete export.
+     */
+    public ColumnarReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < ColumnarExporter.TRAILER_BYTES)
+                throw new IOException(file + " is not a columnar export");
+            MappedByteBuffer trailer = channel.map(FileChannel.MapMode.READ_ONLY,
+                    size - ColumnarExporter.TRAILER_BYTES, ColumnarExporter.TRAILER_BYTES);
+            if (trailer.getInt(20) != ColumnarExporter.MAGIC)
+                throw new IOException(file + " is not a complete columnar export");
+            dropped = trailer.getLong(0);
+            int chunks = trailer.getInt(8);
+            indexOffset = trailer.getLong(12);
+
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, 1 << 16));
+            if (header.getInt() != ColumnarExporter.MAGIC)
+                throw new IOException(file + " is not a columnar export");
+            int version = header.getInt();
+            if (version != ColumnarExporter.VERSION)
+                throw new IOException("unsupported columnar export version " + version);
+            widths = new int[header.getInt()];
+            for (int column = 0; column < widths.length; column++) {
+                byte[] name = new byte[header.getShort()];
+                header.get(name);
+                names.add(new String(name, StandardCharsets.UTF_8));
+                widths[column] = header.getInt();
+            }
+
+            MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, chunks * 20L);
+            offsets = new long[chunks];
+            rows = new int[chunks];
+            games = new long[chunks];
+            long total = 0;
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                offsets[chunk] = index.getLong();
+                rows[chunk] = index.getInt();
+                games[chunk] = index.getLong();
+                total += rows[chunk];
+            }
+            totalRows = total;
+            data = size <= Integer.MAX_VALUE ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: ColumnarReader file");
+            return;
+        }
+        try (ColumnarReader reader = new ColumnarReader(Paths.get(args[0]))) {
+            long[] counts = new long[256];
+            for (int type : reader.ints("type"))
+                counts[type & 0xff]++;
+            System.out.printf("%d rows of %d games in %d chunks (%d rows dropped)%n", reader.rows(), reader.games(),
+                    reader.chunks(), reader.dropped());
+            String[] types = {"", "board", "place token", "remove token", "claim", "verdict"};
+            for (int type = 1; type < types.length; type++)
+                System.out.printf("  %-12s %d%n", types[type], counts[type]);
+            for (String column : reader.columns())
+                System.out.printf("  column %-8s %d bytes compressed%n", column, reader.compressedBytes(column));
+        }
+    }
+
+    public List<String> columns() {
+        return Collections.unmodifiableList(names);
+    }
+
+    public long rows() {
+        return totalRows;
+    }
+
+    public int chunks() {
+        return rows.length;
+    }
+
+    /**
+     * @return - the number of rows the exporter dropped (of games still recording when it was closed).
+     */
+    public long dropped() {
+        return dropped;
+    }
+
+    /**
+     * @return - the number of different games in the export.
+     */
+    public int games() {
+        Set<Long> ids = new HashSet<>();
+        for (long game : games)
+            ids.add(game);
+        return ids.size();
+    }
+
+    private int column(String name) {
+        int column = names.indexOf(name);
+        if (column < 0)
+            throw new IllegalArgumentException("no column " + name);
+        return column;
+    }
+
+    /**
+     * @return - the compressed values of a column in a chunk.
+     */
+    private ByteBuffer values(int chunk, int column) throws IOException {
+        ByteBuffer bytes;
+        int start = 0;
+        if (data != null) {
+            bytes = data.duplicate();
+            start = (int) offsets[chunk];
+        } else {
+            long end = chunk + 1 < offsets.length ? offsets[chunk + 1] : indexOffset;
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, offsets[chunk], end - offsets[chunk]);
+        }
+        int position = start + Integer.BYTES * (1 + widths.length);
+        for (int i = 0; i < column; i++)
+            position += bytes.getInt(start + Integer.BYTES * (1 + i));
+        bytes.limit(position + bytes.getInt(start + Integer.BYTES * (1 + column)));
+        bytes.position(position);
+        return bytes;
+    }
+
+    /**
+     * @return - the compressed size of a column over all the chunks.
+     */
+    public long compressedBytes(String name) throws IOException {
+        int column = column(name);
+        long bytes = 0;
+        for (int chunk = 0; chunk < offsets.length; chunk++)
+            bytes += values(chunk, column).remaining();
+        return bytes;
+    }
+
+    /**
+     * Reads all the values of a column (of every chunk in turn).
+     *
+     * @param name - the column name.
+     * @return - the values (widened to long).
+     * @throws IOException - if the file cannot be read or is corrupt.
+     */
+    public long[] longs(String name) throws IOException {
+        int column = column(name);
+        long[] values = new long[(int) totalRows];
+        ByteBuffer raw = ByteBuffer.allocate(ColumnarExporter.CHUNK_ROWS * widths[column]);
+        int row = 0;
+        Inflater inflater = new Inflater();
+        try {
+            for (int chunk = 0; chunk < offsets.length; chunk++) {
+                inflate(inflater, values(chunk, column), raw, rows[chunk] * widths[column]);
+                for (int i = 0; i < rows[chunk]; i++)
+                    values[row++] = get(raw, widths[column]);
+            }
+        } finally {
+            inflater.end();
+        }
+        return values;
+    }
+
+    /**
+     * Reads all the values of a column of at most 4 bytes.
+     *
+     * @param name - the column name.
+     * @return - the values (widened to int).
+     * @throws IOException - if the file cannot be read or is corrupt.
+     */
+    public int[] ints(String name) throws IOException {
+        if (widths[column(name)] > Integer.BYTES)
+            throw new IllegalArgumentException("column " + name + " is wider than an int");
+        long[] longs = longs(name);
+        int[] values = new int[longs.length];
+        for (int i = 0; i < longs.length; i++)
+            values[i] = (int) longs[i];
+        return values;
+    }
+
+    private static void inflate(Inflater inflater, ByteBuffer compressed, ByteBuffer raw, int bytes)
+            throws IOException {
+        byte[] input = new byte[compressed.remaining()];
+        compressed.get(input);
+        inflater.reset();
+        inflater.setInput(input);
+        raw.clear();
+        try {
+            int size = 0;
+            while (size < bytes && !inflater.finished()) {
+                int inflated = inflater.inflate(raw.array(), size, bytes - size);
+                if (inflated == 0 && inflater.needsInput())
+                    break;
+                size += inflated;
+            }
+            if (size != bytes)
+                throw new IOException("a chunk of the columnar export is truncated");
+        } catch (DataFormatException e) {
+            throw new IOException("a chunk of the columnar export is corrupt: " + e.getMessage());
+        }
+        raw.limit(bytes);
+    }
+
+    private static long get(ByteBuffer raw, int width) {
+        switch (width) {
+            case Byte.BYTES:
+                return raw.get();
+            case Short.BYTES:
+                return raw.getShort();
+            case Integer.BYTES:
+                return raw.getInt();
+            default:
+                return raw.getLong();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
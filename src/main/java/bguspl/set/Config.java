@@ -56,6 +56,32 @@ public class Config {
      */
     public final boolean hints;
 
+    /**
+     * Whether to record the game in a journal file (in the logs directory) that can be replayed later
+     */
+    public final boolean journal;
+
+    /**
+     * Whether to keep the state of each game (table, tokens, deck and claims) off the heap
+     */
+    public final boolean directGameState;
+
+    /**
+     * The seed of the random number generators (deck shuffling and computer players), for reproducible games
+     */
+    public final long randomSeed;
+
+    /**
+     * Whether to run the game on simulated time (the clock jumps forward whenever all the threads are waiting)
+     */
+    public final boolean virtualClock;
+
+    /**
+     * The number of milliseconds a computer player takes to press a key (at least 1 on simulated time, where
+     * pressing keys would otherwise take no time at all)
+     */
+    public final long computerKeyDelayMillis;
+
     /**
      * The number of milliseconds until the dealer reshuffles the deck (0 show timer
      * since last action, -1 show nothing)
@@ -78,8 +104,8 @@ public class Config {
     public final long pointFreezeMillis;
 
     /**
-     * The number of milliseconds to delay before removing/placing a card on the
-     * table
+     * The number of milliseconds the user interface takes to animate a card placed on or removed from the table (the
+     * game does not wait for it)
      */
     public final long tableDelayMillis;
 
@@ -88,6 +114,37 @@ public class Config {
      */
     public final long endGamePauseMillies;
 
+    /**
+     * The longest (in milliseconds) stopping the game threads may take, after which the ones still running are
+     * reported and left behind
+     */
+    public final long shutdownTimeoutMillis;
+
+    /**
+     * The file the game is checkpointed to ("" for none; a game is resumed from it if it exists at startup)
+     */
+    public final String checkpointFile;
+
+    /**
+     * The number of table events queued for each user interface before it is resynchronized (see UserInterfaceBus)
+     */
+    public final int uiQueueCapacity;
+
+    /**
+     * The precomputed set index of the deck to map at startup ("" for none, see SetIndex)
+     */
+    public final String setIndexFile;
+
+    /**
+     * The file to export the game to for offline analysis ("" for none, see ColumnarExporter)
+     */
+    public final String exportFile;
+
+    /**
+     * The interval (in milliseconds) between checkpoints (0 for checkpoints on request only)
+     */
+    public final long checkpointMillis;
+
     /**
      * The names of the players to display on the screen
      * Note: if there are more players than names, the remaining players will be
@@ -95,6 +152,53 @@ public class Config {
      */
     public final String[] playerNames;
 
+    /**
+     * The strategies of the computer players ("random" or "finder", see the Strategy class)
+     * Note: if there are more players than strategies, the remaining players use the "random" strategy.
+     */
+    public final String[] strategies;
+
+    /**
+     * How the dealer picks the cards to deal ("blind" from the top of the deck, or "sets", see DealingPolicy)
+     */
+    public final String dealingPolicy;
+
+    /**
+     * The number of live sets the "sets" dealing policy keeps on the table, and how deep into the deck it looks
+     */
+    public final int dealTargetSets;
+    public final int dealWindow;
+
+    /**
+     * True iff the game should run without a window (e.g. for bot games watched by spectators)
+     */
+    public final boolean headless;
+
+    /**
+     * The loopback port spectators can connect to for watching the game (0 for no spectator server)
+     */
+    public final int spectatorPort;
+
+    /**
+     * The loopback port bot processes can connect to for playing the human players (0 for no bot gateway)
+     */
+    public final int botPort;
+
+    /**
+     * The secret bots authenticate with (see BotGateway)
+     */
+    public final String botSecret;
+
+    /**
+     * True iff the cards should always be drawn from their features (rather than from the card images, if any)
+     */
+    public final boolean proceduralCards;
+
+    /**
+     * The number of card images the window keeps (the least recently used ones are dropped)
+     */
+    public final int cardCacheSize;
+
     /**
      * The number of rows in the grid of cards on the table (and on the screen)
      */
@@ -163,7 +267,7 @@ public class Config {
      * @param filename - the name of the configuration file.
      * @return - a properties object with the configuration file contents.
      */
-    private static Properties loadProperties(String filename, Logger logger) {
+    static Properties loadProperties(String filename, Logger logger) {
 
         Properties properties = new Properties();
 
@@ -214,6 +318,13 @@ public class Config {
         players = humanPlayers + computerPlayers;
 
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
+        journal = Boolean.parseBoolean(properties.getProperty("Journal", "False"));
+        directGameState = Boolean.parseBoolean(properties.getProperty("DirectGameState", "False"));
+        String seed = properties.getProperty("RandomSeed", "");
+        randomSeed = seed.trim().isEmpty() ? System.nanoTime() : Long.parseLong(seed.trim());
+        virtualClock = Boolean.parseBoolean(properties.getProperty("VirtualClock", "False"));
+        long keyDelay = (long) (Double.parseDouble(properties.getProperty("ComputerKeyDelaySeconds", "0")) * 1000.0);
+        computerKeyDelayMillis = virtualClock ? Math.max(1, keyDelay) : keyDelay;
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
         turnTimeoutWarningMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutWarningSeconds", "60"))
                 * 1000.0);
@@ -221,11 +332,30 @@ public class Config {
         penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
         tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
         endGamePauseMillies = (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
+        shutdownTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("ShutdownTimeoutSeconds", "1"))
+                * 1000.0);
+        checkpointFile = properties.getProperty("CheckpointFile", "").trim();
+        uiQueueCapacity = Math.max(1, Integer.parseInt(properties.getProperty("UiQueueCapacity", "1024")));
+        setIndexFile = properties.getProperty("SetIndexFile", "").trim();
+        exportFile = properties.getProperty("ExportFile", "").trim();
+        checkpointMillis = (long) (Double.parseDouble(properties.getProperty("CheckpointSeconds", "10")) * 1000.0);
 
         // ui settings
+        headless = Boolean.parseBoolean(properties.getProperty("Headless", "False"));
+        spectatorPort = Integer.parseInt(properties.getProperty("SpectatorPort", "0"));
+        botPort = Integer.parseInt(properties.getProperty("BotPort", "0"));
+        botSecret = properties.getProperty("BotSecret", "").trim();
+        proceduralCards = Boolean.parseBoolean(properties.getProperty("ProceduralCards", "False"));
+        cardCacheSize = Integer.parseInt(properties.getProperty("CardCacheSize", "32"));
         String[] names = properties.getProperty("PlayerNames", "Player 1, Player 2").split(",");
         playerNames = new String[players];
         Arrays.setAll(playerNames, i -> i < names.length ? names[i].trim() : "Player " + (i + 1));
+        String[] strategyNames = properties.getProperty("Strategies", "random").split(",");
+        strategies = new String[players];
+        Arrays.setAll(strategies, i -> i < strategyNames.length ? strategyNames[i].trim() : "random");
+        dealingPolicy = properties.getProperty("DealingPolicy", "blind").trim();
+        dealTargetSets = Integer.parseInt(properties.getProperty("DealTargetSets", "1"));
+        dealWindow = Math.max(1, Integer.parseInt(properties.getProperty("DealWindow", "12")));
 
         rows = Integer.parseInt(properties.getProperty("Rows", "3"));
         columns = Integer.parseInt(properties.getProperty("Columns", "4"));
@@ -8,11 +8,34 @@ public class Env {
     public final Config config;
     public final UserInterface ui;
     public final Util util;
+    public final GameListener listener;
+    public final Clock clock;
+    public final GameMetrics metrics;
+    public final Leaderboard leaderboard;
+    public final ShutdownCoordinator shutdown;
 
     public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, GameListener.NONE);
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, GameListener listener) {
+        this(logger, config, ui, util, listener, new SystemClock());
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, GameListener listener, Clock clock) {
+        this(logger, config, ui, util, listener, clock, new Leaderboard(Leaderboard.DEFAULT_SIZE));
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, GameListener listener, Clock clock,
+               Leaderboard leaderboard) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.listener = listener;
+        this.clock = clock;
+        this.metrics = new GameMetrics(config.players);
+        this.leaderboard = leaderboard;
+        this.shutdown = new ShutdownCoordinator(logger, clock, config.shutdownTimeoutMillis);
     }
 }
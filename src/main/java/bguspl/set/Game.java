@@ -0,0 +1,93 @@
+package bguspl.set;
+
+import bguspl.set.ex.Checkpoint;
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.InvariantChecker;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+/**
+ * A single game: creates the game entities for an environment and runs the dealer thread.
+ */
+public class Game {
+
+    private final Env env;
+    private final Table table;
+    private final Dealer dealer;
+    private final Player[] players;
+
+    /**
+     * @param env     - the game environment.
+     * @param players - the array to fill with the players (the user interface may already hold it).
+     */
+    public Game(Env env, Player[] players) {
+        this.env = env;
+        this.players = players;
+        table = new Table(env);
+        dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
+    }
+
+    /**
+     * Resumes a game from a checkpoint.
+     *
+     * @param env        - the game environment (its configuration must have the dimensions of the checkpoint).
+     * @param players    - the array to fill with the players (the user interface may already hold it).
+     * @param checkpoint - the checkpoint.
+     */
+    public Game(Env env, Player[] players, Checkpoint checkpoint) {
+        this.env = env;
+        this.players = players;
+        table = new Table(env, checkpoint.state(env.config));
+        dealer = new Dealer(env, table, players, checkpoint.timerMillis);
+        for (int i = 0; i < players.length; i++) {
+            players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
+            players[i].resume(checkpoint.score(i), checkpoint.freezeMillis(i));
+        }
+        table.showState();
+    }
+
+    /**
+     * Requests a checkpoint of the game (written in the background if the game is checkpointed).
+     */
+    public void checkpoint() {
+        dealer.requestCheckpoint();
+    }
+
+    /**
+     * Runs the game until it is over (or terminated).
+     *
+     * @throws InterruptedException - if the calling thread was interrupted while waiting for the game to end.
+     */
+    public void play() throws InterruptedException {
+        ThreadLogger dealerThread = new ThreadLogger(env.clock.track(dealer), "dealer", env.logger);
+        dealerThread.startWithLog();
+        dealerThread.joinWithLog();
+    }
+
+    /**
+     * @param lostClaimMillis - how long a claim may wait for the dealer before it counts as lost.
+     * @return - a checker of the invariants of the game (for stress tests).
+     */
+    public InvariantChecker invariants(long lostClaimMillis) {
+        return new InvariantChecker(env, table, players, lostClaimMillis);
+    }
+
+    /**
+     * Ends the game early.
+     */
+    public void terminate() {
+        dealer.terminate();
+    }
+
+    /**
+     * @return - the scores of the players.
+     */
+    public int[] scores() {
+        int[] scores = new int[players.length];
+        for (int i = 0; i < players.length; i++)
+            scores[i] = players[i].score();
+        return scores;
+    }
+}
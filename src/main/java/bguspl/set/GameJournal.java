@@ -0,0 +1,214 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records every user interface call and every claim and verdict of a game in a compact binary journal.
+ * The journal is written through a memory-mapped file: a record is a type byte, the time since the previous record
+ * and the call arguments, all as (zigzag) varints. See JournalReplayer for playing a journal back.
+ */
+public class GameJournal implements UserInterface, GameListener {
+
+    /**
+     * The journal header (magic number and format version).
+     */
+    static final int MAGIC = 0x5345544a; // "SETJ"
+    static final int VERSION = 1;
+
+    /**
+     * Record types (0 marks the end of the journal).
+     */
+    static final byte END = 0;
+    static final byte PLACE_CARD = 1;      // card, slot
+    static final byte REMOVE_CARD = 2;     // slot
+    static final byte PLACE_TOKEN = 3;     // player, slot
+    static final byte REMOVE_TOKENS = 4;   //
+    static final byte REMOVE_SLOT_TOKENS = 5; // slot
+    static final byte REMOVE_TOKEN = 6;    // player, slot
+    static final byte COUNTDOWN = 7;       // millis, warn
+    static final byte ELAPSED = 8;         // millis
+    static final byte FREEZE = 9;          // player, millis
+    static final byte SCORE = 10;          // player, score
+    static final byte WINNERS = 11;        // count, players...
+    static final byte CLAIM = 12;          // player, count, cards...
+    static final byte VERDICT = 13;        // player, legal
+
+    /**
+     * The size of the file regions mapped at a time.
+     */
+    private static final int REGION_BYTES = 1 << 20;
+
+    /**
+     * The maximal size of a single record (a type byte and varints of up to 10 bytes each).
+     */
+    private final int maxRecordBytes;
+
+    private final Clock clock;
+    private final FileChannel channel;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long lastMillis;
+    private boolean closed;
+
+    /**
+     * @param file   - the journal file to create.
+     * @param config - the game configuration (the table dimensions are stored in the header).
+     * @param clock  - the game clock (for the record times).
+     * @throws IOException - if the file cannot be created.
+     */
+    public GameJournal(Path file, Config config, Clock clock) throws IOException {
+        this.clock = clock;
+        maxRecordBytes = 1 + 10 * (3 + Math.max(config.players, config.featureSize));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        region = channel.map(FileChannel.MapMode.READ_WRITE, 0, REGION_BYTES);
+
+        lastMillis = clock.currentTimeMillis();
+        region.putInt(MAGIC).putInt(VERSION).putLong(lastMillis);
+        region.putInt(config.rows).putInt(config.columns).putInt(config.players)
+                .putInt(config.featureCount).putInt(config.featureSize);
+    }
+
+    /**
+     * Starts a record, mapping the next region of the file if the current one may be too small for it.
+     */
+    private boolean begin(byte type) {
+        if (closed) return false;
+        try {
+            if (region.remaining() < maxRecordBytes) {
+                regionStart += region.position();
+                region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, REGION_BYTES);
+            }
+        } catch (IOException e) {
+            closed = true;
+            return false;
+        }
+        long now = clock.currentTimeMillis();
+        region.put(type);
+        putVarLong(now - lastMillis);
+        lastMillis = now;
+        return true;
+    }
+
+    private void putVarLong(long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            region.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        region.put((byte) zigzag);
+    }
+
+    private synchronized void record(byte type) {
+        begin(type);
+    }
+
+    private synchronized void record(byte type, long arg) {
+        if (begin(type))
+            putVarLong(arg);
+    }
+
+    private synchronized void record(byte type, long arg0, long arg1) {
+        if (begin(type)) {
+            putVarLong(arg0);
+            putVarLong(arg1);
+        }
+    }
+
+    private synchronized void record(byte type, int first, int[] values) {
+        if (begin(type)) {
+            if (first >= 0)
+                putVarLong(first);
+            putVarLong(values.length);
+            for (int value : values)
+                putVarLong(value);
+        }
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        record(PLACE_CARD, card, slot);
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        record(REMOVE_CARD, slot);
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        record(PLACE_TOKEN, player, slot);
+    }
+
+    @Override
+    public void removeTokens() {
+        record(REMOVE_TOKENS);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        record(REMOVE_SLOT_TOKENS, slot);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        record(REMOVE_TOKEN, player, slot);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        record(COUNTDOWN, millies, warn ? 1 : 0);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        record(ELAPSED, millies);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        record(FREEZE, player, millies);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        record(SCORE, player, score);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        record(WINNERS, -1, players);
+    }
+
+    @Override
+    public void claimSubmitted(int player, int[] cards) {
+        record(CLAIM, player, cards);
+    }
+
+    @Override
+    public void claimResolved(int player, boolean legal) {
+        record(VERDICT, player, legal ? 1 : 0);
+    }
+
+    /**
+     * Ends the journal and trims the file to its contents.
+     */
+    @Override
+    public synchronized void dispose() {
+        if (closed) return;
+        closed = true;
+        try {
+            long length = regionStart + region.position();
+            region.put(END);
+            region.force();
+            region = null;
+            channel.truncate(length + 1);
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
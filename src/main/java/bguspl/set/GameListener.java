@@ -0,0 +1,48 @@
+package bguspl.set;
+
+/**
+ * Receives the game events that are not visible through the user interface (e.g. for recording a game).
+ */
+public interface GameListener {
+
+    /**
+     * A listener that ignores all events.
+     */
+    GameListener NONE = new GameListener() {
+    };
+
+    /**
+     * @return - a listener that passes every event to both listeners (first to the first one).
+     */
+    static GameListener both(GameListener first, GameListener second) {
+        return new GameListener() {
+            @Override
+            public void claimSubmitted(int player, int[] cards) {
+                first.claimSubmitted(player, cards);
+                second.claimSubmitted(player, cards);
+            }
+
+            @Override
+            public void claimResolved(int player, boolean legal) {
+                first.claimResolved(player, legal);
+                second.claimResolved(player, legal);
+            }
+        };
+    }
+
+    /**
+     * Called when a player asks the dealer to check a set.
+     * @param player - the player id.
+     * @param cards  - the cards the player's tokens are on (the array must not be kept).
+     */
+    default void claimSubmitted(int player, int[] cards) {
+    }
+
+    /**
+     * Called when the dealer checked a player's set.
+     * @param player - the player id.
+     * @param legal  - true iff the set was legal (and the player got a point).
+     */
+    default void claimResolved(int player, boolean legal) {
+    }
+}
@@ -0,0 +1,201 @@
+package bguspl.set;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters and latency histograms of a game, exposed over JMX (e.g. to JConsole) once registered.
+ * Recording does not allocate or lock, so it is safe on the hot paths of the player and dealer threads.
+ * Latencies are measured in real time (System.nanoTime), freeze times on the game clock.
+ */
+public class GameMetrics implements GameMetricsMXBean {
+
+    /**
+     * The JMX domain of the game beans.
+     */
+    public static final String DOMAIN = "bguspl.set";
+
+    private final LongAdder claimsQueued = new LongAdder();
+    private final LongAdder claimsVerified = new LongAdder();
+    private final LongAdder claimsRejected = new LongAdder();
+    private final LongAdder dealerLoopIterations = new LongAdder();
+    private final LongAdder dealerWakeUps = new LongAdder();
+    private final LongAdder reshuffles = new LongAdder();
+
+    /**
+     * From a player queueing a claim until the dealer's verdict.
+     */
+    public final LatencyHistogram claimToVerdict = new LatencyHistogram();
+
+    /**
+     * From a key press until the player's token is on the table.
+     */
+    public final LatencyHistogram keyToToken = new LatencyHistogram();
+
+    /**
+     * How long the dealer holds the table monitor while checking a claim.
+     */
+    public final LatencyHistogram tableMonitorHold = new LatencyHistogram();
+
+    /**
+     * The time each player's pending claim was queued at.
+     */
+    private final AtomicLongArray claimQueuedNanos;
+    private final AtomicLongArray freezeMillis;
+
+    private final List<ObjectName> registered = new ArrayList<>();
+
+    /**
+     * @param players - the number of players.
+     */
+    public GameMetrics(int players) {
+        claimQueuedNanos = new AtomicLongArray(players);
+        freezeMillis = new AtomicLongArray(players);
+    }
+
+    /**
+     * Registers the counters and the histograms in the platform MBean server.
+     *
+     * @param game - the name of the game (the "game" key of the object names).
+     * @throws JMException - if a bean could not be registered.
+     */
+    public synchronized void register(String game) throws JMException {
+        register(new ObjectName(DOMAIN + ":type=Game,game=" + ObjectName.quote(game)), this);
+        register(histogramName(game, "claimToVerdict"), claimToVerdict);
+        register(histogramName(game, "keyToToken"), keyToToken);
+        register(histogramName(game, "tableMonitorHold"), tableMonitorHold);
+    }
+
+    private static ObjectName histogramName(String game, String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=Latency,game=" + ObjectName.quote(game) + ",name=" + name);
+    }
+
+    private void register(ObjectName name, Object bean) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(bean, name);
+        registered.add(name);
+    }
+
+    /**
+     * Removes the beans registered by register.
+     */
+    public synchronized void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered)
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException ignored) {
+            }
+        registered.clear();
+    }
+
+    /**
+     * Called when a player queues a claim for the dealer.
+     *
+     * @param player - the player id.
+     */
+    public void claimQueued(int player) {
+        claimsQueued.increment();
+        claimQueuedNanos.set(player, System.nanoTime());
+    }
+
+    /**
+     * Called when the dealer checked a player's claim.
+     *
+     * @param player - the player id.
+     * @param legal  - true iff the claim was a legal set.
+     */
+    public void claimResolved(int player, boolean legal) {
+        (legal ? claimsVerified : claimsRejected).increment();
+        claimToVerdict.record(System.nanoTime() - claimQueuedNanos.get(player));
+    }
+
+    /**
+     * Called when a player rejects its own claim (an illegal set never reaches the dealer, so it has no latency).
+     */
+    public void claimRejectedLocally() {
+        claimsRejected.increment();
+    }
+
+    /**
+     * @param nanos - the time from a key press until the token was placed.
+     */
+    public void tokenPlaced(long nanos) {
+        keyToToken.record(nanos);
+    }
+
+    /**
+     * Called on every iteration of the dealer's inner loop.
+     *
+     * @param wokenByClaim - true iff the dealer was woken up by a claim (rather than by its timeout).
+     */
+    public void dealerLoop(boolean wokenByClaim) {
+        dealerLoopIterations.increment();
+        if (wokenByClaim) dealerWakeUps.increment();
+    }
+
+    /**
+     * Called when the dealer clears the table after the turn timeout.
+     */
+    public void reshuffled() {
+        reshuffles.increment();
+    }
+
+    /**
+     * @param nanos - how long the table monitor was held.
+     */
+    public void tableMonitorHeld(long nanos) {
+        tableMonitorHold.record(nanos);
+    }
+
+    /**
+     * @param player - the player id.
+     * @param millis - how long the player was frozen (game clock).
+     */
+    public void frozen(int player, long millis) {
+        freezeMillis.addAndGet(player, millis);
+    }
+
+    @Override
+    public long getClaimsQueued() {
+        return claimsQueued.sum();
+    }
+
+    @Override
+    public long getClaimsVerified() {
+        return claimsVerified.sum();
+    }
+
+    @Override
+    public long getClaimsRejected() {
+        return claimsRejected.sum();
+    }
+
+    @Override
+    public long getDealerLoopIterations() {
+        return dealerLoopIterations.sum();
+    }
+
+    @Override
+    public long getDealerWakeUps() {
+        return dealerWakeUps.sum();
+    }
+
+    @Override
+    public long getReshuffles() {
+        return reshuffles.sum();
+    }
+
+    @Override
+    public long[] getPlayerFreezeMillis() {
+        long[] millis = new long[freezeMillis.length()];
+        for (int i = 0; i < millis.length; i++)
+            millis[i] = freezeMillis.get(i);
+        return millis;
+    }
+}
@@ -0,0 +1,24 @@
+package bguspl.set;
+
+/**
+ * The management interface of the game counters (the latency histograms are registered separately).
+ */
+public interface GameMetricsMXBean {
+
+    long getClaimsQueued();
+
+    long getClaimsVerified();
+
+    long getClaimsRejected();
+
+    long getDealerLoopIterations();
+
+    long getDealerWakeUps();
+
+    long getReshuffles();
+
+    /**
+     * @return - the total (game clock) milliseconds each player was frozen.
+     */
+    long[] getPlayerFreezeMillis();
+}
@@ -0,0 +1,62 @@
+package bguspl.set;
+
+/**
+ * The outcome of a single (headless) game.
+ */
+public class GameResult {
+
+    /**
+     * The name of the configuration variant and the random seed the game was played with.
+     */
+    public final String variant;
+    public final long seed;
+
+    /**
+     * The strategy and final score of each player.
+     */
+    public final String[] strategies;
+    public final int[] scores;
+
+    /**
+     * The game length in (simulated) milliseconds.
+     */
+    public final long durationMillis;
+
+    /**
+     * The number of legal claims (i.e. sets collected) and the milliseconds each claim waited for the dealer.
+     */
+    public final int legalClaims;
+    public final long[] latencies;
+
+    public GameResult(String variant, long seed, String[] strategies, int[] scores, long durationMillis,
+                      int legalClaims, long[] latencies) {
+        this.variant = variant;
+        this.seed = seed;
+        this.strategies = strategies;
+        this.scores = scores;
+        this.durationMillis = durationMillis;
+        this.legalClaims = legalClaims;
+        this.latencies = latencies;
+    }
+
+    /**
+     * @return - the highest score.
+     */
+    public int topScore() {
+        int top = 0;
+        for (int score : scores)
+            top = Math.max(top, score);
+        return top;
+    }
+
+    /**
+     * @return - the number of players with the highest score.
+     */
+    public int winnerCount() {
+        int top = topScore();
+        int count = 0;
+        for (int score : scores)
+            if (score == top) count++;
+        return count;
+    }
+}
@@ -0,0 +1,59 @@
+package bguspl.set;
+
+import java.util.Arrays;
+
+/**
+ * Collects the claims of a game: how many were legal and how long the dealer took to check each of them.
+ */
+public class GameStatistics implements GameListener {
+
+    private final Clock clock;
+
+    /**
+     * The time each player's pending claim was submitted at (-1 if none).
+     */
+    private final long[] submitted;
+
+    private long[] latencies = new long[64];
+    private int claims;
+    private int legalClaims;
+
+    /**
+     * @param clock   - the game clock.
+     * @param players - the number of players.
+     */
+    public GameStatistics(Clock clock, int players) {
+        this.clock = clock;
+        submitted = new long[players];
+        Arrays.fill(submitted, -1);
+    }
+
+    @Override
+    public synchronized void claimSubmitted(int player, int[] cards) {
+        submitted[player] = clock.currentTimeMillis();
+    }
+
+    @Override
+    public synchronized void claimResolved(int player, boolean legal) {
+        if (legal) legalClaims++;
+        if (submitted[player] < 0) return;
+        if (claims == latencies.length)
+            latencies = Arrays.copyOf(latencies, 2 * claims);
+        latencies[claims++] = clock.currentTimeMillis() - submitted[player];
+        submitted[player] = -1;
+    }
+
+    /**
+     * @return - the number of legal claims so far.
+     */
+    public synchronized int legalClaims() {
+        return legalClaims;
+    }
+
+    /**
+     * @return - the number of milliseconds each resolved claim waited for the dealer.
+     */
+    public synchronized long[] latencies() {
+        return Arrays.copyOf(latencies, claims);
+    }
+}
@@ -16,11 +16,11 @@ class InputManager extends KeyAdapter {
     private final Player[] players;
     int[] keyMap = new int[MAX_KEY_CODE + 1];
     int[] keyToSlot = new int[MAX_KEY_CODE + 1];
-    private final Logger logger;
+    private final TemplateLogger log;
 
     public InputManager(Logger logger, Config config, Player[] players) {
         this.players = players;
-        this.logger = logger;
+        this.log = new TemplateLogger(logger);
 
         // initialize the keys
         for (int player = 0; player < config.players; ++player)
@@ -42,9 +42,14 @@ class InputManager extends KeyAdapter {
         // dispatch the key event to the player according to the key map
         int keyCode = e.getKeyCode();
         int player = keyMap[keyCode] - 1;
-        if (player >= 0){
-            logger.severe("key " + keyCode + " was pressed by player " + (player + 1));
-            players[player].keyPressed(keyToSlot[keyCode]);
+        if (player >= 0 && players[player] != null) { // there are no players when replaying a game
+            log.severe(LogTemplate.KEY_PRESSED, keyCode, player + 1);
+            long input = Trace.nextInput();
+            long now = System.nanoTime();
+            // the time from the native event (millisecond resolution) until it got here
+            long dispatched = now - Math.max(0, System.currentTimeMillis() - e.getWhen()) * 1_000_000;
+            Trace.span(Trace.DISPATCH, input, player, dispatched, dispatched);
+            players[player].keyPressed(keyToSlot[keyCode], input);
         }
     }
 }
@@ -0,0 +1,208 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Plays a game journal (see GameJournal) back into a user interface, keeping the recorded timing (optionally sped up).
+ * Usage: JournalReplayer file.journal [speed] (speed is between 1 and 1000, default 1).
+ */
+public class JournalReplayer {
+
+    public static final double MIN_SPEED = 1;
+    public static final double MAX_SPEED = 1000;
+
+    private final ByteBuffer journal;
+
+    /**
+     * The recorded game data (from the journal header).
+     */
+    public final long startMillis;
+    public final int rows, columns, players, featureCount, featureSize;
+
+    /**
+     * @param file - the journal file.
+     * @throws IOException - if the file cannot be read or is not a journal.
+     */
+    public JournalReplayer(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            journal = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (journal.remaining() < 36 || journal.getInt() != GameJournal.MAGIC)
+            throw new IOException("not a game journal: " + file);
+        int version = journal.getInt();
+        if (version != GameJournal.VERSION)
+            throw new IOException("unsupported journal version " + version);
+        startMillis = journal.getLong();
+        rows = journal.getInt();
+        columns = journal.getInt();
+        players = journal.getInt();
+        featureCount = journal.getInt();
+        featureSize = journal.getInt();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("usage: JournalReplayer file.journal [speed]");
+            return;
+        }
+        JournalReplayer replayer = new JournalReplayer(Paths.get(args[0]));
+        double speed = args.length > 1 ? Double.parseDouble(args[1]) : MIN_SPEED;
+
+        Logger logger = Logger.getLogger("SetGameReplay");
+        logger.setUseParentHandlers(false);
+        ConsoleHandler handler = new ConsoleHandler();
+        handler.setLevel(Level.ALL);
+        logger.addHandler(handler);
+
+        // the table and players come from the journal, the display settings from the usual configuration file
+        Properties properties = Config.loadProperties("config.properties", logger);
+        properties.setProperty("Rows", Integer.toString(replayer.rows));
+        properties.setProperty("Columns", Integer.toString(replayer.columns));
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", Integer.toString(replayer.players));
+        properties.setProperty("FeatureCount", Integer.toString(replayer.featureCount));
+        properties.setProperty("FeatureSize", Integer.toString(replayer.featureSize));
+        Config config = new Config(logger, properties);
+
+        UserInterface ui = null;
+        if (!config.headless)
+            try {
+                ui = new UserInterfaceSwing(logger, config, new Player[config.players]);
+            } catch (UnsupportedOperationException | IllegalArgumentException e) {
+                logger.severe("error creating swing user interface: " + e.getMessage());
+            }
+        ui = new UserInterfaceDecorator(logger, ui);
+
+        replayer.replay(ui, new GameListener() {
+            @Override
+            public void claimSubmitted(int player, int[] cards) {
+                logger.info("player " + (player + 1) + " claims a set: " + Arrays.toString(cards));
+            }
+
+            @Override
+            public void claimResolved(int player, boolean legal) {
+                logger.info("player " + (player + 1) + (legal ? " collected a set" : " was penalized"));
+            }
+        }, speed);
+        ui.dispose();
+    }
+
+    /**
+     * Feeds the journal to a user interface and a listener.
+     *
+     * @param ui       - the user interface to replay the game into.
+     * @param listener - the listener for the recorded claims and verdicts.
+     * @param speed    - how many times faster than the recorded game (between MIN_SPEED and MAX_SPEED), or
+     *                 Double.POSITIVE_INFINITY for replaying without any delays.
+     * @throws InterruptedException - if the thread was interrupted while waiting for the next record.
+     */
+    public void replay(UserInterface ui, GameListener listener, double speed) throws InterruptedException {
+        if (speed != Double.POSITIVE_INFINITY)
+            speed = Math.max(MIN_SPEED, Math.min(MAX_SPEED, speed));
+        ByteBuffer in = journal.duplicate();
+        in.position(36);
+        long startNanos = System.nanoTime();
+        long recordedMillis = 0;
+
+        while (in.hasRemaining()) {
+            byte type = in.get();
+            if (type == GameJournal.END) return;
+            recordedMillis += getVarLong(in);
+            long delay = (long) (TimeUnit.MILLISECONDS.toNanos(recordedMillis) / speed) - (System.nanoTime() - startNanos);
+            if (delay > 0)
+                TimeUnit.NANOSECONDS.sleep(delay);
+            else if (Thread.interrupted())
+                throw new InterruptedException();
+
+            switch (type) {
+                case GameJournal.PLACE_CARD: {
+                    int card = (int) getVarLong(in);
+                    ui.placeCard(card, (int) getVarLong(in));
+                    break;
+                }
+                case GameJournal.REMOVE_CARD:
+                    ui.removeCard((int) getVarLong(in));
+                    break;
+                case GameJournal.PLACE_TOKEN: {
+                    int player = (int) getVarLong(in);
+                    ui.placeToken(player, (int) getVarLong(in));
+                    break;
+                }
+                case GameJournal.REMOVE_TOKENS:
+                    ui.removeTokens();
+                    break;
+                case GameJournal.REMOVE_SLOT_TOKENS:
+                    ui.removeTokens((int) getVarLong(in));
+                    break;
+                case GameJournal.REMOVE_TOKEN: {
+                    int player = (int) getVarLong(in);
+                    ui.removeToken(player, (int) getVarLong(in));
+                    break;
+                }
+                case GameJournal.COUNTDOWN: {
+                    long millis = getVarLong(in);
+                    ui.setCountdown(millis, getVarLong(in) != 0);
+                    break;
+                }
+                case GameJournal.ELAPSED:
+                    ui.setElapsed(getVarLong(in));
+                    break;
+                case GameJournal.FREEZE: {
+                    int player = (int) getVarLong(in);
+                    ui.setFreeze(player, getVarLong(in));
+                    break;
+                }
+                case GameJournal.SCORE: {
+                    int player = (int) getVarLong(in);
+                    ui.setScore(player, (int) getVarLong(in));
+                    break;
+                }
+                case GameJournal.WINNERS:
+                    ui.announceWinner(getInts(in));
+                    break;
+                case GameJournal.CLAIM: {
+                    int player = (int) getVarLong(in);
+                    listener.claimSubmitted(player, getInts(in));
+                    break;
+                }
+                case GameJournal.VERDICT: {
+                    int player = (int) getVarLong(in);
+                    listener.claimResolved(player, getVarLong(in) != 0);
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("corrupted journal (record type " + type + ")");
+            }
+        }
+    }
+
+    private static int[] getInts(ByteBuffer in) {
+        int[] values = new int[(int) getVarLong(in)];
+        for (int i = 0; i < values.length; i++)
+            values[i] = (int) getVarLong(in);
+        return values;
+    }
+
+    private static long getVarLong(ByteBuffer in) {
+        long zigzag = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if (b >= 0) break;
+        }
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+}
@@ -0,0 +1,24 @@
+package bguspl.set;
+
+/**
+ * The management interface of a latency histogram (all times in microseconds).
+ */
+public interface LatencyHistogramMXBean {
+
+    long getCount();
+
+    double getMeanMicros();
+
+    long getMaxMicros();
+
+    long getP50Micros();
+
+    long getP90Micros();
+
+    long getP99Micros();
+
+    /**
+     * Forgets all the recorded latencies.
+     */
+    void reset();
+}
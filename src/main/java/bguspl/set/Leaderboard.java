@@ -0,0 +1,192 @@
+package bguspl.set;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ranks players by their points across all the games that feed it (e.g. all the games of a tournament).
+ * Awarding a point is an atomic increment plus, when the player's points cross into another bucket, a move in a score
+ * histogram (so percentile ranks never scan the players). The top players are an immutable array published by
+ * compare-and-set: only a point beyond the last leader's points looks at it, and only a change of the ranking
+ * replaces it. Everything can be read while the games run.
+ */
+public class Leaderboard implements LeaderboardMXBean {
+
+    /**
+     * The number of top players kept by default.
+     */
+    public static final int DEFAULT_SIZE = 10;
+
+    /**
+     * The score histogram: a bucket per score below LINEAR_BUCKETS, and then SUB_BUCKETS buckets per power of 2 (so a
+     * bucket above the linear ones spans less than 1/SUB_BUCKETS of its scores).
+     */
+    private static final int LINEAR_BITS = 6;
+    private static final int SUB_BITS = 5;
+    private static final int LINEAR_BUCKETS = 1 << LINEAR_BITS;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    static final int BUCKETS = LINEAR_BUCKETS + (Long.SIZE - 1 - LINEAR_BITS) * SUB_BUCKETS;
+
+    /**
+     * A player on the leaderboard.
+     */
+    public static class Entry {
+
+        public final String name;
+        private final AtomicLong points = new AtomicLong();
+        private final Leaderboard leaderboard;
+
+        private Entry(String name, Leaderboard leaderboard) {
+            this.name = name;
+            this.leaderboard = leaderboard;
+        }
+
+        /**
+         * Awards the player a point.
+         */
+        public void point() {
+            leaderboard.awarded(this, points.incrementAndGet());
+        }
+
+        public long points() {
+            return points.get();
+        }
+    }
+
+    private static final Comparator<Entry> BY_POINTS = Comparator.comparingLong(Entry::points).reversed();
+
+    private final int size;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder totalPoints = new LongAdder();
+
+    /**
+     * The number of players per score bucket (see bucket).
+     */
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+    /**
+     * The leading players, best first as of their last ranking (replaced, never modified).
+     */
+    private final AtomicReference<Entry[]> top = new AtomicReference<>(new Entry[0]);
+
+    /**
+     * @param size - the number of top players to keep.
+     */
+    public Leaderboard(int size) {
+        this.size = size;
+    }
+
+    /**
+     * @param name - the player's name.
+     * @return - the player's entry (created on first use; players are identified by name).
+     */
+    public Entry entry(String name) {
+        return entries.computeIfAbsent(name, n -> {
+            histogram.incrementAndGet(0); // with no points yet
+            return new Entry(n, this);
+        });
+    }
+
+    /**
+     * @return - the histogram bucket of a score.
+     */
+    static int bucket(long points) {
+        if (points < LINEAR_BUCKETS) return (int) points;
+        int power = Long.SIZE - 1 - Long.numberOfLeadingZeros(points);
+        return LINEAR_BUCKETS + (power - LINEAR_BITS) * SUB_BUCKETS
+                + (int) (points >>> (power - SUB_BITS)) - SUB_BUCKETS;
+    }
+
+    private void awarded(Entry entry, long points) {
+        totalPoints.increment();
+        int from = bucket(points - 1), to = bucket(points);
+        if (from != to) {
+            histogram.incrementAndGet(to);
+            histogram.decrementAndGet(from);
+        }
+
+        while (true) {
+            Entry[] leaders = top.get();
+            Entry last = leaders.length < size ? null : leaders[leaders.length - 1];
+            if (last != null && last != entry && points <= last.points())
+                return; // a tie does not displace a leader
+            Entry[] ranked = rank(leaders, entry, points);
+            if (ranked == leaders || top.compareAndSet(leaders, ranked))
+                return;
+        }
+    }
+
+    /**
+     * @return - the leaders with the entry (that now has the given points) in its place, or the same array if the
+     * entry is already there (points only grow, so a player can only move up by scoring).
+     */
+    private Entry[] rank(Entry[] leaders, Entry entry, long points) {
+        int index = leaders.length - 1;
+        while (index >= 0 && leaders[index] != entry) index--;
+        Entry[] ranked;
+        if (index >= 0) {
+            if (index == 0 || leaders[index - 1].points() >= points)
+                return leaders;
+            ranked = leaders.clone();
+        } else {
+            ranked = Arrays.copyOf(leaders, Math.min(size, leaders.length + 1));
+            index = ranked.length - 1;
+        }
+        for (; index > 0 && ranked[index - 1].points() < points; index--)
+            ranked[index] = ranked[index - 1];
+        ranked[index] = entry;
+        return ranked;
+    }
+
+    /**
+     * @return - the leading players, best first.
+     */
+    public Entry[] top() {
+        Entry[] leaders = top.get().clone();
+        Arrays.sort(leaders, BY_POINTS); // the order may have changed since the last update
+        return leaders;
+    }
+
+    @Override
+    public String[] getTopPlayers() {
+        Entry[] leaders = top();
+        String[] lines = new String[leaders.length];
+        for (int i = 0; i < leaders.length; i++)
+            lines[i] = leaders[i].name + ": " + leaders[i].points();
+        return lines;
+    }
+
+    @Override
+    public long getPlayerCount() {
+        return entries.size();
+    }
+
+    @Override
+    public long getTotalPoints() {
+        return totalPoints.sum();
+    }
+
+    /**
+     * The rank is exact below LINEAR_BUCKETS points; above them, the players with fewer points in the same bucket are
+     * not counted (see bucket).
+     */
+    @Override
+    public double percentileRank(String player) {
+        Entry entry = entries.get(player);
+        if (entry == null) return 0;
+        int bucket = bucket(entry.points());
+        long below = 0, count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long players = histogram.get(i);
+            count += players;
+            if (i < bucket) below += players;
+        }
+        return 100.0 * below / Math.max(1, count);
+    }
+}
@@ -0,0 +1,22 @@
+package bguspl.set;
+
+/**
+ * The management interface of the leaderboard.
+ */
+public interface LeaderboardMXBean {
+
+    /**
+     * @return - the leading players, best first, as "name: points".
+     */
+    String[] getTopPlayers();
+
+    long getPlayerCount();
+
+    long getTotalPoints();
+
+    /**
+     * @param player - the player's name.
+     * @return - the percentage of players with fewer points (0 if the player is unknown).
+     */
+    double percentileRank(String player);
+}
@@ -0,0 +1,105 @@
+package bguspl.set;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Date;
+import java.util.logging.Level;
+
+/**
+ * Converts the binary log files written by the AsyncLogHandler to the text format of the regular log.
+ * Usage: LogDecoder file.binlog... (the text is printed to the standard output).
+ */
+public class LogDecoder {
+
+    /**
+     * The default format (same as the one in the default config.properties file).
+     */
+    static final String DEFAULT_FORMAT = "[%1$tT.%1$tL] [%2$-7s] %3$s%n";
+
+    private final PrintStream out;
+    private String format = DEFAULT_FORMAT;
+
+    public LogDecoder(PrintStream out) {
+        this.out = out;
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("usage: LogDecoder file.binlog...");
+            return;
+        }
+        LogDecoder decoder = new LogDecoder(System.out);
+        for (String file : args)
+            try (InputStream in = Files.newInputStream(Paths.get(file))) {
+                decoder.decode(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        System.out.flush();
+    }
+
+    /**
+     * Decodes a whole binary log.
+     *
+     * @param stream - the binary log contents.
+     * @throws IOException - if the stream cannot be read or is not a binary log.
+     */
+    public void decode(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != AsyncLogHandler.MAGIC)
+            throw new IOException("not a binary log file");
+        int version = in.readInt();
+        if (version != AsyncLogHandler.VERSION)
+            throw new IOException("unsupported binary log version " + version);
+
+        while (true) {
+            int kind = in.read();
+            if (kind < 0) return;
+            try {
+                switch (kind) {
+                    case AsyncLogHandler.TEMPLATE_RECORD: {
+                        long millis = in.readLong();
+                        int level = in.readInt();
+                        LogTemplate template = LogTemplate.values()[in.readShort()];
+                        long[] args = new long[in.readByte()];
+                        for (int i = 0; i < args.length; i++)
+                            args[i] = in.readLong();
+                        print(millis, level, template.format(args));
+                        break;
+                    }
+                    case AsyncLogHandler.TEXT_RECORD: {
+                        long millis = in.readLong();
+                        int level = in.readInt();
+                        print(millis, level, readString(in));
+                        break;
+                    }
+                    case AsyncLogHandler.FORMAT_RECORD:
+                        format = readString(in);
+                        break;
+                    default:
+                        throw new IOException("corrupted binary log (record kind " + kind + ")");
+                }
+            } catch (EOFException e) {
+                return; // the last record was cut (e.g. the game was killed while writing)
+            }
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void print(long millis, int level, String message) {
+        out.print(String.format(format, new Date(millis), Level.parse(Integer.toString(level)).getLocalizedName(), message));
+    }
+}
@@ -0,0 +1,46 @@
+package bguspl.set;
+
+/**
+ * The messages logged on the hot paths of the game. Only the template id and the numeric arguments are recorded,
+ * the text is produced offline by the LogDecoder.
+ * Note: the ordinal is the id written to the log file, so new templates must only be appended.
+ */
+public enum LogTemplate {
+
+    PLACE_CARD("placing card %d in slot %d"),
+    REMOVE_CARD("removing card from slot %d"),
+    PLACE_TOKEN("player %d placing token on slot %d"),
+    REMOVE_ALL_TOKENS("removing all tokens"),
+    REMOVE_SLOT_TOKENS("removing tokens from slot %d"),
+    REMOVE_TOKEN("removing player %d token from slot %d"),
+    COUNTDOWN("updating countdown to %d"),
+    ELAPSED("updating elapsed time to %d"),
+    FREEZE("setting player %d freeze to %d"),
+    SCORE("setting player %d score to %d"),
+    DISPOSE("disposing of user interface elements"),
+    KEY_PRESSED("key %d was pressed by player %d");
+
+    /**
+     * The maximal number of arguments a template may have.
+     */
+    public static final int MAX_ARGS = 3;
+
+    private final String pattern;
+
+    LogTemplate(String pattern) {
+        this.pattern = pattern;
+    }
+
+    /**
+     * Formats the message text (not for use on the hot paths).
+     *
+     * @param args - the template arguments.
+     * @return - the message text.
+     */
+    public String format(long... args) {
+        Object[] boxed = new Object[args.length];
+        for (int i = 0; i < args.length; i++)
+            boxed[i] = args[i];
+        return String.format(pattern, boxed);
+    }
+}
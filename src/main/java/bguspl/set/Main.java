@@ -1,11 +1,15 @@
 package bguspl.set;
 
-import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Checkpoint;
 import bguspl.set.ex.Player;
-import bguspl.set.ex.Table;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -17,7 +21,12 @@ import java.util.logging.*;
  */
 public class Main {
 
-    private static Dealer dealer;
+    /**
+     * The number of log records that can be waiting to be written to the log file.
+     */
+    private static final int LOG_RING_CAPACITY = 1 << 14;
+
+    private static Game game;
     private static Thread mainThread;
 
     private static boolean xButtonPressed = false;
@@ -27,8 +36,8 @@ public class Main {
         if (logger != null)
             logger.severe("exit button pressed");
         xButtonPressed = true;
-        if (dealer != null)
-            dealer.terminate();
+        if (game != null)
+            game.terminate();
         mainThread.join();
     }
 
@@ -43,39 +52,102 @@ public class Main {
         mainThread = Thread.currentThread();
 
         // create the game environment objects
-        logger = initLogger();
+        String runName = new SimpleDateFormat("M-d_HH-mm-ss").format(Calendar.getInstance().getTime());
+        logger = initLogger(runName);
         ThreadLogger.logStart(logger, Thread.currentThread().getName());
         Config config = new Config(logger, "config.properties");
-        Util util = new UtilImpl(config);
+        SetIndex index = null;
+        if (!config.setIndexFile.isEmpty())
+            try {
+                index = SetIndex.open(Paths.get(config.setIndexFile), config);
+            } catch (IOException e) {
+                logger.severe("error opening set index: " + e);
+            }
+        Util util = new UtilImpl(config, index);
+        Clock clock = config.virtualClock ? new VirtualClock(System.currentTimeMillis()) : new SystemClock();
 
         Player[] players = new Player[config.players];
+        UserInterfaceBus bus = new UserInterfaceBus(logger, config, clock);
         UserInterface ui = null;
+        if (!config.headless)
+            try {
+                ui = new UserInterfaceSwing(logger, config, players);
+            } catch (UnsupportedOperationException | IllegalArgumentException e) {
+                logger.severe("error creating swing user interface: " + e.getMessage());
+                logger.severe("will try to run without user interface");
+            }
+        if (ui == null && config.humanPlayers > 0 && config.botPort == 0)
+            logger.severe("warning: running with human players with no user interface");
+        bus.add("window", new UserInterfaceDecorator(logger, ui), UserInterfaceBus.Overflow.RESYNC);
+        if (config.spectatorPort > 0)
+            try {
+                bus.add("spectators", new SpectatorServer(logger, config, config.spectatorPort),
+                        UserInterfaceBus.Overflow.RESYNC);
+            } catch (IOException e) {
+                logger.severe("error creating spectator server: " + e);
+            }
+        BotGateway bots = null;
+        if (config.botPort > 0)
+            try {
+                bots = new BotGateway(logger, config, config.botPort, players);
+                bus.add("bots", bots, UserInterfaceBus.Overflow.RESYNC);
+            } catch (IOException e) {
+                logger.severe("error creating bot gateway: " + e);
+            }
+        GameJournal journal = null;
+        if (config.journal)
+            try {
+                journal = new GameJournal(Paths.get("./logs/" + runName + ".journal"), config, bus.eventClock());
+                bus.add("journal", journal, journal, UserInterfaceBus.Overflow.GROW);
+            } catch (IOException e) {
+                logger.severe("error creating game journal: " + e);
+            }
+
+        ColumnarExporter exporter = null;
+        ColumnarExporter.Recorder recorder = null;
+        if (!config.exportFile.isEmpty())
+            try {
+                exporter = new ColumnarExporter(logger, Paths.get(config.exportFile), ColumnarExporter.cards(config));
+                recorder = exporter.recorder(config.randomSeed, bus.eventClock());
+                bus.add("export", recorder, recorder, UserInterfaceBus.Overflow.GROW);
+            } catch (IOException e) {
+                logger.severe("error creating columnar export: " + e);
+            }
+
+        // the journal and the recorder are sent the game events through the bus
+        GameListener listener = journal == null && recorder == null ? GameListener.NONE : bus;
+        if (bots != null)
+            listener = GameListener.both(listener, bots);
+        Env env = new Env(logger, config, bus, util, listener, clock);
+
+        ObjectName leaderboardName = null;
         try {
-            ui = new UserInterfaceSwing(logger, config, players);
-        } catch (UnsupportedOperationException | IllegalArgumentException e) {
-            logger.severe("error creating swing user interface: " + e.getMessage());
-            logger.severe("will try to run without user interface");
-            if (config.humanPlayers > 0)
-                logger.severe("warning: running with human players with no user interface");
+            env.metrics.register(runName);
+            leaderboardName = new ObjectName(GameMetrics.DOMAIN + ":type=Leaderboard");
+            ManagementFactory.getPlatformMBeanServer().registerMBean(env.leaderboard, leaderboardName);
+        } catch (JMException e) {
+            logger.severe("error registering the game metrics: " + e);
         }
-        ui = new UserInterfaceDecorator(logger, util, ui);
-
-        Env env = new Env(logger, config, ui, util);
-
-        // create the game entities
-        Table table = new Table(env);
-        dealer = new Dealer(env, table, players);
-        for (int i = 0; i < players.length; i++)
-            players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
-
-        // start the dealer thread
-        ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
-        dealerThread.startWithLog();
 
+        // create the game entities (resuming the checkpointed game, if any) and play
+        Checkpoint checkpoint = null;
+        if (!config.checkpointFile.isEmpty() && Files.exists(Paths.get(config.checkpointFile)))
+            try {
+                long start = System.nanoTime();
+                checkpoint = Checkpoint.read(Paths.get(config.checkpointFile));
+                game = new Game(env, players, checkpoint);
+                logger.info("resumed the game of " + config.checkpointFile + " in "
+                        + (System.nanoTime() - start) / 1000 + " us");
+            } catch (IOException | IllegalArgumentException e) {
+                logger.severe("error resuming from checkpoint " + config.checkpointFile + ": " + e);
+                checkpoint = null;
+            }
+        if (checkpoint == null)
+            game = new Game(env, players);
         try {
-            // shutdown stuff
-            dealerThread.joinWithLog();
-            if (!xButtonPressed && config.endGamePauseMillies > 0)
+            game.play();
+            // leave the winners on the screen for a while
+            if (!xButtonPressed && !config.headless && !config.virtualClock && config.endGamePauseMillies > 0)
                 Thread.sleep(config.endGamePauseMillies);
         } catch (InterruptedException ignored) {
         } finally {
@@ -84,20 +156,35 @@ public class Main {
             ThreadLogger.logStop(logger, Thread.currentThread().getName());
             if (!xButtonPressed)
                 env.ui.dispose();
+            if (journal != null)
+                journal.dispose();
+            if (exporter != null)
+                try {
+                    recorder.dispose();
+                    exporter.close();
+                } catch (InterruptedException ignored) {
+                }
+            env.metrics.unregister();
+            if (leaderboardName != null)
+                try {
+                    ManagementFactory.getPlatformMBeanServer().unregisterMBean(leaderboardName);
+                } catch (JMException ignored) {
+                }
+            if (clock instanceof VirtualClock)
+                ((VirtualClock) clock).shutdown();
             for (Handler h : logger.getHandlers())
                 h.flush();
         }
     }
 
-    private static Logger initLogger() {
+    private static Logger initLogger(String runName) {
 
-        // just to make our log file nicer :)
-        SimpleDateFormat format = new SimpleDateFormat("M-d_HH-mm-ss");
-        FileHandler handler;
+        Handler handler;
         try {
             // noinspection ResultOfMethodCallIgnored
             new File("./logs/").mkdirs();
-            handler = new FileHandler("./logs/" + format.format(Calendar.getInstance().getTime()) + ".log");
+            // binary log, see LogDecoder for turning it into text
+            handler = new AsyncLogHandler(Paths.get("./logs/" + runName + ".binlog"), LOG_RING_CAPACITY);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -113,14 +200,21 @@ public class Main {
     public static void setLoggerLevelAndFormat(Logger logger, Level level, String format) {
         Handler[] handlers = logger.getHandlers();
         if (handlers != null)
-            Arrays.stream(handlers).forEach(h -> h.setFormatter(new SimpleFormatter() {
-                // default format (with timestamp) = "[%1$tF %1$tT] [%2$-7s] %3$s%n";
-                @Override
-                public synchronized String format(LogRecord lr) {
-                    return String.format(format, new Date(lr.getMillis()),
-                            lr.getLevel().getLocalizedName(), lr.getMessage());
+            Arrays.stream(handlers).forEach(h -> {
+                if (h instanceof AsyncLogHandler) {
+                    // the text is formatted offline
+                    ((AsyncLogHandler) h).setTextFormat(format);
+                    return;
                 }
-            }));
+                h.setFormatter(new SimpleFormatter() {
+                    // default format (with timestamp) = "[%1$tF %1$tT] [%2$-7s] %3$s%n";
+                    @Override
+                    public synchronized String format(LogRecord lr) {
+                        return String.format(format, new Date(lr.getMillis()),
+                                lr.getLevel().getLocalizedName(), lr.getMessage());
+                    }
+                });
+            });
         logger.setLevel(level);
     }
 }
@@ -0,0 +1,169 @@
+package bguspl.set;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * A bot for the BotGateway: keeps a copy of the table (see SpectatorClient), looks for a set on it and sends the key
+ * presses that move its tokens onto the set in one batch.
+ * Usage: ReferenceBot port player secret (player starts from 1; prints the verdicts of its claims).
+ * Note: the table is updated by the thread reading from the gateway while the bot decides on another thread, so a
+ * decision can be based on a slightly stale table (the worst outcome is a wasted key press).
+ */
+public class ReferenceBot extends SpectatorClient {
+
+    /**
+     * The interval (in milliseconds) at which the bot looks at the table, and after which it repeats key presses that
+     * had no effect (e.g. ones pressed while the dealer was dealing).
+     */
+    private static final long TICK_MILLIS = 20;
+    private static final long RESEND_MILLIS = 500;
+
+    public final int player;
+    private final DataOutputStream out;
+    private final Util util;
+
+    /**
+     * The totals of the bot's checked claims, as last received.
+     */
+    public volatile boolean authenticated;
+    public volatile int legal;
+    public volatile int illegal;
+
+    private int[] lastSent = new int[0];
+    private long lastSentMillis;
+
+    /**
+     * Connects to the gateway and authenticates.
+     *
+     * @param port   - the port of the gateway.
+     * @param player - the player to play (starting from 0).
+     * @param secret - the secret of the gateway.
+     * @throws IOException - if the connection failed.
+     */
+    public ReferenceBot(int port, int player, String secret) throws IOException {
+        super(port);
+        this.player = player;
+        Properties properties = new Properties();
+        properties.setProperty("FeatureSize", Integer.toString(featureSize));
+        properties.setProperty("FeatureCount", Integer.toString(featureCount));
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        util = new UtilImpl(new Config(logger, properties));
+
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        byte[] bytes = secret.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(BotGateway.AUTH);
+        out.writeShort(player);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+        out.flush();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("usage: ReferenceBot port player secret");
+            return;
+        }
+        try (ReferenceBot bot = new ReferenceBot(Integer.parseInt(args[0]), Integer.parseInt(args[1]) - 1, args[2])) {
+            Thread keys = new Thread(() -> {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        bot.play();
+                        Thread.sleep(TICK_MILLIS);
+                    }
+                } catch (IOException | InterruptedException ignored) {
+                }
+            }, "bot-keys");
+            keys.setDaemon(true);
+            keys.start();
+            int verdicts = 0;
+            while (bot.next() != null)
+                if (bot.legal + bot.illegal != verdicts) {
+                    verdicts = bot.legal + bot.illegal;
+                    System.out.println("player " + (bot.player + 1) + ": " + bot.legal + " legal claims, "
+                            + bot.illegal + " illegal claims");
+                }
+            keys.interrupt();
+        }
+    }
+
+    @Override
+    protected String message(int type, DataInputStream in) throws IOException {
+        switch (type) {
+            case BotGateway.AUTHENTICATED:
+                authenticated = in.readShort() == player;
+                return "authenticated as player " + (player + 1);
+            case BotGateway.VERDICTS: {
+                in.readShort();
+                legal = in.readInt();
+                illegal = in.readInt();
+                return "claims: " + legal + " legal, " + illegal + " illegal";
+            }
+            default:
+                return super.message(type, in);
+        }
+    }
+
+    /**
+     * Sends the key presses that move the bot's tokens onto a set of the table (if there is one and the player is not
+     * frozen). Call repeatedly while the game runs.
+     *
+     * @throws IOException - if the connection failed.
+     */
+    public void play() throws IOException {
+        int[] keys = nextKeys();
+        long now = System.currentTimeMillis();
+        if (keys.length == 0 || Arrays.equals(keys, lastSent) && now - lastSentMillis < RESEND_MILLIS) return;
+        press(keys);
+        lastSent = keys;
+        lastSentMillis = now;
+    }
+
+    /**
+     * @return - the slots to press: the bot's tokens that are not on the set it goes for, then the cards of the set
+     * without its token.
+     */
+    int[] nextKeys() {
+        if (!authenticated || winners != null || freezes[player] > 0) return new int[0];
+        List<Integer> deck = new ArrayList<>(cards.length);
+        for (int card : cards)
+            if (card >= 0) deck.add(card);
+        List<int[]> sets = util.findSets(deck, 1);
+        if (sets.isEmpty()) return new int[0];
+
+        boolean[] target = new boolean[cards.length];
+        for (int card : sets.get(0))
+            for (int slot = 0; slot < cards.length; slot++)
+                if (cards[slot] == card) target[slot] = true;
+        int[] keys = new int[cards.length];
+        int count = 0;
+        for (int slot = 0; slot < cards.length; slot++)
+            if (hasToken(player, slot) && !target[slot]) keys[count++] = slot;
+        for (int slot = 0; slot < cards.length; slot++)
+            if (target[slot] && !hasToken(player, slot)) keys[count++] = slot;
+        return Arrays.copyOf(keys, count);
+    }
+
+    /**
+     * Sends key presses in one message.
+     *
+     * @param slots - the slots to press (at most BotGateway.MAX_BATCH).
+     * @throws IOException - if the connection failed.
+     */
+    public synchronized void press(int... slots) throws IOException {
+        out.writeByte(BotGateway.KEYS);
+        out.writeShort(slots.length);
+        for (int slot : slots)
+            out.writeShort(slot);
+        out.flush();
+    }
+}
@@ -0,0 +1,479 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The state the processes of a sharded tournament share (see ShardedTournament): a file that every process maps
+ * read-write, so no process ever waits for another.
+ * It holds the work assignment (a counter the shards take games from) and a record per shard: its health (process id,
+ * heartbeat and state), the number of games of every variant it took, and a slot of totals per worker thread. A slot
+ * has a single writer (its worker, or the coordinator once the shard is dead), which adds a game in place between
+ * making the version of the slot odd and making it even again, so the readers copy a slot again while it is being
+ * written (a seqlock), and no thread ever waits for a lock. A shard that dies while adding a game leaves that game out
+ * of its count of games (so it is counted as lost, see lost()), though the totals keep the part of it added by then.
+ * A shard that dies between taking a game and counting it as taken loses that game without a trace: the coordinator
+ * reports fewer games than it asked for then.
+ * File layout (longs in the native byte order): a header of HEADER_LONGS and a record per shard: SHARD_LONGS, the
+ * number of games it took of every variant, and per slot its version and its totals. The totals are a record per
+ * variant: VARIANT_LONGS totals, 2 longs per seat (the score total and the bits of the double win share total) and
+ * then the claim latency counts per bucket (see Tournament.LATENCY_BUCKETS).
+ */
+public class Scoreboard {
+
+    static final long MAGIC = 0x5345544253434f52L; // "SETBSCOR"
+    static final long VERSION = 3;
+
+    // the header
+    private static final int HEADER_LONGS = 9;
+    private static final int H_MAGIC = 0, H_VERSION = 1, H_SHARDS = 2, H_VARIANTS = 3, H_SEATS = 4, H_GAMES = 5,
+            H_SEED = 6, H_NEXT = 7, H_SLOTS = 8;
+
+    // a shard
+    private static final int SHARD_LONGS = 3;
+    private static final int S_PID = 0, S_HEARTBEAT = 1, S_STATE = 2;
+
+    // a variant
+    private static final int VARIANT_LONGS = 8;
+    private static final int V_GAMES = 0, V_FAILURES = 1, V_PLAYERS = 2, V_DURATION = 3, V_LONGEST = 4,
+            V_LEGAL_CLAIMS = 5, V_MAX_LATENCY = 6;
+    private static final int LATENCY_LONGS = Tournament.LATENCY_BUCKETS;
+
+    /**
+     * How long a reader waits for the writer of a slot before it copies the slot as it is (its writer is dead then,
+     * until the coordinator takes the slot over, see lost()).
+     */
+    private static final long TORN_NANOS = 100_000_000;
+
+    /**
+     * The states of a shard.
+     */
+    public static final int STARTING = 0;
+    public static final int RUNNING = 1;
+    public static final int DONE = 2;
+    public static final int FAILED = 3;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    public final int shards;
+    public final int slots;
+    public final int variants;
+    public final int seats;
+    public final long games;
+    public final long seed;
+
+    private final MappedByteBuffer buffer;
+    private final int variantLongs;
+    private final int totalsLongs;
+    private final int shardLongs;
+
+    private Scoreboard(MappedByteBuffer buffer, int shards, int slots, int variants, int seats, long games, long seed) {
+        this.buffer = buffer;
+        this.shards = shards;
+        this.slots = slots;
+        this.variants = variants;
+        this.seats = seats;
+        this.games = games;
+        this.seed = seed;
+        variantLongs = variantLongs(seats);
+        totalsLongs = variantLongs * variants;
+        shardLongs = (int) shardLongs(slots, variants, seats);
+    }
+
+    private static int variantLongs(int seats) {
+        return VARIANT_LONGS + 2 * seats + LATENCY_LONGS;
+    }
+
+    private static long shardLongs(int slots, int variants, int seats) {
+        return SHARD_LONGS + variants + slots * (1L + (long) variantLongs(seats) * variants);
+    }
+
+    private static long bytes(int shards, int slots, int variants, int seats) {
+        return (HEADER_LONGS + shardLongs(slots, variants, seats) * shards) * Long.BYTES;
+    }
+
+    private static MappedByteBuffer map(Path file, long bytes) throws IOException {
+        if (bytes > Integer.MAX_VALUE)
+            throw new IOException("a scoreboard of " + bytes + " bytes is too large");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() != bytes)
+                throw new IOException(file + " is truncated");
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        }
+    }
+
+    /**
+     * Creates an empty scoreboard (replacing the file).
+     *
+     * @param file     - the scoreboard file.
+     * @param shards   - the number of shards.
+     * @param slots    - the number of slots of totals per shard (its worker threads, which add games at the same time).
+     * @param variants - the number of configuration variants.
+     * @param seats    - the most players of a variant.
+     * @param games    - the number of games per variant.
+     * @param seed     - the seed of the first game (game i of every variant is played with the seed seed + i).
+     * @return - the scoreboard.
+     * @throws IOException - if the file cannot be written.
+     */
+    public static Scoreboard create(Path file, int shards, int slots, int variants, int seats, long games, long seed)
+            throws IOException {
+        long bytes = bytes(shards, slots, variants, seats);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.allocate(1), bytes - 1); // the rest of the file reads as zeros
+        }
+        Scoreboard board = new Scoreboard(map(file, bytes), shards, slots, variants, seats, games, seed);
+        board.set(H_SHARDS, shards);
+        board.set(H_SLOTS, slots);
+        board.set(H_VARIANTS, variants);
+        board.set(H_SEATS, seats);
+        board.set(H_GAMES, games);
+        board.set(H_SEED, seed);
+        board.set(H_VERSION, VERSION);
+        board.set(H_MAGIC, MAGIC); // last: the board is complete once it has its magic
+        board.buffer.force();
+        return board;
+    }
+
+    /**
+     * Maps an existing scoreboard.
+     *
+     * @param file - the scoreboard file.
+     * @return - the scoreboard.
+     * @throws IOException - if the file cannot be read or is not a scoreboard.
+     */
+    public static Scoreboard open(Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LONGS * Long.BYTES).order(ByteOrder.nativeOrder());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) >= 0) ;
+        }
+        if (header.hasRemaining() || header.getLong(H_MAGIC * Long.BYTES) != MAGIC)
+            throw new IOException(file + " is not a scoreboard");
+        long version = header.getLong(H_VERSION * Long.BYTES);
+        if (version != VERSION)
+            throw new IOException("unsupported scoreboard version " + version);
+        int shards = (int) header.getLong(H_SHARDS * Long.BYTES);
+        int slots = (int) header.getLong(H_SLOTS * Long.BYTES);
+        int variants = (int) header.getLong(H_VARIANTS * Long.BYTES);
+        int seats = (int) header.getLong(H_SEATS * Long.BYTES);
+        return new Scoreboard(map(file, bytes(shards, slots, variants, seats)), shards, slots, variants, seats,
+                header.getLong(H_GAMES * Long.BYTES), header.getLong(H_SEED * Long.BYTES));
+    }
+
+    private long get(int index) {
+        return (long) LONGS.getVolatile(buffer, index * Long.BYTES);
+    }
+
+    private void set(int index, long value) {
+        LONGS.setVolatile(buffer, index * Long.BYTES, value);
+    }
+
+    private long add(int index, long delta) {
+        return (long) LONGS.getAndAdd(buffer, index * Long.BYTES, delta);
+    }
+
+    // the writes of the totals of a slot (by its single writer)
+
+    private void max(int index, long value) {
+        if (value > get(index))
+            LONGS.setRelease(buffer, index * Long.BYTES, value);
+    }
+
+    private void addDouble(int index, double delta) {
+        LONGS.setRelease(buffer, index * Long.BYTES,
+                Double.doubleToRawLongBits(Double.longBitsToDouble(get(index)) + delta));
+    }
+
+    private int shard(int shard) {
+        return HEADER_LONGS + shardLongs * shard;
+    }
+
+    private int claims(int shard) {
+        return shard(shard) + SHARD_LONGS;
+    }
+
+    /**
+     * @return - the index of the version of a slot (its totals follow).
+     */
+    private int slot(int shard, int slot) {
+        return claims(shard) + variants + (1 + totalsLongs) * slot;
+    }
+
+    /**
+     * @return - the number of games of all the variants.
+     */
+    public long total() {
+        return games * variants;
+    }
+
+    /**
+     * Takes the next game to play.
+     *
+     * @param shard - the shard taking it.
+     * @return - the index of the game (variant index % variants, seed index / variants), total() if none is left.
+     */
+    public long claim(int shard) {
+        long game = add(H_NEXT, 1);
+        if (game >= total()) return total();
+        add(claims(shard) + (int) (game % variants), 1);
+        return game;
+    }
+
+    /**
+     * Called by a shard when it starts.
+     *
+     * @param shard - the shard.
+     * @param pid   - its process id.
+     */
+    public void started(int shard, long pid) {
+        set(shard(shard) + S_PID, pid);
+        heartbeat(shard, System.currentTimeMillis());
+        set(shard(shard) + S_STATE, RUNNING);
+    }
+
+    /**
+     * Called by every shard as its games progress, to show it is alive.
+     *
+     * @param shard  - the shard.
+     * @param millis - the time (System.currentTimeMillis) its least recent game made progress.
+     */
+    public void heartbeat(int shard, long millis) {
+        set(shard(shard) + S_HEARTBEAT, millis);
+    }
+
+    /**
+     * Sets the final state of a shard.
+     *
+     * @param shard - the shard.
+     * @param state - DONE or FAILED.
+     */
+    public void finished(int shard, int state) {
+        set(shard(shard) + S_STATE, state);
+    }
+
+    /**
+     * Starts writing the totals of a slot: makes its version odd, so the readers of the slot wait for the write to end.
+     *
+     * @return - the version that ends the write.
+     */
+    private long beginWrite(int slot) {
+        long version = get(slot);
+        LONGS.setOpaque(buffer, slot * Long.BYTES, version + 1);
+        VarHandle.releaseFence(); // the odd version before the totals
+        return version + 2;
+    }
+
+    private void endWrite(int slot, long version) {
+        LONGS.setRelease(buffer, slot * Long.BYTES, version); // the totals before the even version
+    }
+
+    /**
+     * Adds the result of a game to the totals of its variant.
+     *
+     * @param shard   - the shard that played it.
+     * @param slot    - the slot of the worker of the shard that played it (its only writer).
+     * @param variant - the variant.
+     * @param result  - the result.
+     */
+    public void add(int shard, int slot, int variant, GameResult result) {
+        int at = slot(shard, slot);
+        long version = beginWrite(at);
+        int base = at + 1 + variantLongs * variant;
+        int players = Math.min(result.scores.length, seats);
+        max(base + V_PLAYERS, players);
+        add(base + V_DURATION, result.durationMillis);
+        max(base + V_LONGEST, result.durationMillis);
+        add(base + V_LEGAL_CLAIMS, result.legalClaims);
+        int latencies = base + VARIANT_LONGS + 2 * seats;
+        for (long latency : result.latencies) {
+            add(latencies + Tournament.latencyBucket(latency), 1);
+            max(base + V_MAX_LATENCY, latency);
+        }
+        int top = result.topScore();
+        double share = 1.0 / result.winnerCount();
+        for (int seat = 0; seat < players; seat++) {
+            add(base + VARIANT_LONGS + 2 * seat, result.scores[seat]);
+            if (result.scores[seat] == top) addDouble(base + VARIANT_LONGS + 2 * seat + 1, share);
+        }
+        add(base + V_GAMES, 1); // last: a shard that dies before it loses the game (see lost())
+        endWrite(at, version);
+    }
+
+    /**
+     * Counts a game that failed.
+     *
+     * @param shard   - the shard that played it.
+     * @param slot    - the slot of the worker of the shard that played it (its only writer).
+     * @param variant - the variant.
+     */
+    public void fail(int shard, int slot, int variant) {
+        fail(shard, slot, variant, 1);
+    }
+
+    private void fail(int shard, int slot, int variant, long games) {
+        int at = slot(shard, slot);
+        long version = beginWrite(at);
+        add(at + 1 + variantLongs * variant + V_FAILURES, games);
+        endWrite(at, version);
+    }
+
+    /**
+     * Counts the games a dead shard took and did not finish as failures of their variants (by the coordinator, once
+     * the shard is dead: it is the writer of the slots of the shard then).
+     *
+     * @param shard - the shard.
+     * @return - the number of games lost.
+     */
+    public long lost(int shard) {
+        for (int slot = 0; slot < slots; slot++) {
+            int at = slot(shard, slot);
+            long version = get(at);
+            if ((version & 1) != 0)
+                endWrite(at, version + 1); // its worker died adding a game
+        }
+        long[] totals = totals(shard);
+        long lost = 0;
+        for (int variant = 0; variant < variants; variant++) {
+            long games = get(claims(shard) + variant) - totals[variantLongs * variant + V_GAMES]
+                    - totals[variantLongs * variant + V_FAILURES];
+            if (games > 0) {
+                fail(shard, 0, variant, games);
+                lost += games;
+            }
+        }
+        return lost;
+    }
+
+    /**
+     * @return - the totals of a shard (of all its slots).
+     */
+    private long[] totals(int shard) {
+        long[] totals = new long[totalsLongs];
+        long[] copy = new long[totalsLongs];
+        for (int slot = 0; slot < slots; slot++) {
+            read(slot(shard, slot), copy);
+            for (int variant = 0; variant < variants; variant++)
+                merge(totals, copy, variantLongs * variant);
+        }
+        return totals;
+    }
+
+    /**
+     * Copies the totals of a slot (again, while its writer is writing them).
+     */
+    private void read(int slot, long[] copy) {
+        long deadline = 0;
+        while (true) {
+            long version = (long) LONGS.getAcquire(buffer, slot * Long.BYTES);
+            if ((version & 1) != 0) {
+                if (deadline == 0)
+                    deadline = System.nanoTime() + TORN_NANOS;
+                if (System.nanoTime() - deadline < 0) {
+                    Thread.yield(); // for the writer to end the write
+                    continue;
+                }
+            }
+            for (int i = 0; i < totalsLongs; i++)
+                copy[i] = (long) LONGS.getOpaque(buffer, (slot + 1 + i) * Long.BYTES);
+            VarHandle.acquireFence(); // the totals before the version
+            if (get(slot) == version) return;
+        }
+    }
+
+    /**
+     * Adds the totals of a variant to a sum of them.
+     *
+     * @param sum    - the sum.
+     * @param totals - the totals.
+     * @param base   - the index of the variant in both.
+     */
+    private void merge(long[] sum, long[] totals, int base) {
+        for (int i = 0; i < variantLongs; i++) {
+            long value = totals[base + i];
+            if (i == V_PLAYERS || i == V_LONGEST || i == V_MAX_LATENCY)
+                sum[base + i] = Math.max(sum[base + i], value);
+            else if (i >= VARIANT_LONGS && i < VARIANT_LONGS + 2 * seats && (i - VARIANT_LONGS) % 2 == 1)
+                sum[base + i] = Double.doubleToRawLongBits(Double.longBitsToDouble(sum[base + i])
+                        + Double.longBitsToDouble(value));
+            else
+                sum[base + i] += value;
+        }
+    }
+
+    private long sum(int shard, int field) {
+        long[] totals = totals(shard);
+        long sum = 0;
+        for (int variant = 0; variant < variants; variant++)
+            sum += totals[variantLongs * variant + field];
+        return sum;
+    }
+
+    public long pid(int shard) {
+        return get(shard(shard) + S_PID);
+    }
+
+    /**
+     * @return - the last time (System.currentTimeMillis) the shard showed it is alive (0 if it did not start).
+     */
+    public long heartbeatMillis(int shard) {
+        return get(shard(shard) + S_HEARTBEAT);
+    }
+
+    public int state(int shard) {
+        return (int) get(shard(shard) + S_STATE);
+    }
+
+    public long claimed(int shard) {
+        long claimed = 0;
+        for (int variant = 0; variant < variants; variant++)
+            claimed += get(claims(shard) + variant);
+        return claimed;
+    }
+
+    public long played(int shard) {
+        return sum(shard, V_GAMES);
+    }
+
+    public long failed(int shard) {
+        return sum(shard, V_FAILURES);
+    }
+
+    /**
+     * @return - the number of games of all the variants that were played or failed so far.
+     */
+    public long finished() {
+        long finished = 0;
+        for (int shard = 0; shard < shards; shard++)
+            finished += played(shard) + failed(shard);
+        return finished;
+    }
+
+    /**
+     * Adds the totals of a variant (of all the shards) to a summary.
+     *
+     * @param variant    - the variant.
+     * @param summary    - the summary to add to.
+     * @param strategies - the strategy of every seat of the variant.
+     */
+    void summarize(int variant, Tournament.Summary summary, String[] strategies) {
+        long[] sum = new long[totalsLongs];
+        int base = variantLongs * variant;
+        for (int shard = 0; shard < shards; shard++)
+            merge(sum, totals(shard), base);
+        long games = sum[base + V_GAMES];
+        long[] latencyCounts = new long[LATENCY_LONGS];
+        System.arraycopy(sum, base + VARIANT_LONGS + 2 * seats, latencyCounts, 0, LATENCY_LONGS);
+        summary.add(games, sum[base + V_FAILURES], (int) sum[base + V_PLAYERS], sum[base + V_DURATION],
+                sum[base + V_LONGEST], sum[base + V_LEGAL_CLAIMS], latencyCounts, sum[base + V_MAX_LATENCY]);
+        for (int seat = 0; seat < Math.min(strategies.length, seats); seat++)
+            summary.addSeat(strategies[seat], games, sum[base + VARIANT_LONGS + 2 * seat],
+                    Double.longBitsToDouble(sum[base + VARIANT_LONGS + 2 * seat + 1]));
+    }
+}
@@ -0,0 +1,166 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A precomputed index of the card that completes every pair of cards to a set (for decks with 3 choices per feature,
+ * where every pair has exactly one completing card), kept in a file that is memory-mapped read-only.
+ * Opening an index costs nothing regardless of the deck size, the pages are loaded on first use and shared through
+ * the page cache by all the processes that map the same file, and indexes larger than the heap (or than 2GB, the
+ * largest single mapping) work too.
+ * File layout (big-endian): int magic, int version, int featureSize, int featureCount, int deckSize, int reserved,
+ * long pairs, and then (from byte HEADER_BYTES) a char per pair of cards a < b at position b * (b - 1) / 2 + a.
+ * Usage (generator): SetIndex file featureCount
+ */
+public class SetIndex {
+
+    static final int MAGIC = 0x53455449; // "SETI"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+
+    /**
+     * The size of the mapped chunks of the file (every chunk holds a whole number of entries).
+     */
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+    public final int featureCount;
+    public final int deckSize;
+    private final MappedByteBuffer[] chunks;
+
+    private SetIndex(int featureCount, int deckSize, MappedByteBuffer[] chunks) {
+        this.featureCount = featureCount;
+        this.deckSize = deckSize;
+        this.chunks = chunks;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: SetIndex file featureCount");
+            return;
+        }
+        long start = System.nanoTime();
+        generate(Paths.get(args[0]), Integer.parseInt(args[1]));
+        System.out.printf("wrote %s (%d bytes) in %d ms%n", args[0], Files.size(Paths.get(args[0])),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * @return - the number of pairs of cards (i.e. entries) in an index of a deck.
+     */
+    static long pairs(int deckSize) {
+        return (long) deckSize * (deckSize - 1) / 2;
+    }
+
+    /**
+     * Writes the index of a deck (replacing the file atomically).
+     *
+     * @param file         - the index file.
+     * @param featureCount - the number of features on the cards (of 3 choices each; at most 10, so cards fit a char).
+     * @throws IOException - if writing failed.
+     */
+    public static void generate(Path file, int featureCount) throws IOException {
+        if (featureCount < 1 || featureCount > 10)
+            throw new IllegalArgumentException("a set index supports 1 to 10 features, not " + featureCount);
+        int deckSize = 1;
+        for (int i = 0; i < featureCount; i++)
+            deckSize *= 3;
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer out = ByteBuffer.allocateDirect(1 << 20);
+            out.putInt(MAGIC).putInt(VERSION).putInt(3).putInt(featureCount).putInt(deckSize).putInt(0)
+                    .putLong(pairs(deckSize));
+            out.position(HEADER_BYTES);
+            for (int b = 1; b < deckSize; b++)
+                for (int a = 0; a < b; a++) {
+                    if (!out.hasRemaining()) flush(channel, out);
+                    out.putChar((char) third(a, b, featureCount));
+                }
+            flush(channel, out);
+            channel.force(false);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining())
+            channel.write(out);
+        out.clear();
+    }
+
+    /**
+     * @return - the card completing two cards to a set (computed feature by feature: the remaining choice if they
+     * differ, the same choice otherwise).
+     */
+    static int third(int a, int b, int featureCount) {
+        int card = 0;
+        for (int i = 0, weight = 1; i < featureCount; i++, weight *= 3, a /= 3, b /= 3)
+            card += (6 - a % 3 - b % 3) % 3 * weight;
+        return card;
+    }
+
+    /**
+     * Maps an index file.
+     *
+     * @param file   - the index file.
+     * @param config - the game configuration (the index must be of its deck).
+     * @return - the index.
+     * @throws IOException - if the file cannot be read, is not an index or is of another deck.
+     */
+    public static SetIndex open(Path file, Config config) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) ;
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC)
+                throw new IOException(file + " is not a set index");
+            int version = header.getInt();
+            if (version != VERSION)
+                throw new IOException("unsupported set index version " + version);
+            int featureSize = header.getInt();
+            int featureCount = header.getInt();
+            int deckSize = header.getInt();
+            header.getInt(); // reserved
+            long pairs = header.getLong();
+            if (featureSize != config.featureSize || featureCount != config.featureCount)
+                throw new IOException(file + " is a set index of " + featureCount + " features of " + featureSize
+                        + " choices, the game has " + config.featureCount + " of " + config.featureSize);
+            if (deckSize != config.deckSize || pairs != pairs(deckSize)
+                    || channel.size() != HEADER_BYTES + pairs * Character.BYTES)
+                throw new IOException(file + " is truncated");
+
+            long bytes = pairs * Character.BYTES;
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((bytes + CHUNK_MASK) >>> CHUNK_BITS)];
+            for (int i = 0; i < chunks.length; i++) {
+                long offset = (long) i << CHUNK_BITS;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + offset,
+                        Math.min(CHUNK_MASK + 1, bytes - offset));
+            }
+            return new SetIndex(featureCount, deckSize, chunks);
+        }
+    }
+
+    /**
+     * @return - the card completing two different cards to a set.
+     */
+    public int third(int a, int b) {
+        if (a > b) {
+            int card = a;
+            a = b;
+            b = card;
+        }
+        long position = ((long) b * (b - 1) / 2 + a) * Character.BYTES;
+        return chunks[(int) (position >>> CHUNK_BITS)].getChar((int) (position & CHUNK_MASK));
+    }
+}
@@ -0,0 +1,272 @@
+package bguspl.set;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a tournament (see Tournament) in several JVMs on one host, for hosts with more cores than a single JVM scales
+ * to (e.g. because of its garbage collection and safepoint pauses): the coordinator starts a number of shard
+ * processes that map the same Scoreboard file, take the games from it and add their results to it. Meanwhile the
+ * coordinator watches the health of the shards (a shard that exits without finishing, or whose heartbeat stops, is
+ * failed and its games in progress are counted as failures of their variants) and in the end prints the summary of
+ * all the games. The heartbeat of a shard is the time its least recent game made progress (a claim, or the end of a
+ * game), so a shard with a stuck game stops beating although its other games go on.
+ * Usage: ShardedTournament [-shards k] [-threads n] [-seed s] [-board file] games config.properties...
+ * The threads are per shard; the scoreboard is a temporary file unless given.
+ */
+public class ShardedTournament {
+
+    /**
+     * How often (in milliseconds) the coordinator checks the shards, and how long a game of a shard may go without
+     * progress before the shard is considered stuck.
+     */
+    private static final long HEARTBEAT_MILLIS = 250;
+    private static final long STALL_MILLIS = 30_000;
+
+    /**
+     * Reports the first failed game of a shard process (as the errors of a single process tournament).
+     */
+    private static final Logger errorLogger = Logger.getLogger(ShardedTournament.class.getName());
+
+    private final Tournament tournament;
+    private final String[] files;
+
+    /**
+     * @param logger - the logger of the games (usually turned off).
+     * @param files  - the properties files of the variants.
+     */
+    public ShardedTournament(Logger logger, String... files) {
+        this.files = files.clone();
+        tournament = new Tournament(logger, files);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Logger logger = Logger.getLogger("SetTournamentLogger");
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.OFF);
+        if (args.length > 0 && args[0].equals("-shard")) {
+            shard(logger, args);
+            return;
+        }
+
+        int shards = Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+        int threads = 0;
+        long seed = 0;
+        Path board = null;
+        int arg = 0;
+        for (; arg + 1 < args.length && args[arg].startsWith("-"); arg += 2) {
+            if (args[arg].equals("-shards")) shards = Integer.parseInt(args[arg + 1]);
+            else if (args[arg].equals("-threads")) threads = Integer.parseInt(args[arg + 1]);
+            else if (args[arg].equals("-seed")) seed = Long.parseLong(args[arg + 1]);
+            else if (args[arg].equals("-board")) board = Paths.get(args[arg + 1]);
+            else break;
+        }
+        if (args.length - arg < 2) {
+            System.err.println("usage: ShardedTournament [-shards k] [-threads n] [-seed s] [-board file] games "
+                    + "config.properties...");
+            return;
+        }
+        if (threads <= 0)
+            threads = Math.max(1, Runtime.getRuntime().availableProcessors() / shards);
+        long games = Long.parseLong(args[arg]);
+        String[] files = new String[args.length - arg - 1];
+        System.arraycopy(args, arg + 1, files, 0, files.length);
+
+        ShardedTournament tournament = new ShardedTournament(logger, files);
+        boolean temporary = board == null;
+        if (temporary)
+            board = Files.createTempFile("set-scoreboard", ".bin");
+        try {
+            long start = System.currentTimeMillis();
+            Scoreboard scoreboard = tournament.run(board, shards, threads, games, seed, System.err);
+            tournament.report(scoreboard, System.out, System.currentTimeMillis() - start);
+        } finally {
+            if (temporary)
+                Files.deleteIfExists(board);
+        }
+    }
+
+    /**
+     * Starts the shards and waits for them to play all the games.
+     *
+     * @param file     - the scoreboard file (created, or replaced).
+     * @param shards   - the number of shard processes.
+     * @param threads  - the number of games every shard plays at the same time.
+     * @param games    - the number of games per variant.
+     * @param seed     - the seed of the first game.
+     * @param progress - the stream to print the progress and the failed shards to.
+     * @return - the scoreboard of the games.
+     * @throws IOException          - if the scoreboard cannot be written or a shard cannot be started.
+     * @throws InterruptedException - if the calling thread was interrupted (the shards are killed then).
+     */
+    public Scoreboard run(Path file, int shards, int threads, long games, long seed, PrintStream progress)
+            throws IOException, InterruptedException {
+        int seats = 0;
+        for (int variant = 0; variant < tournament.variants(); variant++)
+            seats = Math.max(seats, tournament.strategies(variant).length);
+        Scoreboard board = Scoreboard.create(file, shards, threads, tournament.variants(), seats, games, seed);
+
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> processes = new ArrayList<>();
+        try {
+            for (int shard = 0; shard < shards; shard++) {
+                List<String> command = new ArrayList<>();
+                command.add(java);
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add(ShardedTournament.class.getName());
+                command.add("-shard");
+                command.add(file.toString());
+                command.add(Integer.toString(shard));
+                for (String variant : files)
+                    command.add(new File(variant).getAbsolutePath());
+                processes.add(new ProcessBuilder(command).inheritIO().start());
+            }
+            watch(board, processes, progress);
+        } finally {
+            for (Process process : processes)
+                process.destroyForcibly();
+        }
+        return board;
+    }
+
+    /**
+     * Waits for the shards to exit, failing the ones that exit early or stop beating.
+     */
+    private void watch(Scoreboard board, List<Process> processes, PrintStream progress) throws InterruptedException {
+        long reported = -1;
+        boolean[] over = new boolean[processes.size()];
+        for (int running = processes.size(); running > 0; ) {
+            Thread.sleep(HEARTBEAT_MILLIS);
+            running = 0;
+            for (int shard = 0; shard < processes.size(); shard++) {
+                if (over[shard]) continue;
+                Process process = processes.get(shard);
+                long heartbeat = board.heartbeatMillis(shard);
+                if (!process.isAlive()) {
+                    over[shard] = true;
+                    if (board.state(shard) != Scoreboard.DONE)
+                        lost(board, shard, "exited with status " + process.exitValue(), progress);
+                } else if (heartbeat > 0 && System.currentTimeMillis() - heartbeat > STALL_MILLIS) {
+                    process.destroyForcibly().waitFor(STALL_MILLIS, TimeUnit.MILLISECONDS);
+                    over[shard] = true;
+                    lost(board, shard, "missed its heartbeats for " + STALL_MILLIS + " ms", progress);
+                } else
+                    running++;
+            }
+            long finished = board.finished();
+            if (finished != reported) {
+                progress.printf("%d/%d games, %d shards running%n", finished, board.total(), running);
+                reported = finished;
+            }
+        }
+    }
+
+    /**
+     * Fails a shard that stopped without finishing, with the games it was playing.
+     */
+    private void lost(Scoreboard board, int shard, String reason, PrintStream progress) {
+        board.finished(shard, Scoreboard.FAILED);
+        long games = board.lost(shard);
+        progress.println("shard " + shard + " (pid " + board.pid(shard) + ") " + reason + ", " + games
+                + " games lost");
+    }
+
+    /**
+     * Plays games of a scoreboard until there are none left (the main of a shard process), with a worker thread per
+     * slot of the scoreboard.
+     * Arguments: -shard file index config.properties...
+     */
+    private static void shard(Logger logger, String[] args) throws IOException, InterruptedException {
+        Scoreboard board = Scoreboard.open(Paths.get(args[1]));
+        int shard = Integer.parseInt(args[2]);
+        int threads = board.slots;
+        String[] files = new String[args.length - 3];
+        System.arraycopy(args, 3, files, 0, files.length);
+        Tournament tournament = new Tournament(logger, files);
+
+        board.started(shard, ProcessHandle.current().pid());
+        // the last progress of the game of every worker (Long.MAX_VALUE once it has no games left)
+        AtomicLongArray beats = new AtomicLongArray(threads);
+        for (int t = 0; t < threads; t++)
+            beats.set(t, System.currentTimeMillis());
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int w = t;
+            GameListener progress = new GameListener() {
+                @Override
+                public void claimResolved(int player, boolean legal) {
+                    beat(board, shard, beats, w, System.currentTimeMillis());
+                }
+            };
+            Thread worker = new Thread(() -> {
+                for (long i = board.claim(shard); i < board.total(); i = board.claim(shard)) {
+                    int variant = (int) (i % board.variants);
+                    try {
+                        board.add(shard, w, variant,
+                                tournament.play(variant, board.seed + i / board.variants, progress));
+                    } catch (InterruptedException e) {
+                        board.fail(shard, w, variant);
+                        return;
+                    } catch (RuntimeException e) {
+                        if (board.failed(shard) == 0)
+                            errorLogger.log(Level.SEVERE, "game " + i + " of shard " + shard + " failed", e);
+                        board.fail(shard, w, variant);
+                    }
+                    beat(board, shard, beats, w, System.currentTimeMillis());
+                }
+                beat(board, shard, beats, w, Long.MAX_VALUE);
+            }, "shard-" + shard + "-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers)
+            worker.join();
+        board.finished(shard, Scoreboard.DONE);
+    }
+
+    /**
+     * Records the progress of the game of a worker, and beats with the least recent progress of all the workers.
+     */
+    private static void beat(Scoreboard board, int shard, AtomicLongArray beats, int worker, long millis) {
+        beats.set(worker, millis);
+        long least = Long.MAX_VALUE;
+        for (int w = 0; w < beats.length(); w++)
+            least = Math.min(least, beats.get(w));
+        if (least != Long.MAX_VALUE)
+            board.heartbeat(shard, least);
+    }
+
+    /**
+     * Prints the summary of every variant and the work of every shard.
+     *
+     * @param board      - the scoreboard of the games.
+     * @param out        - the stream to print to.
+     * @param wallMillis - the real time the tournament took.
+     */
+    public void report(Scoreboard board, PrintStream out, long wallMillis) {
+        long games = 0;
+        for (int variant = 0; variant < board.variants; variant++) {
+            Tournament.Summary summary = new Tournament.Summary(tournament.variant(variant));
+            board.summarize(variant, summary, tournament.strategies(variant));
+            summary.print(out);
+            games += summary.games();
+        }
+        for (int shard = 0; shard < board.shards; shard++)
+            out.printf("shard %d (pid %d): %d games, %d failed, %s%n", shard, board.pid(shard), board.played(shard),
+                    board.failed(shard), board.state(shard) == Scoreboard.DONE ? "done" : "failed");
+        out.printf("%d games in %.1f seconds (%.1f games/second)%n", games, wallMillis / 1000.0,
+                games * 1000.0 / Math.max(1, wallMillis));
+    }
+}
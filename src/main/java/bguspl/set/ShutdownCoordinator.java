@@ -0,0 +1,124 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Stops the game threads of a game within a bounded time.
+ * Every thread is registered with the action that tells it to stop (e.g. setting its terminate flag). A shutdown runs
+ * all these actions at once, interrupts all the threads (so every sleep and wait returns and rechecks its flag) and
+ * then joins them in reverse creation order, interrupting the ones still running again every slice, until the
+ * deadline. The threads that did not stop by then are reported (with what they are doing) and left behind.
+ * The interrupts and the joins go through the clock of the game, so on a VirtualClock the threads stop in their turns
+ * (the slices are then simulated time, the deadline is always real time).
+ */
+public class ShutdownCoordinator {
+
+    /**
+     * The interval (in milliseconds) at which the threads that did not stop yet are interrupted again.
+     */
+    private static final long SLICE_MILLIS = 50;
+
+    private final Logger logger;
+    private final Clock clock;
+    private final long timeoutMillis;
+
+    /**
+     * The registered threads (in creation order) and their stop actions.
+     */
+    private final List<Thread> threads = new ArrayList<>();
+    private final List<Runnable> signals = new ArrayList<>();
+
+    /**
+     * @param logger        - the logger.
+     * @param timeoutMillis - the longest a shutdown may take.
+     */
+    public ShutdownCoordinator(Logger logger, long timeoutMillis) {
+        this(logger, new SystemClock(), timeoutMillis);
+    }
+
+    /**
+     * @param logger        - the logger.
+     * @param clock         - the clock the threads wait in.
+     * @param timeoutMillis - the longest a shutdown may take.
+     */
+    public ShutdownCoordinator(Logger logger, Clock clock, long timeoutMillis) {
+        this.logger = logger;
+        this.clock = clock;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Registers a thread (before or after it starts).
+     *
+     * @param thread - the thread.
+     * @param signal - tells the thread to stop (must not block; null if an interrupt is enough).
+     */
+    public synchronized void register(Thread thread, Runnable signal) {
+        threads.add(thread);
+        signals.add(signal);
+    }
+
+    /**
+     * @return - the registered threads that are still running.
+     */
+    public synchronized List<Thread> running() {
+        List<Thread> running = new ArrayList<>();
+        for (Thread thread : threads)
+            if (thread.isAlive())
+                running.add(thread);
+        return running;
+    }
+
+    /**
+     * Stops all the registered threads (the calling thread, if registered, is skipped).
+     *
+     * @return - the threads that did not stop in time.
+     */
+    public List<Thread> shutdown() {
+        List<Thread> threads;
+        List<Runnable> signals;
+        synchronized (this) {
+            threads = new ArrayList<>(this.threads);
+            signals = new ArrayList<>(this.signals);
+        }
+        threads.remove(Thread.currentThread());
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+
+        for (Runnable signal : signals)
+            if (signal != null)
+                signal.run();
+        for (Thread thread : threads)
+            clock.interrupt(thread);
+
+        boolean interrupted = false;
+        for (int i = threads.size() - 1; i >= 0; i--) {
+            Thread thread = threads.get(i);
+            long left;
+            while (thread.isAlive() && (left = deadline - System.nanoTime()) > 0) {
+                try {
+                    clock.join(thread, Math.max(1, Math.min(SLICE_MILLIS, left / 1_000_000L)));
+                } catch (InterruptedException e) {
+                    interrupted = true; // finish the shutdown first
+                }
+                if (thread.isAlive())
+                    clock.interrupt(thread);
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        List<Thread> late = new ArrayList<>();
+        for (Thread thread : threads)
+            if (thread.isAlive()) {
+                late.add(thread);
+                StringBuilder trace = new StringBuilder();
+                for (StackTraceElement frame : thread.getStackTrace())
+                    trace.append(System.lineSeparator()).append("    at ").append(frame);
+                logger.severe("thread " + thread.getName() + " did not stop within " + timeoutMillis + " ms ("
+                        + thread.getState() + ")" + trace);
+            }
+        return late;
+    }
+}
@@ -0,0 +1,147 @@
+package bguspl.set;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+
+/**
+ * A headless spectator: connects to a SpectatorServer and keeps a copy of the table state.
+ * Usage: SpectatorClient port (prints every change it receives).
+ */
+public class SpectatorClient implements AutoCloseable {
+
+    protected final Socket socket;
+    private final DataInputStream in;
+
+    /**
+     * The table state as last received from the server.
+     */
+    public int rows, columns, players, featureCount, featureSize;
+    public int[] cards;
+    public long[] tokens;
+    public int[] scores;
+    public long[] freezes;
+    public long countdown = -1;
+    public boolean warn;
+    public long elapsed = -1;
+    public int[] winners;
+    private int tokenWords;
+
+    public SpectatorClient(int port) throws IOException {
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        if (in.readByte() != SpectatorServer.HELLO)
+            throw new IOException("unexpected greeting from the spectator server");
+        rows = in.readInt();
+        columns = in.readInt();
+        players = in.readInt();
+        featureCount = in.readInt();
+        featureSize = in.readInt();
+        tokenWords = (players + Long.SIZE - 1) / Long.SIZE;
+        cards = new int[rows * columns];
+        Arrays.fill(cards, -1);
+        tokens = new long[rows * columns * tokenWords];
+        scores = new int[players];
+        freezes = new long[players];
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: SpectatorClient port");
+            return;
+        }
+        try (SpectatorClient client = new SpectatorClient(Integer.parseInt(args[0]))) {
+            System.out.println("watching a " + client.rows + "x" + client.columns + " table with " + client.players + " players");
+            String change;
+            while ((change = client.next()) != null)
+                System.out.println(change);
+        }
+    }
+
+    /**
+     * Reads the next message from the server and applies it to the state.
+     *
+     * @return - a description of the change, or null if the server closed the connection.
+     * @throws IOException - if the connection failed or the message is not valid.
+     */
+    public String next() throws IOException {
+        int type = in.read();
+        if (type < 0) return null;
+        try {
+            switch (type) {
+                case SpectatorServer.CARD: {
+                    int slot = in.readShort();
+                    cards[slot] = in.readInt();
+                    return cards[slot] < 0 ? "slot " + slot + ": empty" : "slot " + slot + ": card " + cards[slot];
+                }
+                case SpectatorServer.TOKENS: {
+                    int slot = in.readShort();
+                    StringBuilder text = new StringBuilder();
+                    for (int word = 0; word < tokenWords; word++) {
+                        long mask = in.readLong();
+                        tokens[slot * tokenWords + word] = mask;
+                        for (; mask != 0; mask &= mask - 1)
+                            text.append(" player ").append(word * Long.SIZE + Long.numberOfTrailingZeros(mask) + 1);
+                    }
+                    return "slot " + slot + ": " + (text.length() == 0 ? "no tokens" : "tokens of" + text);
+                }
+                case SpectatorServer.SCORE: {
+                    int player = in.readShort();
+                    scores[player] = in.readInt();
+                    return "player " + (player + 1) + " score: " + scores[player];
+                }
+                case SpectatorServer.FREEZE: {
+                    int player = in.readShort();
+                    freezes[player] = in.readLong();
+                    return "player " + (player + 1) + " freeze: " + freezes[player];
+                }
+                case SpectatorServer.COUNTDOWN:
+                    countdown = in.readLong();
+                    warn = in.readByte() != 0;
+                    return "countdown: " + countdown + (warn ? " (warning)" : "");
+                case SpectatorServer.ELAPSED:
+                    elapsed = in.readLong();
+                    return "elapsed: " + elapsed;
+                case SpectatorServer.WINNERS: {
+                    int[] winners = new int[in.readShort()];
+                    for (int i = 0; i < winners.length; i++)
+                        winners[i] = in.readShort();
+                    this.winners = winners;
+                    return "winner(s): " + Arrays.toString(Arrays.stream(winners).map(id -> id + 1).toArray());
+                }
+                default:
+                    return message(type, in);
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads a message of a type the spectator protocol does not have (for clients of servers that add messages).
+     *
+     * @param type - the message type.
+     * @param in   - the stream to read the message fields from.
+     * @return - a description of the message.
+     * @throws IOException - if the message is not valid.
+     */
+    protected String message(int type, DataInputStream in) throws IOException {
+        throw new IOException("unknown message type " + type);
+    }
+
+    /**
+     * @return - true iff the player has a token on the slot.
+     */
+    public boolean hasToken(int player, int slot) {
+        return (tokens[slot * tokenWords + player / Long.SIZE] & (1L << (player % Long.SIZE))) != 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
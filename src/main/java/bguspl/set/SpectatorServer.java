@@ -0,0 +1,423 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Logger;
+
+/**
+ * A user interface that streams the table state to spectators over TCP (loopback only).
+ * The game threads only update a mirror of the state. A single selector thread sends every new client a snapshot
+ * and then, every frame, the fields that changed since what was last sent to it. A client that did not drain its
+ * previous frame is skipped, so slow clients get the coalesced state instead of slowing the game down.
+ * See SpectatorClient for the protocol.
+ */
+public class SpectatorServer implements UserInterface {
+
+    /**
+     * Message types (each message is the type byte followed by its fields).
+     */
+    static final byte HELLO = 1;     // int rows, int columns, int players, int featureCount, int featureSize
+    static final byte CARD = 2;      // short slot, int card (-1 if the slot is empty)
+    static final byte TOKENS = 3;    // short slot, long[tokenWords] player bit mask
+    static final byte SCORE = 4;     // short player, int score
+    static final byte FREEZE = 5;    // short player, long millis
+    static final byte COUNTDOWN = 6; // long millis, byte warn
+    static final byte ELAPSED = 7;   // long millis
+    static final byte WINNERS = 8;   // short count, short[count] players
+
+    /**
+     * The interval (in milliseconds) at which changes are sent to the clients.
+     */
+    private static final long FRAME_MILLIS = 10;
+
+    private static final int NONE = Integer.MIN_VALUE;
+
+    protected final Logger logger;
+    protected final Config config;
+    private final int tokenWords;
+
+    /**
+     * The mirror of the displayed state (written by the game threads).
+     */
+    private final AtomicIntegerArray cards;
+    private final AtomicLongArray tokens;
+    private final AtomicIntegerArray scores;
+    private final AtomicLongArray freezes;
+    private volatile long countdown = NONE;
+    private volatile boolean warn;
+    private volatile long elapsed = NONE;
+    private volatile int[] winners;
+
+    /**
+     * Incremented after every change of the mirror.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    protected final Selector selector;
+    private final ServerSocketChannel server;
+    private final Thread thread;
+    private final int frameBytes;
+    private final ByteBuffer discard = ByteBuffer.allocate(64);
+    private volatile boolean running = true;
+
+    /**
+     * @param logger - the logger.
+     * @param config - the game configuration.
+     * @param port   - the loopback port to listen on (0 for any free port).
+     * @throws IOException - if the server socket cannot be opened.
+     */
+    public SpectatorServer(Logger logger, Config config, int port) throws IOException {
+        this(logger, config, port, 0, "spectator-server");
+        start();
+    }
+
+    /**
+     * For servers that add messages of their own (the selector thread is started by start()).
+     *
+     * @param logger     - the logger.
+     * @param config     - the game configuration.
+     * @param port       - the loopback port to listen on (0 for any free port).
+     * @param extraBytes - the number of bytes the added messages of a frame can take.
+     * @param name       - the name of the selector thread.
+     * @throws IOException - if the server socket cannot be opened.
+     */
+    protected SpectatorServer(Logger logger, Config config, int port, int extraBytes, String name)
+            throws IOException {
+        this.logger = logger;
+        this.config = config;
+        tokenWords = (config.players + Long.SIZE - 1) / Long.SIZE;
+        cards = new AtomicIntegerArray(config.tableSize);
+        for (int slot = 0; slot < config.tableSize; slot++)
+            cards.set(slot, -1);
+        tokens = new AtomicLongArray(config.tableSize * tokenWords);
+        scores = new AtomicIntegerArray(config.players);
+        freezes = new AtomicLongArray(config.players);
+
+        // the largest possible frame: a full snapshot
+        frameBytes = 21 + config.tableSize * (7 + 3 + 8 * tokenWords) + config.players * (7 + 11 + 2) + 10 + 9 + 3
+                + extraBytes;
+
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts accepting clients.
+     */
+    protected void start() {
+        thread.start();
+        logger.info(thread.getName() + " listening on port " + getPort());
+    }
+
+    /**
+     * @return - the port the server listens on.
+     */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * The state of a connected spectator: what was last sent to it and the bytes it did not read yet.
+     */
+    protected class Client {
+
+        protected final SocketChannel channel;
+        private final ByteBuffer out = ByteBuffer.allocate(frameBytes);
+        private final int[] cards = new int[config.tableSize];
+        private final long[] tokens = new long[config.tableSize * tokenWords];
+        private final int[] scores = new int[config.players];
+        private final long[] freezes = new long[config.players];
+        private long countdown = NONE;
+        private boolean warn;
+        private long elapsed = NONE;
+        private int[] winners;
+        private long version = -1;
+
+        protected Client(SocketChannel channel) {
+            this.channel = channel;
+            // make sure everything is sent as part of the first frame
+            Arrays.fill(cards, NONE);
+            Arrays.fill(scores, NONE);
+            Arrays.fill(freezes, NONE);
+            Arrays.fill(tokens, -1L);
+            out.put(HELLO).putInt(config.rows).putInt(config.columns).putInt(config.players)
+                    .putInt(config.featureCount).putInt(config.featureSize);
+            out.flip();
+        }
+
+        /**
+         * @return - true iff the client has messages of its own to be sent (even if the table did not change).
+         */
+        protected boolean pending() {
+            return false;
+        }
+
+        /**
+         * Adds the client's own messages to a frame.
+         *
+         * @param out - the frame.
+         */
+        protected void frame(ByteBuffer out) {
+        }
+
+        /**
+         * Called when the connection is closed, before its channel is (so the other end only sees the connection
+         * end once this returned).
+         */
+        protected void closed() {
+        }
+    }
+
+    /**
+     * @return - the state of a new client.
+     */
+    protected Client accepted(SocketChannel channel) {
+        return new Client(channel);
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select(FRAME_MILLIS);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) accept();
+                    else if (key.isReadable()) read(key);
+                    if (key.isValid() && key.isWritable()) send(key);
+                }
+                long current = version.get();
+                for (SelectionKey key : selector.keys())
+                    if (key.attachment() != null && key.isValid())
+                        frame(key, current);
+            }
+        } catch (IOException e) {
+            logger.severe(thread.getName() + " stopped: " + e);
+        }
+
+        for (SelectionKey key : selector.keys())
+            if (key.attachment() != null)
+                close(key);
+        try {
+            server.close();
+            selector.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE, accepted(channel));
+        logger.info("client connected from " + channel.getRemoteAddress());
+    }
+
+    /**
+     * Spectators are not expected to send anything, reading only detects disconnection.
+     */
+    protected void read(SelectionKey key) {
+        Client client = (Client) key.attachment();
+        discard.clear();
+        try {
+            if (client.channel.read(discard) < 0) close(key);
+        } catch (IOException e) {
+            close(key);
+        }
+    }
+
+    private void send(SelectionKey key) {
+        Client client = (Client) key.attachment();
+        try {
+            client.channel.write(client.out);
+            if (client.out.hasRemaining()) key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            else key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            close(key);
+        }
+    }
+
+    protected void close(SelectionKey key) {
+        key.cancel();
+        ((Client) key.attachment()).closed();
+        try {
+            ((Client) key.attachment()).channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Sends the client the changes since its last frame (unless it did not read the previous frame yet).
+     */
+    private void frame(SelectionKey key, long current) {
+        Client client = (Client) key.attachment();
+        if (client.out.hasRemaining() || client.version == current && !client.pending()) return;
+        client.version = current;
+
+        ByteBuffer out = client.out;
+        out.clear();
+        for (int slot = 0; slot < config.tableSize; slot++) {
+            int card = cards.get(slot);
+            if (client.cards[slot] != card) {
+                out.put(CARD).putShort((short) slot).putInt(card);
+                client.cards[slot] = card;
+            }
+            boolean changed = false;
+            for (int word = 0; word < tokenWords; word++) {
+                long mask = tokens.get(slot * tokenWords + word);
+                changed |= client.tokens[slot * tokenWords + word] != mask;
+                client.tokens[slot * tokenWords + word] = mask;
+            }
+            if (changed) {
+                out.put(TOKENS).putShort((short) slot);
+                for (int word = 0; word < tokenWords; word++)
+                    out.putLong(client.tokens[slot * tokenWords + word]);
+            }
+        }
+        for (int player = 0; player < config.players; player++) {
+            int score = scores.get(player);
+            if (client.scores[player] != score) {
+                out.put(SCORE).putShort((short) player).putInt(score);
+                client.scores[player] = score;
+            }
+            long freeze = freezes.get(player);
+            if (client.freezes[player] != freeze) {
+                out.put(FREEZE).putShort((short) player).putLong(freeze);
+                client.freezes[player] = freeze;
+            }
+        }
+        long countdown = this.countdown;
+        boolean warn = this.warn;
+        if (countdown != NONE && (client.countdown != countdown || client.warn != warn)) {
+            out.put(COUNTDOWN).putLong(countdown).put((byte) (warn ? 1 : 0));
+            client.countdown = countdown;
+            client.warn = warn;
+        }
+        long elapsed = this.elapsed;
+        if (elapsed != NONE && client.elapsed != elapsed) {
+            out.put(ELAPSED).putLong(elapsed);
+            client.elapsed = elapsed;
+        }
+        int[] winners = this.winners;
+        if (winners != null && client.winners != winners) {
+            out.put(WINNERS).putShort((short) winners.length);
+            for (int player : winners)
+                out.putShort((short) player);
+            client.winners = winners;
+        }
+        client.frame(out);
+        out.flip();
+        send(key);
+    }
+
+    private void changed() {
+        version.incrementAndGet();
+    }
+
+    private void setTokenBit(int player, int slot, boolean set) {
+        int index = slot * tokenWords + player / Long.SIZE;
+        long bit = 1L << (player % Long.SIZE);
+        long mask;
+        do {
+            mask = tokens.get(index);
+        } while (!tokens.compareAndSet(index, mask, set ? mask | bit : mask & ~bit));
+        changed();
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        cards.set(slot, card);
+        changed();
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        cards.set(slot, -1);
+        changed();
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        setTokenBit(player, slot, true);
+    }
+
+    @Override
+    public void removeTokens() {
+        for (int slot = 0; slot < config.tableSize; slot++)
+            removeTokens(slot);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        for (int word = 0; word < tokenWords; word++)
+            tokens.set(slot * tokenWords + word, 0L);
+        changed();
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        setTokenBit(player, slot, false);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        this.warn = warn;
+        this.countdown = millies;
+        changed();
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        this.elapsed = millies;
+        changed();
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        freezes.set(player, millies);
+        changed();
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        scores.set(player, score);
+        changed();
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        winners = players.clone();
+        changed();
+    }
+
+    @Override
+    public void dispose() {
+        try {
+            // give the clients a last frame before closing
+            Thread.sleep(2 * FRAME_MILLIS);
+            running = false;
+            selector.wakeup();
+            thread.join();
+        } catch (InterruptedException ignored) {
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package bguspl.set;
+
+import bguspl.set.ex.InvariantChecker;
+import bguspl.set.ex.Player;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stress-tests the game threads, e.g. to validate a rewrite of Table or Dealer: plays many headless games of many
+ * computer players on simulated time, with random spins (see Util.spin) in every user interface call, while the
+ * invariants of each game are checked continuously (see InvariantChecker).
+ * A game fails if an invariant breaks, a claim is lost, the game threads deadlock or stop making progress, or a game
+ * thread outlives its game. Every failure is reported with the seed of its game, which replays it: the game threads
+ * take turns in a fixed order on the simulated time (see VirtualClock), so the seeds vary the interleavings and a seed
+ * reproduces its own.
+ * Usage: StressHarness [-threads n] [-seed s] [-players n] [-spin max] games
+ */
+public class StressHarness {
+
+    /**
+     * How long (in real milliseconds) a claim may wait for the dealer, and a game may take.
+     */
+    private static final long LOST_CLAIM_MILLIS = 10_000;
+    private static final long GAME_MILLIS = 60_000;
+
+    private final Logger logger;
+    private final int players;
+    private final long maxSpin;
+
+    // the totals over all games
+    private final AtomicLong games = new AtomicLong();
+    private final AtomicLong checks = new AtomicLong();
+    private final AtomicLong legalClaims = new AtomicLong();
+    private final List<String> failures = new ArrayList<>();
+
+    /**
+     * @param logger  - the logger (of the games).
+     * @param players - the number of computer players of every game.
+     * @param maxSpin - the most spin cycles per user interface call (each game draws its own maximum up to it).
+     */
+    public StressHarness(Logger logger, int players, long maxSpin) {
+        this.logger = logger;
+        this.players = players;
+        this.maxSpin = maxSpin;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 0;
+        int players = 8;
+        long spin = 100;
+        int arg = 0;
+        for (; arg + 1 < args.length && args[arg].startsWith("-"); arg += 2) {
+            if (args[arg].equals("-threads")) threads = Integer.parseInt(args[arg + 1]);
+            else if (args[arg].equals("-seed")) seed = Long.parseLong(args[arg + 1]);
+            else if (args[arg].equals("-players")) players = Integer.parseInt(args[arg + 1]);
+            else if (args[arg].equals("-spin")) spin = Long.parseLong(args[arg + 1]);
+            else break;
+        }
+        if (args.length - arg != 1) {
+            System.err.println("usage: StressHarness [-threads n] [-seed s] [-players n] [-spin max] games");
+            return;
+        }
+
+        Logger logger = Logger.getLogger("SetStressLogger");
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.OFF);
+
+        StressHarness harness = new StressHarness(logger, players, spin);
+        long start = System.currentTimeMillis();
+        harness.run(Long.parseLong(args[arg]), seed, threads);
+        harness.report(System.out, System.currentTimeMillis() - start);
+        if (!harness.failures().isEmpty())
+            System.exit(1);
+    }
+
+    /**
+     * Plays games with consecutive seeds.
+     *
+     * @param games   - the number of games.
+     * @param seed    - the seed of the first game.
+     * @param threads - the number of games to play at the same time.
+     * @throws InterruptedException - if the calling thread was interrupted while waiting for the games.
+     */
+    public void run(long games, long seed, int threads) throws InterruptedException {
+        AtomicLong next = new AtomicLong();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                for (long i = next.getAndIncrement(); i < games; i = next.getAndIncrement())
+                    try {
+                        play(seed + i);
+                    } catch (InterruptedException e) {
+                        return;
+                    } catch (RuntimeException e) {
+                        fail(seed + i, "crashed: " + e);
+                    }
+            }, "stress-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers)
+            worker.join();
+    }
+
+    /**
+     * Plays a single game and checks it.
+     *
+     * @param seed - the random seed of the game (it also decides the spins).
+     * @return - true iff the game passed.
+     * @throws InterruptedException - if the calling thread was interrupted while waiting for the game.
+     */
+    public boolean play(long seed) throws InterruptedException {
+        Random random = new Random(seed);
+        Properties properties = new Properties();
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", Integer.toString(players));
+        StringBuilder strategies = new StringBuilder();
+        for (int i = 0; i < players; i++)
+            strategies.append(i == 0 ? "" : ",").append(random.nextBoolean() ? "finder" : "random");
+        properties.setProperty("Strategies", strategies.toString());
+        properties.setProperty("RandomSeed", Long.toString(seed));
+        properties.setProperty("RandomSpinMin", "0");
+        properties.setProperty("RandomSpinMax", Long.toString(maxSpin <= 0 ? 0 : 1 + random.nextInt((int) maxSpin)));
+        properties.setProperty("ComputerKeyDelaySeconds", "0.02");
+        properties.setProperty("PointFreezeSeconds", Double.toString(random.nextInt(3) / 10.0));
+        properties.setProperty("PenaltyFreezeSeconds", Double.toString(random.nextInt(3) / 10.0));
+        properties.setProperty("TurnTimeoutSeconds", Integer.toString(5 + random.nextInt(10)));
+        properties.setProperty("Headless", "True");
+        properties.setProperty("VirtualClock", "True");
+        properties.setProperty("Hints", "False");
+        properties.setProperty("EndGamePauseSeconds", "0");
+        Config config = new Config(logger, properties);
+
+        VirtualClock clock = new VirtualClock();
+        try {
+            Util util = new UtilImpl(config);
+            GameStatistics statistics = new GameStatistics(clock, config.players);
+            // the game spins at every table change (see Util.spin), with nothing to display
+            UserInterface ui = new UserInterfaceDecorator(logger, UserInterface.NONE);
+            Env env = new Env(logger, config, ui, util, statistics, clock);
+            Game game = new Game(env, new Player[config.players]);
+            InvariantChecker invariants = game.invariants(LOST_CLAIM_MILLIS);
+
+            Thread dealer = new Thread(() -> {
+                try {
+                    game.play();
+                } catch (InterruptedException ignored) {
+                }
+            }, "stress-game-" + seed);
+            dealer.start();
+            String failure = watch(game, dealer, invariants);
+            if (failure == null) {
+                List<String> violations = invariants.check(true);
+                if (!violations.isEmpty())
+                    failure = "after the game: " + violations;
+            }
+            if (failure == null && !env.shutdown.running().isEmpty())
+                failure = "threads outlived the game: " + names(env.shutdown.running());
+
+            games.incrementAndGet();
+            legalClaims.addAndGet(statistics.legalClaims());
+            if (failure != null)
+                fail(seed, failure);
+            return failure == null;
+        } finally {
+            clock.shutdown();
+        }
+    }
+
+    /**
+     * Checks the invariants until the game ends (ending it early if it fails).
+     *
+     * @return - the failure, or null if the game passed.
+     */
+    private String watch(Game game, Thread dealer, InvariantChecker invariants) throws InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long deadline = System.currentTimeMillis() + GAME_MILLIS;
+        String failure = null;
+        long count = 0;
+        while (dealer.isAlive() && failure == null) {
+            List<String> violations = invariants.check(false);
+            count++;
+            if (!violations.isEmpty())
+                failure = "invariants broken: " + violations;
+            else if (count % 100 == 0 && threads.findDeadlockedThreads() != null)
+                failure = "deadlock: " + deadlock(threads);
+            else if (System.currentTimeMillis() > deadline)
+                failure = "no end after " + GAME_MILLIS + " ms";
+            else
+                dealer.join(1);
+        }
+        checks.addAndGet(count);
+        if (failure != null) {
+            game.terminate();
+            dealer.join(GAME_MILLIS);
+        }
+        return failure;
+    }
+
+    private static String deadlock(ThreadMXBean threads) {
+        long[] ids = threads.findDeadlockedThreads();
+        if (ids == null) return "resolved";
+        StringBuilder description = new StringBuilder();
+        for (ThreadInfo info : threads.getThreadInfo(ids, true, true))
+            if (info != null)
+                description.append(info.getThreadName()).append(" waits for ").append(info.getLockName())
+                        .append(" held by ").append(info.getLockOwnerName()).append("; ");
+        return description.toString();
+    }
+
+    private static String names(List<Thread> threads) {
+        StringBuilder names = new StringBuilder();
+        for (Thread thread : threads)
+            names.append(names.length() == 0 ? "" : ", ").append(thread.getName());
+        return names.toString();
+    }
+
+    private synchronized void fail(long seed, String failure) {
+        failures.add("seed " + seed + ": " + failure);
+    }
+
+    /**
+     * @return - the failures so far (with the seeds of their games).
+     */
+    public synchronized List<String> failures() {
+        return new ArrayList<>(failures);
+    }
+
+    /**
+     * Prints the throughput and the failures.
+     *
+     * @param out        - the stream to print to.
+     * @param wallMillis - the real time the games took.
+     */
+    public void report(PrintStream out, long wallMillis) {
+        double seconds = Math.max(1, wallMillis) / 1000.0;
+        List<String> failures = failures();
+        out.printf("%d games of %d players in %.1f seconds (%.1f games/second), %d failed%n", games.get(), players,
+                seconds, games.get() / seconds, failures.size());
+        out.printf("  %.0f legal claims/second, %.0f invariant checks/second%n", legalClaims.get() / seconds,
+                checks.get() / seconds);
+        for (String failure : failures)
+            out.println("  " + failure);
+        if (!failures.isEmpty())
+            out.println("  (a seed replays its game)");
+    }
+}
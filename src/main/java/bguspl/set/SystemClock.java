@@ -0,0 +1,43 @@
+package bguspl.set;
+
+/**
+ * The real time clock (the game runs in wall-clock time).
+ */
+public class SystemClock implements Clock {
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        if (millis > 0)
+            Thread.sleep(millis);
+    }
+
+    @Override
+    public void await(Object monitor, long millis) throws InterruptedException {
+        monitor.wait(Math.max(0, millis));
+    }
+
+    @Override
+    public void signalAll(Object monitor) {
+        monitor.notifyAll();
+    }
+
+    @Override
+    public void join(Thread thread, long millis) throws InterruptedException {
+        thread.join(Math.max(0, millis));
+    }
+
+    @Override
+    public void interrupt(Thread thread) {
+        thread.interrupt();
+    }
+
+    @Override
+    public Runnable track(Runnable task) {
+        return task;
+    }
+}
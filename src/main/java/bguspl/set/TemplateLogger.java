@@ -0,0 +1,46 @@
+package bguspl.set;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logs templated messages for the hot paths.
+ * The level is checked before anything is done, and if the logger has an AsyncLogHandler the record is handed to it
+ * without formatting or allocation. Otherwise the message is formatted and logged through the logger as usual.
+ */
+public class TemplateLogger {
+
+    private final Logger logger;
+    private final AsyncLogHandler handler;
+
+    public TemplateLogger(Logger logger) {
+        this.logger = logger;
+        this.handler = AsyncLogHandler.of(logger);
+    }
+
+    public void severe(LogTemplate template) {
+        log(Level.SEVERE, template, 0, 0, 0, 0);
+    }
+
+    public void severe(LogTemplate template, long arg0) {
+        log(Level.SEVERE, template, 1, arg0, 0, 0);
+    }
+
+    public void severe(LogTemplate template, long arg0, long arg1) {
+        log(Level.SEVERE, template, 2, arg0, arg1, 0);
+    }
+
+    private void log(Level level, LogTemplate template, int count, long arg0, long arg1, long arg2) {
+        if (!logger.isLoggable(level)) return;
+        if (handler != null)
+            handler.publish(level, template, count, arg0, arg1, arg2);
+        else if (count == 0)
+            logger.log(level, template.format());
+        else if (count == 1)
+            logger.log(level, template.format(arg0));
+        else if (count == 2)
+            logger.log(level, template.format(arg0, arg1));
+        else
+            logger.log(level, template.format(arg0, arg1, arg2));
+    }
+}
@@ -0,0 +1,412 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs many headless games on simulated time across all cores and prints a summary per configuration variant.
+ * Usage: Tournament [-threads n] [-seed s] [-export file] games config.properties...
+ * Every properties file is a variant (e.g. different strategies or freeze times) that plays the given number of
+ * games. Game i of every variant is played with the seed s + i, so the variants are compared on the same deals.
+ * A seed reproduces a game (its deck, strategies, timing and outcome): the game threads take turns in a fixed order
+ * on the simulated time (see VirtualClock), so a run of the same seeds and variants gives the same scores.
+ * All players are computer players (the Strategies property sets how they play).
+ * With -export, the board states, tokens, claims and verdicts of all the games are exported to a file for offline
+ * analysis (see ColumnarExporter), off the game threads: every game records through a growing sink of a bus of its own
+ * (see UserInterfaceBus). A tournament that loses rows of the export fails.
+ */
+public class Tournament {
+
+    /**
+     * Latencies are counted in log buckets: per millisecond below 2 * LATENCY_STEPS, and then LATENCY_STEPS buckets
+     * per power of 2 (so a bucket is at most 1 / LATENCY_STEPS of its latencies wide).
+     */
+    private static final int LATENCY_STEP_BITS = 4;
+    private static final int LATENCY_STEPS = 1 << LATENCY_STEP_BITS;
+    static final int LATENCY_BUCKETS = (64 - LATENCY_STEP_BITS) * LATENCY_STEPS;
+
+    /**
+     * The number of seats printed from the leaderboard.
+     */
+    private static final int LEADERBOARD_SIZE = 5;
+
+    /**
+     * Reports the failed games (the logger of the games is usually turned off, and its format drops the stack traces).
+     */
+    private static final Logger errorLogger = Logger.getLogger(Tournament.class.getName());
+
+    private final Logger logger;
+    private final String[] variants;
+    private final Properties[] properties;
+    private final Summary[] summaries;
+
+    /**
+     * The export of all the games (null for none).
+     */
+    private final ColumnarExporter exporter;
+
+    /**
+     * The points of every seat of every variant over all the games.
+     */
+    private final Leaderboard leaderboard = new Leaderboard(LEADERBOARD_SIZE);
+
+    /**
+     * @param logger - the logger of the games (usually turned off).
+     * @param files  - the properties files of the variants.
+     */
+    public Tournament(Logger logger, String... files) {
+        this(logger, null, files);
+    }
+
+    /**
+     * @param logger   - the logger of the games (usually turned off).
+     * @param exporter - the export of the games (null for none; a game is exported as game seed * variants + variant).
+     * @param files    - the properties files of the variants.
+     */
+    public Tournament(Logger logger, ColumnarExporter exporter, String... files) {
+        this.logger = logger;
+        this.exporter = exporter;
+        variants = files.clone();
+        properties = new Properties[files.length];
+        summaries = new Summary[files.length];
+        for (int i = 0; i < files.length; i++) {
+            properties[i] = Config.loadProperties(files[i], logger);
+            // headless computer players on simulated time
+            int players = new Config(logger, properties[i]).players;
+            properties[i].setProperty("HumanPlayers", "0");
+            properties[i].setProperty("ComputerPlayers", Integer.toString(players));
+            properties[i].setProperty("Headless", "True");
+            properties[i].setProperty("VirtualClock", "True");
+            properties[i].setProperty("Hints", "False");
+            properties[i].setProperty("Journal", "False");
+            properties[i].setProperty("SpectatorPort", "0");
+            properties[i].setProperty("EndGamePauseSeconds", "0");
+            summaries[i] = new Summary(Paths.get(files[i]).getFileName().toString());
+            // seats are ranked on the leaderboard by name
+            String[] strategies = new Config(logger, properties[i]).strategies;
+            StringBuilder names = new StringBuilder();
+            for (int seat = 0; seat < players; seat++)
+                names.append(seat == 0 ? "" : ",").append(summaries[i].variant).append(" seat ").append(seat + 1)
+                        .append(" (").append(strategies[seat]).append(")");
+            properties[i].setProperty("PlayerNames", names.toString());
+        }
+    }
+
+    /**
+     * @return - the number of configuration variants.
+     */
+    int variants() {
+        return variants.length;
+    }
+
+    /**
+     * @return - the name of a variant (its file name).
+     */
+    String variant(int variant) {
+        return summaries[variant].variant;
+    }
+
+    /**
+     * @return - the strategy of every seat of a variant.
+     */
+    String[] strategies(int variant) {
+        return new Config(logger, properties[variant]).strategies;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 0;
+        String export = null;
+        int arg = 0;
+        for (; arg < args.length && args[arg].startsWith("-"); arg += 2) {
+            if (arg + 1 == args.length) break;
+            if (args[arg].equals("-threads")) threads = Integer.parseInt(args[arg + 1]);
+            else if (args[arg].equals("-seed")) seed = Long.parseLong(args[arg + 1]);
+            else if (args[arg].equals("-export")) export = args[arg + 1];
+            else break;
+        }
+        if (args.length - arg < 2) {
+            System.err.println("usage: Tournament [-threads n] [-seed s] [-export file] games config.properties...");
+            return;
+        }
+        long games = Long.parseLong(args[arg]);
+        String[] files = new String[args.length - arg - 1];
+        System.arraycopy(args, arg + 1, files, 0, files.length);
+
+        Logger logger = Logger.getLogger("SetTournamentLogger");
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.OFF);
+
+        ColumnarExporter exporter = null;
+        if (export != null) {
+            int cards = 0;
+            for (String file : files)
+                cards = Math.max(cards, ColumnarExporter.cards(new Config(logger, Config.loadProperties(file, logger))));
+            exporter = new ColumnarExporter(logger, Paths.get(export), cards);
+        }
+        Tournament tournament = new Tournament(logger, exporter, files);
+        long start = System.currentTimeMillis();
+        tournament.run(games, seed, threads);
+        if (exporter != null)
+            exporter.close();
+        tournament.report(System.out, System.currentTimeMillis() - start);
+        if (exporter != null && exporter.dropped() > 0)
+            throw new IOException(exporter.dropped() + " rows were lost from the export " + export);
+    }
+
+    /**
+     * Plays the games of all the variants and adds them to the summaries.
+     *
+     * @param games   - the number of games per variant.
+     * @param seed    - the seed of the first game.
+     * @param threads - the number of games to play at the same time.
+     * @throws InterruptedException - if the calling thread was interrupted while waiting for the games.
+     */
+    public void run(long games, long seed, int threads) throws InterruptedException {
+        long total = games * variants.length;
+        AtomicLong next = new AtomicLong();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                for (long i = next.getAndIncrement(); i < total; i = next.getAndIncrement()) {
+                    int variant = (int) (i % variants.length);
+                    try {
+                        summaries[variant].add(play(variant, seed + i / variants.length));
+                    } catch (InterruptedException e) {
+                        return;
+                    } catch (RuntimeException e) {
+                        if (summaries[variant].fail() == 0)
+                            errorLogger.log(Level.SEVERE, "game " + i + " (" + summaries[variant].variant + ") failed", e);
+                    }
+                }
+            }, "tournament-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers)
+            worker.join();
+    }
+
+    /**
+     * Plays a single game.
+     *
+     * @param variant - the index of the variant.
+     * @param seed    - the random seed of the game.
+     * @return - the result of the game.
+     * @throws InterruptedException - if the calling thread was interrupted while waiting for the game.
+     */
+    public GameResult play(int variant, long seed) throws InterruptedException {
+        return play(variant, seed, GameListener.NONE);
+    }
+
+    /**
+     * Plays a single game, telling a listener of its claims (e.g. to watch its progress).
+     *
+     * @param variant  - the index of the variant.
+     * @param seed     - the random seed of the game.
+     * @param progress - the listener.
+     * @return - the result of the game.
+     * @throws InterruptedException - if the calling thread was interrupted while waiting for the game.
+     */
+    public GameResult play(int variant, long seed, GameListener progress) throws InterruptedException {
+        Properties game = new Properties();
+        game.putAll(properties[variant]);
+        game.setProperty("RandomSeed", Long.toString(seed));
+        Config config = new Config(logger, game);
+
+        VirtualClock clock = new VirtualClock();
+        try {
+            GameStatistics statistics = new GameStatistics(clock, config.players);
+            UserInterface ui = UserInterface.NONE; // nothing to display (unless the game is exported)
+            GameListener listener = progress == GameListener.NONE ? statistics
+                    : GameListener.both(statistics, progress);
+            UserInterfaceBus bus = null;
+            if (exporter != null) {
+                // recorded on the thread of the bus, so the game threads only queue the events
+                bus = new UserInterfaceBus(logger, config, clock);
+                ColumnarExporter.Recorder recorder = exporter.recorder(seed * variants.length + variant,
+                        bus.eventClock());
+                bus.add("export", recorder, recorder, UserInterfaceBus.Overflow.GROW);
+                ui = bus;
+                listener = GameListener.both(listener, bus);
+            }
+            Env env = new Env(logger, config, ui, new UtilImpl(config), listener, clock, leaderboard);
+            Game g = new Game(env, new Player[config.players]);
+            g.play();
+            if (bus != null)
+                bus.dispose(); // waits for the recorder to take every event
+            return new GameResult(variants[variant], seed, config.strategies, g.scores(), clock.currentTimeMillis(),
+                    statistics.legalClaims(), statistics.latencies());
+        } finally {
+            clock.shutdown();
+        }
+    }
+
+    /**
+     * @return - the bucket of a latency (see LATENCY_BUCKETS).
+     */
+    static int latencyBucket(long millis) {
+        if (millis < 2 * LATENCY_STEPS) return (int) Math.max(0, millis);
+        int shift = 63 - Long.numberOfLeadingZeros(millis) - LATENCY_STEP_BITS;
+        return shift * LATENCY_STEPS + (int) (millis >>> shift);
+    }
+
+    /**
+     * @return - the longest latency of a bucket.
+     */
+    static long latencyBucketMax(int bucket) {
+        if (bucket < 2 * LATENCY_STEPS) return bucket;
+        int shift = bucket / LATENCY_STEPS - 1;
+        long lowest = (long) (bucket - shift * LATENCY_STEPS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Prints the summary of every variant.
+     *
+     * @param out        - the stream to print to.
+     * @param wallMillis - the real time the tournament took.
+     */
+    public void report(PrintStream out, long wallMillis) {
+        long games = 0;
+        for (Summary summary : summaries) {
+            summary.print(out);
+            games += summary.games;
+        }
+        out.println("leaderboard:");
+        for (Leaderboard.Entry entry : leaderboard.top())
+            out.printf("  %-40s %6d points (%.0f%% of the seats have fewer)%n", entry.name, entry.points(),
+                    leaderboard.percentileRank(entry.name));
+        out.printf("%d games in %.1f seconds (%.1f games/second)%n", games, wallMillis / 1000.0,
+                games * 1000.0 / Math.max(1, wallMillis));
+    }
+
+    /**
+     * The aggregated results of the games of a variant.
+     */
+    static class Summary {
+
+        private final String variant;
+        private long games;
+        private long failures;
+        private int players;
+        private long durationMillis;
+        private long longestMillis;
+        private long legalClaims;
+        private long claims;
+        private long maxLatency;
+        private final long[] latencyCounts = new long[LATENCY_BUCKETS];
+
+        /**
+         * Per strategy: the number of seats, the total score and the (split between tied winners) wins.
+         */
+        private final Map<String, double[]> strategies = new LinkedHashMap<>();
+
+        Summary(String variant) {
+            this.variant = variant;
+        }
+
+        synchronized void add(GameResult result) {
+            games++;
+            players = result.scores.length;
+            durationMillis += result.durationMillis;
+            longestMillis = Math.max(longestMillis, result.durationMillis);
+            legalClaims += result.legalClaims;
+            claims += result.latencies.length;
+            for (long latency : result.latencies) {
+                latencyCounts[latencyBucket(latency)]++;
+                maxLatency = Math.max(maxLatency, latency);
+            }
+            int top = result.topScore();
+            double share = 1.0 / result.winnerCount();
+            for (int player = 0; player < result.scores.length; player++) {
+                double[] totals = strategies.computeIfAbsent(result.strategies[player], s -> new double[3]);
+                totals[0]++;
+                totals[1] += result.scores[player];
+                if (result.scores[player] == top) totals[2] += share;
+            }
+        }
+
+        /**
+         * Adds the totals of many games (e.g. of the games other processes played, see Scoreboard).
+         */
+        synchronized void add(long games, long failures, int players, long durationMillis, long longestMillis,
+                              long legalClaims, long[] latencyCounts, long maxLatency) {
+            this.games += games;
+            this.failures += failures;
+            this.players = Math.max(this.players, players);
+            this.durationMillis += durationMillis;
+            this.longestMillis = Math.max(this.longestMillis, longestMillis);
+            this.legalClaims += legalClaims;
+            for (int bucket = 0; bucket < latencyCounts.length; bucket++) {
+                this.latencyCounts[bucket] += latencyCounts[bucket];
+                claims += latencyCounts[bucket];
+            }
+            this.maxLatency = Math.max(this.maxLatency, maxLatency);
+        }
+
+        /**
+         * Adds the totals of a seat over many games.
+         *
+         * @param strategy - the strategy of the seat.
+         * @param games    - the number of games.
+         * @param score    - the total score.
+         * @param wins     - the total wins (split between tied winners).
+         */
+        synchronized void addSeat(String strategy, long games, long score, double wins) {
+            double[] totals = strategies.computeIfAbsent(strategy, s -> new double[3]);
+            totals[0] += games;
+            totals[1] += score;
+            totals[2] += wins;
+        }
+
+        synchronized long games() {
+            return games;
+        }
+
+        /**
+         * @return - the number of games that failed before this one.
+         */
+        synchronized long fail() {
+            return failures++;
+        }
+
+        /**
+         * @return - the smallest latency that at least the given fraction of the claims did not exceed (rounded up to
+         * the longest latency of its bucket).
+         */
+        private long percentile(double fraction) {
+            long rank = (long) Math.ceil(fraction * claims);
+            long seen = 0;
+            for (int bucket = 0; bucket < latencyCounts.length; bucket++) {
+                seen += latencyCounts[bucket];
+                if (seen >= rank && seen > 0) return Math.min(latencyBucketMax(bucket), maxLatency);
+            }
+            return maxLatency;
+        }
+
+        synchronized void print(PrintStream out) {
+            out.printf("%s: %d games (%d failed), %d players%n", variant, games, failures, players);
+            if (games == 0) return;
+            out.printf("  game length: mean %.1f s, longest %.1f s, %.1f sets/minute%n",
+                    durationMillis / 1000.0 / games, longestMillis / 1000.0,
+                    legalClaims * 60_000.0 / Math.max(1, durationMillis));
+            out.printf("  claim latency (ms): p50 %d, p90 %d, p99 %d, max %d (%d claims, %.1f%% legal)%n",
+                    percentile(0.5), percentile(0.9), percentile(0.99), maxLatency, claims,
+                    100.0 * legalClaims / Math.max(1, claims));
+            strategies.forEach((strategy, totals) -> out.printf("  %-8s mean score %.2f, win rate %.1f%%%n",
+                    strategy, totals[1] / totals[0], 100.0 * totals[2] / totals[0]));
+        }
+    }
+}
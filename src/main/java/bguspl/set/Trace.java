@@ -0,0 +1,136 @@
+package bguspl.set;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Traces every input through the game as JDK Flight Recorder events (see TraceAnalyzer for reading them).
+ * Each key press gets a correlation id (its input id) that the spans along its path carry:
+ * dispatch (AWT) - queue (player's key queue) - token (placed on the table) - paint (drawn on the screen), and for
+ * the key that completes a claim: claim (until the player has the verdict) - verdict (the dealer's check) - freeze.
+ * Nothing is recorded unless a recording is running, e.g. java -XX:StartFlightRecording=filename=game.jfr ...
+ */
+public final class Trace {
+
+    public static final String DISPATCH = "dispatch";
+    public static final String QUEUE = "queue";
+    public static final String TOKEN = "token";
+    public static final String PAINT = "paint";
+    public static final String CLAIM = "claim";
+    public static final String VERDICT = "verdict";
+    public static final String FREEZE = "freeze";
+
+    /**
+     * The stages in the order they happen to an input.
+     */
+    public static final String[] STAGES = {DISPATCH, QUEUE, TOKEN, PAINT, CLAIM, VERDICT, FREEZE};
+
+    /**
+     * The name of the JFR event type of the spans.
+     */
+    public static final String SPAN_EVENT = "bguspl.set.Span";
+
+    private static final AtomicLong inputs = new AtomicLong();
+
+    /**
+     * The input (id and press time) the current thread is handling, for the user interface calls it makes.
+     */
+    private static final ThreadLocal<long[]> current = ThreadLocal.withInitial(() -> new long[2]);
+
+    private Trace() {
+    }
+
+    @Name(SPAN_EVENT)
+    @Label("Game Span")
+    @Description("A stage of the way of an input through the game")
+    @Category("Set Game")
+    @StackTrace(false)
+    static class Span extends Event {
+
+        @Label("Stage")
+        String stage;
+
+        @Label("Input")
+        @Description("The correlation id of the key press")
+        long input;
+
+        @Label("Player")
+        int player;
+
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+
+        @Label("Since Input")
+        @Description("The time since the key was pressed")
+        @Timespan(Timespan.NANOSECONDS)
+        long sinceInput;
+    }
+
+    /**
+     * The event type of the spans (checked before creating a span, so tracing allocates nothing unless recording).
+     */
+    private static final EventType SPAN_TYPE = EventType.getEventType(Span.class);
+
+    /**
+     * @return - a new input (correlation) id.
+     */
+    public static long nextInput() {
+        return inputs.incrementAndGet();
+    }
+
+    /**
+     * Records a span that ends now.
+     *
+     * @param stage      - the stage (one of STAGES).
+     * @param input      - the input id (0 if unknown).
+     * @param player     - the player id.
+     * @param startNanos - when the stage started (System.nanoTime).
+     * @param inputNanos - when the input was pressed (System.nanoTime).
+     */
+    public static void span(String stage, long input, int player, long startNanos, long inputNanos) {
+        if (!SPAN_TYPE.isEnabled()) return;
+        Span span = new Span();
+        long now = System.nanoTime();
+        span.stage = stage;
+        span.input = input;
+        span.player = player;
+        span.latency = now - startNanos;
+        span.sinceInput = now - inputNanos;
+        span.commit();
+    }
+
+    /**
+     * Sets the input the current thread is handling.
+     *
+     * @param input      - the input id (0 for none).
+     * @param inputNanos - when the input was pressed.
+     */
+    public static void enter(long input, long inputNanos) {
+        long[] context = current.get();
+        context[0] = input;
+        context[1] = inputNanos;
+    }
+
+    /**
+     * @return - the id of the input the current thread is handling (0 if none).
+     */
+    public static long currentInput() {
+        return current.get()[0];
+    }
+
+    /**
+     * @return - when the input the current thread is handling was pressed.
+     */
+    public static long currentInputNanos() {
+        return current.get()[1];
+    }
+}
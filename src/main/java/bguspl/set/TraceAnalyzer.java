@@ -0,0 +1,76 @@
+package bguspl.set;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Prints the latency percentiles of every stage of the game spans (see Trace) in a flight recording.
+ * Usage: TraceAnalyzer recording.jfr
+ */
+public class TraceAnalyzer {
+
+    /**
+     * The end-to-end latencies: from the key press until the token is painted, and until the player has the verdict.
+     */
+    public static final String KEY_TO_PAINT = "key to paint";
+    public static final String KEY_TO_VERDICT = "key to verdict";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: TraceAnalyzer recording.jfr");
+            return;
+        }
+        print(analyze(Paths.get(args[0])), System.out);
+    }
+
+    /**
+     * @param recording - a JFR recording file.
+     * @return - the histogram of every stage (in the order of Trace.STAGES) and of the end-to-end latencies.
+     * @throws IOException - if the recording could not be read.
+     */
+    public static Map<String, LatencyHistogram> analyze(Path recording) throws IOException {
+        Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+        for (String stage : Trace.STAGES)
+            histograms.put(stage, new LatencyHistogram());
+        histograms.put(KEY_TO_PAINT, new LatencyHistogram());
+        histograms.put(KEY_TO_VERDICT, new LatencyHistogram());
+
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                if (!event.getEventType().getName().equals(Trace.SPAN_EVENT)) continue;
+                String stage = event.getString("stage");
+                LatencyHistogram histogram = histograms.get(stage);
+                if (histogram == null) continue;
+                histogram.record(event.getLong("latency"));
+                if (stage.equals(Trace.PAINT))
+                    histograms.get(KEY_TO_PAINT).record(event.getLong("sinceInput"));
+                else if (stage.equals(Trace.CLAIM))
+                    histograms.get(KEY_TO_VERDICT).record(event.getLong("sinceInput"));
+            }
+        }
+        return histograms;
+    }
+
+    /**
+     * Prints a table of the histograms (stages with no spans are skipped).
+     *
+     * @param histograms - the histograms by stage.
+     * @param out        - the stream to print to.
+     */
+    public static void print(Map<String, LatencyHistogram> histograms, PrintStream out) {
+        out.printf("%-16s %8s %10s %10s %10s%n", "stage", "count", "p50 (us)", "p99 (us)", "max (us)");
+        histograms.forEach((stage, histogram) -> {
+            if (histogram.getCount() > 0)
+                out.printf("%-16s %8d %10d %10d %10d%n", stage, histogram.getCount(), histogram.getP50Micros(),
+                        histogram.getP99Micros(), histogram.getMaxMicros());
+        });
+    }
+}
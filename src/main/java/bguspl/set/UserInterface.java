@@ -5,6 +5,59 @@ package bguspl.set;
  */
 public interface UserInterface {
 
+    /**
+     * A user interface that displays nothing (e.g. for headless games).
+     */
+    UserInterface NONE = new UserInterface() {
+        @Override
+        public void placeCard(int card, int slot) {
+        }
+
+        @Override
+        public void removeCard(int slot) {
+        }
+
+        @Override
+        public void placeToken(int player, int slot) {
+        }
+
+        @Override
+        public void removeTokens() {
+        }
+
+        @Override
+        public void removeTokens(int slot) {
+        }
+
+        @Override
+        public void removeToken(int player, int slot) {
+        }
+
+        @Override
+        public void setCountdown(long millies, boolean warn) {
+        }
+
+        @Override
+        public void setElapsed(long millies) {
+        }
+
+        @Override
+        public void setFreeze(int player, long millies) {
+        }
+
+        @Override
+        public void setScore(int player, int score) {
+        }
+
+        @Override
+        public void announceWinner(int[] players) {
+        }
+
+        @Override
+        public void dispose() {
+        }
+    };
+
     /**
      * Draw the card image corresponding to the card id in the specified slot.
      * @param card - the card id.
@@ -0,0 +1,639 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Fans the user interface calls of the game out to several user interfaces (sinks: the window, the spectator server,
+ * the bot gateway, the journal, the exporter), so the game threads never wait for a slow sink.
+ * A call only updates a model of what the screen shows and queues an event per sink (the game calls it while
+ * holding the table lock, which keeps the events in the order of the game state changes). Every asynchronous sink
+ * has a thread that delivers its events in order, with a queue of UiQueueCapacity events, and these rules:
+ * - the countdown (or elapsed time) and every player's score and freeze are values, not events: a sink gets the
+ * latest value once it catches up, however many calls there were in between.
+ * - what a sink does when its queue of the table events (cards, tokens, winners) overflows is its Overflow: a view
+ * (the window, the spectators, the bots) drops the queue and is sent the difference between what it shows and the
+ * model once it catches up (so the sink ends up showing the same as the others); a recorder (the journal, the
+ * exporter) must see every event, so its queue grows instead.
+ * Every event is stamped with the game clock time it was posted at, which a sink reads through eventClock() (so
+ * the journal and the exporter record when things happened, not when they were delivered). A sink that records the
+ * game events (claims and verdicts, see GameListener) too is sent them through its queue, in order with its user
+ * interface calls.
+ * A direct sink is called by the game thread.
+ * A token placement carries the input (see Trace) the posting thread was handling, and its sink thread delivers it
+ * as the input of the delivering thread, so the window traces the paint of the input that placed the token.
+ */
+public class UserInterfaceBus implements UserInterface, GameListener {
+
+    // the queued events: the type in the top byte, then two 28-bit arguments
+    private static final int PLACE_CARD = 1;
+    private static final int REMOVE_CARD = 2;
+    private static final int PLACE_TOKEN = 3;
+    private static final int REMOVE_ALL_TOKENS = 4;
+    private static final int REMOVE_SLOT_TOKENS = 5;
+    private static final int REMOVE_TOKEN = 6;
+    private static final int ANNOUNCE_WINNER = 7;
+    private static final int CLAIM_SUBMITTED = 8; // player, card count (the cards are queued aside)
+    private static final int CLAIM_RESOLVED = 9;  // player, legal
+    private static final long ARGUMENT_MASK = (1L << 28) - 1;
+
+    /**
+     * The longest dispose waits for the view sinks to deliver their remaining events (it waits for the growing sinks
+     * until they are done, since they must see every event).
+     */
+    private static final long DISPOSE_MILLIS = 1000;
+
+    private final Logger logger;
+    private final Clock clock;
+    private final int tableSize;
+    private final int players;
+    private final int featureSize;
+    private final int capacity;
+
+    private final List<Sink> sinks = new ArrayList<>();
+    private final List<UserInterface> directSinks = new ArrayList<>();
+
+    // what the screen shows (guarded by this)
+    private final int[] cards;
+    private final boolean[] tokens; // by slot and player
+    private final int[] scores;
+    private final long[] freezes;
+    private long timerMillis;
+    private boolean timerWarn;
+    private boolean elapsedTimer;
+    private int[] winners;
+
+    // when the values above were last set (game clock)
+    private long modelMillis;
+    private long timerSetMillis;
+    private final long[] scoreMillis;
+    private final long[] freezeMillis;
+
+    /**
+     * The sink the current thread delivers the events of (null on other threads).
+     */
+    private final ThreadLocal<Sink> delivering = new ThreadLocal<>();
+
+    /**
+     * The number of sink threads waiting for events (guarded by this).
+     */
+    private int waiting;
+
+    /**
+     * @param logger - the logger.
+     * @param config - the game configuration (the queue capacity is UiQueueCapacity).
+     * @param clock  - the game clock (for the event times).
+     */
+    public UserInterfaceBus(Logger logger, Config config, Clock clock) {
+        this.logger = logger;
+        this.clock = clock;
+        tableSize = config.tableSize;
+        players = config.players;
+        featureSize = config.featureSize;
+        capacity = config.uiQueueCapacity;
+        cards = new int[tableSize];
+        Arrays.fill(cards, -1);
+        tokens = new boolean[tableSize * players];
+        scores = new int[players];
+        freezes = new long[players];
+        scoreMillis = new long[players];
+        freezeMillis = new long[players];
+    }
+
+    /**
+     * What a sink does when its queue of table events is full.
+     */
+    public enum Overflow {
+        /**
+         * Drop the queue and send the difference between what the sink shows and the model (for a view).
+         */
+        RESYNC,
+        /**
+         * Grow the queue, so that every event is delivered (for a recorder).
+         */
+        GROW
+    }
+
+    /**
+     * Adds a sink that is called on a thread of its own.
+     *
+     * @param name     - the name of the sink (for its thread and the log).
+     * @param ui       - the sink.
+     * @param overflow - what the sink does when its queue is full.
+     */
+    public void add(String name, UserInterface ui, Overflow overflow) {
+        add(name, ui, null, overflow);
+    }
+
+    /**
+     * Adds a sink that is called on a thread of its own and is also sent the game events.
+     *
+     * @param name     - the name of the sink (for its thread and the log).
+     * @param ui       - the sink.
+     * @param listener - the listener of the sink (null if none).
+     * @param overflow - what the sink does when its queue is full.
+     */
+    public synchronized void add(String name, UserInterface ui, GameListener listener, Overflow overflow) {
+        Sink sink = new Sink(name, ui, listener, overflow);
+        sinks.add(sink);
+        sink.thread.start();
+    }
+
+    /**
+     * @return - a clock that reads, on a sink thread, the game clock time the event being delivered was posted at (and
+     * otherwise the game clock time): the clock of the sinks that record the time of the calls.
+     */
+    public Clock eventClock() {
+        return new Clock() {
+            @Override
+            public long currentTimeMillis() {
+                Sink sink = delivering.get();
+                return sink != null ? sink.millis : clock.currentTimeMillis();
+            }
+
+            @Override
+            public void sleep(long millis) throws InterruptedException {
+                clock.sleep(millis);
+            }
+
+            @Override
+            public void await(Object monitor, long millis) throws InterruptedException {
+                clock.await(monitor, millis);
+            }
+
+            @Override
+            public void signalAll(Object monitor) {
+                clock.signalAll(monitor);
+            }
+
+            @Override
+            public void join(Thread thread, long millis) throws InterruptedException {
+                clock.join(thread, millis);
+            }
+
+            @Override
+            public void interrupt(Thread thread) {
+                clock.interrupt(thread);
+            }
+
+            @Override
+            public Runnable track(Runnable task) {
+                return clock.track(task);
+            }
+        };
+    }
+
+    /**
+     * Adds a sink that is called by the game threads (it must not block).
+     */
+    public synchronized void addDirect(UserInterface ui) {
+        directSinks.add(ui);
+    }
+
+    /**
+     * A sink with its queue of table events, its pending values and the thread delivering them.
+     */
+    private class Sink implements Runnable {
+
+        private final String name;
+        private final UserInterface ui;
+        private final GameListener listener;
+        private final Overflow overflow;
+        private final Thread thread;
+
+        // guarded by the bus
+        private long[] events = new long[capacity];
+        private long[] times = new long[capacity];
+        private long[] inputs = new long[2 * capacity]; // per event: the input id and press time
+        private int[] claims; // per event: the cards of a claim
+        private int head;
+        private int count;
+        private boolean resync;
+        private boolean timerDirty;
+        private final boolean[] scoreDirty = new boolean[players];
+        private final boolean[] freezeDirty = new boolean[players];
+        private boolean dirty; // any of the values above
+        private boolean disposing;
+
+        // what the thread delivers next (thread only)
+        private final long[] batch = new long[capacity];
+        private final long[] batchTimes = new long[capacity];
+        private final long[] batchInputs = new long[2 * capacity];
+        private final int[] batchClaims;
+        private final int[] claim = new int[featureSize];
+        private final int[] cardsCopy = new int[tableSize];
+        private final boolean[] tokensCopy = new boolean[tableSize * players];
+        private final int[] scoresCopy = new int[players];
+        private final long[] freezesCopy = new long[players];
+        private final long[] scoreMillisCopy = new long[players];
+        private final long[] freezeMillisCopy = new long[players];
+        private final boolean[] scoreSend = new boolean[players];
+        private final boolean[] freezeSend = new boolean[players];
+
+        // what the sink was sent (thread only, see deliverAll)
+        private final int[] shownCards = new int[tableSize];
+        private final boolean[] shownTokens = new boolean[tableSize * players];
+        private boolean shownWinners;
+
+        /**
+         * The time of the event being delivered (thread only, see eventClock).
+         */
+        private long millis;
+
+        private Sink(String name, UserInterface ui, GameListener listener, Overflow overflow) {
+            this.name = name;
+            this.ui = ui;
+            this.listener = listener;
+            this.overflow = overflow;
+            claims = new int[listener == null ? 0 : capacity * featureSize];
+            batchClaims = new int[claims.length];
+            Arrays.fill(shownCards, -1);
+            thread = new Thread(this, "ui-" + name);
+            thread.setDaemon(true);
+        }
+
+        private void post(long event, long time, long input, long inputNanos, int[] cards) {
+            if (resync) return; // the model will be sent anyway
+            if (count == events.length) {
+                if (overflow == Overflow.GROW) {
+                    grow();
+                    logger.warning("user interface " + name + " fell behind, its queue grows to " + events.length);
+                } else {
+                    resync = true;
+                    count = 0;
+                    logger.warning("user interface " + name + " fell behind, it will be sent the changed table");
+                    return;
+                }
+            }
+            int index = (head + count++) % events.length;
+            events[index] = event;
+            times[index] = time;
+            inputs[2 * index] = input;
+            inputs[2 * index + 1] = inputNanos;
+            if (cards != null)
+                System.arraycopy(cards, 0, claims, index * featureSize, Math.min(cards.length, featureSize));
+        }
+
+        /**
+         * Doubles the queue, keeping the queued events in order from its start.
+         */
+        private void grow() {
+            int length = events.length;
+            long[] events = new long[2 * length];
+            long[] times = new long[2 * length];
+            long[] inputs = new long[4 * length];
+            int[] claims = new int[2 * this.claims.length];
+            for (int i = 0; i < count; i++) {
+                int index = (head + i) % length;
+                events[i] = this.events[index];
+                times[i] = this.times[index];
+                inputs[2 * i] = this.inputs[2 * index];
+                inputs[2 * i + 1] = this.inputs[2 * index + 1];
+                if (claims.length > 0)
+                    System.arraycopy(this.claims, index * featureSize, claims, i * featureSize, featureSize);
+            }
+            this.events = events;
+            this.times = times;
+            this.inputs = inputs;
+            this.claims = claims;
+            head = 0;
+        }
+
+        @Override
+        public void run() {
+            delivering.set(this);
+            while (true) {
+                int size = 0;
+                boolean all, timer, elapsed = false, warn = false, dispose;
+                long timerValue = 0, timerTime = 0, allTime = 0;
+                int[] winners;
+                synchronized (UserInterfaceBus.this) {
+                    while (count == 0 && !dirty && !resync && !disposing) {
+                        waiting++;
+                        try {
+                            UserInterfaceBus.this.wait();
+                        } catch (InterruptedException ignored) {
+                        } finally {
+                            waiting--;
+                        }
+                    }
+                    all = resync;
+                    if (all) {
+                        allTime = modelMillis;
+                        System.arraycopy(cards, 0, cardsCopy, 0, tableSize);
+                        System.arraycopy(tokens, 0, tokensCopy, 0, tokens.length);
+                        resync = false;
+                    }
+                    // a grown queue is delivered a batch at a time
+                    for (; count > 0 && size < batch.length; count--, head = (head + 1) % events.length) {
+                        batchTimes[size] = times[head];
+                        batchInputs[2 * size] = inputs[2 * head];
+                        batchInputs[2 * size + 1] = inputs[2 * head + 1];
+                        if (claims.length > 0)
+                            System.arraycopy(claims, head * featureSize, batchClaims, size * featureSize, featureSize);
+                        batch[size++] = events[head];
+                    }
+                    timer = timerDirty;
+                    if (timer) {
+                        timerValue = timerMillis;
+                        timerTime = timerSetMillis;
+                        warn = timerWarn;
+                        elapsed = elapsedTimer;
+                    }
+                    for (int player = 0; player < players; player++) {
+                        scoreSend[player] = scoreDirty[player];
+                        scoresCopy[player] = scores[player];
+                        scoreMillisCopy[player] = scoreMillis[player];
+                        freezeSend[player] = freezeDirty[player];
+                        freezesCopy[player] = freezes[player];
+                        freezeMillisCopy[player] = freezeMillis[player];
+                    }
+                    Arrays.fill(scoreDirty, false);
+                    Arrays.fill(freezeDirty, false);
+                    timerDirty = dirty = false;
+                    winners = UserInterfaceBus.this.winners;
+                    dispose = disposing && count == 0;
+                }
+
+                try {
+                    if (all) {
+                        millis = allTime;
+                        deliverAll(winners);
+                    }
+                    for (int i = 0; i < size; i++) {
+                        millis = batchTimes[i];
+                        deliver(i, batch[i], batchInputs[2 * i], batchInputs[2 * i + 1], winners);
+                    }
+                    if (timer) {
+                        millis = timerTime;
+                        if (elapsed) ui.setElapsed(timerValue);
+                        else ui.setCountdown(timerValue, warn);
+                    }
+                    for (int player = 0; player < players; player++) {
+                        millis = scoreMillisCopy[player];
+                        if (scoreSend[player]) ui.setScore(player, scoresCopy[player]);
+                        millis = freezeMillisCopy[player];
+                        if (freezeSend[player]) ui.setFreeze(player, freezesCopy[player]);
+                    }
+                    if (dispose) {
+                        ui.dispose();
+                        return;
+                    }
+                } catch (RuntimeException e) {
+                    logger.severe("user interface " + name + " failed: " + e);
+                }
+            }
+        }
+
+        private void deliver(int index, long event, long input, long inputNanos, int[] winners) {
+            int a = (int) (event >>> 28 & ARGUMENT_MASK);
+            int b = (int) (event & ARGUMENT_MASK);
+            switch ((int) (event >>> 56)) {
+                case PLACE_CARD:
+                    shownCards[b] = a;
+                    ui.placeCard(a, b);
+                    break;
+                case REMOVE_CARD:
+                    shownCards[b] = -1;
+                    ui.removeCard(b);
+                    break;
+                case PLACE_TOKEN:
+                    shownTokens[b * players + a] = true;
+                    if (input == 0) {
+                        ui.placeToken(a, b);
+                        break;
+                    }
+                    Trace.enter(input, inputNanos); // for the sink, as on the thread that placed the token
+                    try {
+                        ui.placeToken(a, b);
+                    } finally {
+                        Trace.enter(0, 0);
+                    }
+                    break;
+                case REMOVE_ALL_TOKENS:
+                    Arrays.fill(shownTokens, false);
+                    ui.removeTokens();
+                    break;
+                case REMOVE_SLOT_TOKENS:
+                    Arrays.fill(shownTokens, b * players, (b + 1) * players, false);
+                    ui.removeTokens(b);
+                    break;
+                case REMOVE_TOKEN:
+                    shownTokens[b * players + a] = false;
+                    ui.removeToken(a, b);
+                    break;
+                case ANNOUNCE_WINNER:
+                    if (winners == null) break;
+                    shownWinners = true;
+                    ui.announceWinner(winners);
+                    break;
+                case CLAIM_SUBMITTED:
+                    System.arraycopy(batchClaims, index * featureSize, claim, 0, featureSize);
+                    listener.claimSubmitted(a, b == featureSize ? claim : Arrays.copyOf(claim, b));
+                    break;
+                case CLAIM_RESOLVED:
+                    listener.claimResolved(a, b != 0);
+                    break;
+            }
+        }
+
+        /**
+         * Sends the difference between what the sink was sent and the copy of the table (after an overflow).
+         */
+        private void deliverAll(int[] winners) {
+            for (int slot = 0; slot < tableSize; slot++) {
+                int from = slot * players, to = from + players;
+                if (shownCards[slot] != cardsCopy[slot]) {
+                    for (int i = from; i < to; i++)
+                        if (shownTokens[i]) {
+                            ui.removeTokens(slot);
+                            Arrays.fill(shownTokens, from, to, false);
+                            break;
+                        }
+                    if (shownCards[slot] != -1) ui.removeCard(slot);
+                    if (cardsCopy[slot] != -1) ui.placeCard(cardsCopy[slot], slot);
+                    shownCards[slot] = cardsCopy[slot];
+                }
+                for (int player = 0; player < players; player++) {
+                    int i = from + player;
+                    if (shownTokens[i] == tokensCopy[i]) continue;
+                    if (tokensCopy[i]) ui.placeToken(player, slot);
+                    else ui.removeToken(player, slot);
+                    shownTokens[i] = tokensCopy[i];
+                }
+            }
+            if (winners != null && !shownWinners) {
+                shownWinners = true;
+                ui.announceWinner(winners);
+            }
+        }
+    }
+
+    private void post(int type, int a, int b) {
+        post(type, a, b, 0, 0);
+    }
+
+    private void post(int type, int a, int b, long input, long inputNanos) {
+        long event = (long) type << 56 | (a & ARGUMENT_MASK) << 28 | b & ARGUMENT_MASK;
+        modelMillis = clock.currentTimeMillis();
+        for (Sink sink : sinks)
+            sink.post(event, modelMillis, input, inputNanos, null);
+        if (waiting > 0)
+            notifyAll();
+    }
+
+    /**
+     * Queues a game event for the sinks with a listener.
+     */
+    private void postGameEvent(int type, int a, int b, int[] cards) {
+        long event = (long) type << 56 | (a & ARGUMENT_MASK) << 28 | b & ARGUMENT_MASK;
+        long now = clock.currentTimeMillis();
+        boolean posted = false;
+        for (Sink sink : sinks)
+            if (sink.listener != null) {
+                sink.post(event, now, 0, 0, cards);
+                posted = true;
+            }
+        if (posted && waiting > 0)
+            notifyAll();
+    }
+
+    /**
+     * @return - the game clock time a value was set at.
+     */
+    private long valueChanged() {
+        for (Sink sink : sinks)
+            sink.dirty = true;
+        if (waiting > 0)
+            notifyAll();
+        return modelMillis = clock.currentTimeMillis();
+    }
+
+    @Override
+    public synchronized void placeCard(int card, int slot) {
+        cards[slot] = card;
+        post(PLACE_CARD, card, slot);
+        for (UserInterface ui : directSinks) ui.placeCard(card, slot);
+    }
+
+    @Override
+    public synchronized void removeCard(int slot) {
+        cards[slot] = -1;
+        post(REMOVE_CARD, 0, slot);
+        for (UserInterface ui : directSinks) ui.removeCard(slot);
+    }
+
+    @Override
+    public synchronized void placeToken(int player, int slot) {
+        tokens[slot * players + player] = true;
+        post(PLACE_TOKEN, player, slot, Trace.currentInput(), Trace.currentInputNanos());
+        for (UserInterface ui : directSinks) ui.placeToken(player, slot);
+    }
+
+    @Override
+    public synchronized void removeTokens() {
+        Arrays.fill(tokens, false);
+        post(REMOVE_ALL_TOKENS, 0, 0);
+        for (UserInterface ui : directSinks) ui.removeTokens();
+    }
+
+    @Override
+    public synchronized void removeTokens(int slot) {
+        Arrays.fill(tokens, slot * players, (slot + 1) * players, false);
+        post(REMOVE_SLOT_TOKENS, 0, slot);
+        for (UserInterface ui : directSinks) ui.removeTokens(slot);
+    }
+
+    @Override
+    public synchronized void removeToken(int player, int slot) {
+        tokens[slot * players + player] = false;
+        post(REMOVE_TOKEN, player, slot);
+        for (UserInterface ui : directSinks) ui.removeToken(player, slot);
+    }
+
+    @Override
+    public synchronized void setCountdown(long millies, boolean warn) {
+        timerMillis = millies;
+        timerWarn = warn;
+        elapsedTimer = false;
+        for (Sink sink : sinks)
+            sink.timerDirty = true;
+        timerSetMillis = valueChanged();
+        for (UserInterface ui : directSinks) ui.setCountdown(millies, warn);
+    }
+
+    @Override
+    public synchronized void setElapsed(long millies) {
+        timerMillis = millies;
+        elapsedTimer = true;
+        for (Sink sink : sinks)
+            sink.timerDirty = true;
+        timerSetMillis = valueChanged();
+        for (UserInterface ui : directSinks) ui.setElapsed(millies);
+    }
+
+    @Override
+    public synchronized void setFreeze(int player, long millies) {
+        freezes[player] = millies;
+        for (Sink sink : sinks)
+            sink.freezeDirty[player] = true;
+        freezeMillis[player] = valueChanged();
+        for (UserInterface ui : directSinks) ui.setFreeze(player, millies);
+    }
+
+    @Override
+    public synchronized void setScore(int player, int score) {
+        scores[player] = score;
+        for (Sink sink : sinks)
+            sink.scoreDirty[player] = true;
+        scoreMillis[player] = valueChanged();
+        for (UserInterface ui : directSinks) ui.setScore(player, score);
+    }
+
+    @Override
+    public synchronized void announceWinner(int[] players) {
+        winners = players.clone();
+        post(ANNOUNCE_WINNER, 0, 0);
+        for (UserInterface ui : directSinks) ui.announceWinner(players);
+    }
+
+    @Override
+    public synchronized void claimSubmitted(int player, int[] cards) {
+        postGameEvent(CLAIM_SUBMITTED, player, Math.min(cards.length, featureSize), cards);
+    }
+
+    @Override
+    public synchronized void claimResolved(int player, boolean legal) {
+        postGameEvent(CLAIM_RESOLVED, player, legal ? 1 : 0, null);
+    }
+
+    /**
+     * Delivers the remaining events to every sink and disposes of the sinks (waiting a bounded time for the views).
+     */
+    @Override
+    public void dispose() {
+        List<Sink> sinks;
+        synchronized (this) {
+            sinks = new ArrayList<>(this.sinks);
+            for (Sink sink : sinks)
+                sink.disposing = true;
+            notifyAll();
+            for (UserInterface ui : directSinks) ui.dispose();
+        }
+        long deadline = System.currentTimeMillis() + DISPOSE_MILLIS;
+        for (Sink sink : sinks)
+            try {
+                if (sink.overflow == Overflow.GROW)
+                    sink.thread.join();
+                else
+                    sink.thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+                if (sink.thread.isAlive())
+                    logger.warning("user interface " + sink.name + " did not finish within " + DISPOSE_MILLIS + " ms");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+    }
+}
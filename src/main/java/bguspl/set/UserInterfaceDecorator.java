@@ -5,87 +5,82 @@ import java.util.List;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
+/**
+ * Logs the user interface calls and passes them on (it only logs: on the bus it runs on a sink thread, so the game
+ * threads spin through Util.spin where they change the table, see Table and Player).
+ */
 public class UserInterfaceDecorator implements UserInterface {
 
     private final Logger logger;
-    private final Util util;
+    private final TemplateLogger log;
     private final UserInterface ui;
 
-    public UserInterfaceDecorator(Logger logger, Util util, UserInterface ui) {
+    public UserInterfaceDecorator(Logger logger, UserInterface ui) {
         this.ui = ui;
         this.logger = logger;
-        this.util = util;
+        this.log = new TemplateLogger(logger);
 
         if (ui == null) System.out.println("running without a user interface. Check logs.");
     }
 
     @Override
     public void placeCard(int card, int slot) {
-        logger.severe("placing card " + card + " in slot " + slot);
-        util.spin();
+        log.severe(LogTemplate.PLACE_CARD, card, slot);
         if (ui != null) ui.placeCard(card, slot);
     }
 
     @Override
     public void removeCard(int slot) {
-        logger.severe("removing card from slot " + slot);
-        util.spin();
+        log.severe(LogTemplate.REMOVE_CARD, slot);
         if (ui != null) ui.removeCard(slot);
     }
 
     @Override
     public void placeToken(int player, int slot) {
-        logger.severe("player " + (player + 1) + " placing token on slot " + slot);
-        util.spin();
+        log.severe(LogTemplate.PLACE_TOKEN, player + 1, slot);
         if (ui != null) ui.placeToken(player, slot);
     }
 
     @Override
     public void removeTokens() {
-        logger.severe("removing all tokens");
-        util.spin();
+        log.severe(LogTemplate.REMOVE_ALL_TOKENS);
         if (ui != null) ui.removeTokens();
     }
 
     @Override
     public void removeTokens(int slot) {
-        logger.severe("removing tokens from slot " + slot);
-        util.spin();
+        log.severe(LogTemplate.REMOVE_SLOT_TOKENS, slot);
         if (ui != null) ui.removeTokens(slot);
     }
 
     @Override
     public void removeToken(int player, int slot) {
-        logger.severe("removing player " + (player + 1) + " token from slot " + slot);
-        util.spin();
+        log.severe(LogTemplate.REMOVE_TOKEN, player + 1, slot);
         if (ui != null) ui.removeToken(player, slot);
     }
 
     @Override
     public void setCountdown(long millies, boolean warn) {
         if (!warn || millies % 1000L == 0L)
-            logger.severe("updating countdown to " + millies);
+            log.severe(LogTemplate.COUNTDOWN, millies);
         if (ui != null) ui.setCountdown(millies, warn);
     }
 
     @Override
     public void setElapsed(long millies) {
-        logger.severe("updating elapsed time to " + millies);
-        util.spin();
+        log.severe(LogTemplate.ELAPSED, millies);
         if (ui != null) ui.setElapsed(millies);
     }
 
     @Override
     public void setFreeze(int player, long millies) {
-        logger.severe("setting player " + (player + 1) + " freeze to " + millies);
-        util.spin();
+        log.severe(LogTemplate.FREEZE, player + 1, millies);
         if (ui != null) ui.setFreeze(player, millies);
     }
 
     @Override
     public void setScore(int player, int score) {
-        logger.severe("setting player " + (player + 1) + " score to " + score);
-        util.spin();
+        log.severe(LogTemplate.SCORE, player + 1, score);
         if (ui != null) ui.setScore(player, score);
     }
 
@@ -98,7 +93,7 @@ public class UserInterfaceDecorator implements UserInterface {
 
     @Override
     public void dispose() {
-        logger.severe("disposing of user interface elements");
+        log.severe(LogTemplate.DISPOSE);
         if (ui != null) ui.dispose();
     }
 }
@@ -4,10 +4,13 @@ import bguspl.set.ex.Player;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.io.FileNotFoundException;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -24,6 +27,11 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     private final WinnerPanel winnerPanel;
     private final Config config;
 
+    /**
+     * The frame interval of the card animations.
+     */
+    private static final int FRAME_MILLIS = 16;
+
     static String intInBaseToPaddedString(int n, int padding, int base) {
         return format("%" + padding + "s", Integer.toString(n, base)).replace(' ', '0');
     }
@@ -103,10 +111,42 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     private class GamePanel extends JLayeredPane {
 
         private final Image emptyCard;
-        private final Image[] deck;
-        private final Image[][] grid;
-        private final boolean[][][] playerTokens;
-        private final JLabel[][] tokenText;
+        private final CardRenderer cards;
+        private final Image[] grid;
+
+        /**
+         * Per slot: what it showed before its card changed (faded out as grid fades in, over tableDelayMillis) and
+         * when it changed (System.nanoTime, 0 if it is not animating).
+         */
+        private final Image[] previous;
+        private final AtomicLongArray changedNanos;
+        private final long animationNanos;
+
+        /**
+         * Per slot bit mask of the players that have a token on it (maskWords longs per slot).
+         */
+        private final AtomicLongArray playerTokens;
+        private final int maskWords;
+
+        /**
+         * Slots that changed since they were last painted (1 = a repaint is already pending).
+         */
+        private final AtomicIntegerArray dirty;
+
+        /**
+         * Per slot: the input (see Trace) that placed the token not painted yet (0 if none), its player, its press
+         * time and when the token was placed.
+         */
+        private final AtomicLongArray paintInput;
+        private final AtomicIntegerArray paintPlayer;
+        private final AtomicLongArray paintInputNanos;
+        private final AtomicLongArray paintStartNanos;
+
+        /**
+         * Player names (and the separator between them) rendered once, so painting a token is a plain image blit.
+         */
+        private final BufferedImage[] nameGlyphs;
+        private final BufferedImage separatorGlyph;
 
         private Image loadImageResource(String filename) {
             URL imageResource = getClass().getClassLoader().getResource(filename);
@@ -115,60 +155,122 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             return new ImageIcon(imageResource).getImage();
         }
 
+        private BufferedImage renderGlyph(String text, Font font) {
+            FontMetrics metrics = getFontMetrics(font);
+            BufferedImage glyph = new BufferedImage(Math.max(1, metrics.stringWidth(text)), metrics.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = glyph.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setFont(font);
+            g.setColor(Color.BLACK);
+            g.drawString(text, 0, metrics.getAscent());
+            g.dispose();
+            return glyph;
+        }
+
         private GamePanel() {
 
             setPreferredSize(new Dimension(config.columns * config.cellWidth, config.rows * config.cellHeight));
 
-            // init deck and load all pictures from png files
-            assert config.featureSize < 10; // otherwise there will be naming conflicts
-
-            // load the image resources
-            deck = new Image[config.deckSize];
-            for (int i = 0; i < config.deckSize; ++i)
-                deck[i] = loadImageResource("cards/" + intInBaseToPaddedString(i, config.featureCount, config.featureSize) + ".png");
+            // the card images are loaded (or drawn) when the cards are placed
+            cards = new CardRenderer(config);
             emptyCard = loadImageResource("cards/empty_card.png");
 
-            grid = new Image[config.rows][config.columns];
-            tokenText = new JLabel[config.rows][config.columns];
-            playerTokens = new boolean[config.players][config.rows][config.columns];
-            for (int row = 0; row < config.rows; row++) {
-                for (int column = 0; column < config.columns; column++) {
-                    // init the cards on the table grid as empty cards
-                    grid[row][column] = emptyCard;
-
-                    // init the JLabel selection overlay
-                    tokenText[row][column] = new JLabel("");
-                    tokenText[row][column].setVerticalAlignment(JLabel.TOP);
-                    tokenText[row][column].setHorizontalAlignment(JLabel.CENTER);
-                    tokenText[row][column].setOpaque(false);
-                    tokenText[row][column].setBorder(BorderFactory.createLineBorder(Color.black));
-                    tokenText[row][column].setBounds((column * config.cellWidth), (row * config.cellHeight), config.cellWidth, config.cellHeight);
-                    add(tokenText[row][column]);
-                }
-            }
+            // init the cards on the table grid as empty cards
+            grid = new Image[config.tableSize];
+            Arrays.fill(grid, emptyCard);
+            previous = new Image[config.tableSize];
+            changedNanos = new AtomicLongArray(config.tableSize);
+            animationNanos = config.tableDelayMillis * 1_000_000;
+            if (animationNanos > 0)
+                new Timer(FRAME_MILLIS, e -> animate()).start();
+
+            maskWords = (config.players + Long.SIZE - 1) / Long.SIZE;
+            playerTokens = new AtomicLongArray(config.tableSize * maskWords);
+            dirty = new AtomicIntegerArray(config.tableSize);
+            paintInput = new AtomicLongArray(config.tableSize);
+            paintPlayer = new AtomicIntegerArray(config.tableSize);
+            paintInputNanos = new AtomicLongArray(config.tableSize);
+            paintStartNanos = new AtomicLongArray(config.tableSize);
+
+            // pre-render the token overlay text (same font as the labels used to have)
+            Font font = UIManager.getFont("Label.font");
+            nameGlyphs = new BufferedImage[config.players];
+            for (int player = 0; player < config.players; player++)
+                nameGlyphs[player] = renderGlyph(config.playerNames[player], font);
+            separatorGlyph = renderGlyph(", ", font);
+        }
+
+        /**
+         * Marks a slot as changed and schedules a repaint of its cell only (if one is not already pending).
+         */
+        private void invalidateSlot(int slot) {
+            if (dirty.compareAndSet(slot, 0, 1))
+                repaint((slot % config.columns) * config.cellWidth, (slot / config.columns) * config.cellHeight, config.cellWidth, config.cellHeight);
         }
 
         private void placeCard(int slot, int card) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            grid[row][column] = deck[card];
-            validate();
-            repaint();
+            change(slot, cards.image(card));
         }
 
         private void removeCard(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            grid[row][column] = emptyCard;
-            validate();
-            repaint();
+            change(slot, emptyCard);
+        }
+
+        /**
+         * Shows a new image in a slot (starting its animation, if cards are animated).
+         */
+        private void change(int slot, Image image) {
+            if (animationNanos > 0) {
+                previous[slot] = grid[slot];
+                grid[slot] = image;
+                changedNanos.set(slot, Math.max(1, System.nanoTime())); // published after the images
+            } else
+                grid[slot] = image;
+            invalidateSlot(slot);
+        }
+
+        /**
+         * Repaints the animating slots (called on every frame by a timer).
+         */
+        private void animate() {
+            for (int slot = 0; slot < config.tableSize; slot++)
+                if (changedNanos.get(slot) != 0)
+                    invalidateSlot(slot);
+        }
+
+        /**
+         * Draws the card of a slot, fading from the previous one while it animates.
+         */
+        private void paintCard(Graphics g, int slot, int x, int y) {
+            long changed = changedNanos.get(slot);
+            float progress = changed == 0 ? 1 : (float) (System.nanoTime() - changed) / animationNanos;
+            if (progress >= 1) {
+                changedNanos.compareAndSet(slot, changed, 0);
+                g.drawImage(grid[slot], x, y, this);
+                return;
+            }
+            g.drawImage(previous[slot], x, y, this);
+            Graphics2D faded = (Graphics2D) g.create();
+            faded.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, Math.max(0, progress)));
+            faded.drawImage(grid[slot], x, y, this);
+            faded.dispose();
         }
 
         private void placeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = true;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
+            int index = slot * maskWords + player / Long.SIZE;
+            long bit = 1L << (player % Long.SIZE);
+            long mask;
+            do {
+                mask = playerTokens.get(index);
+            } while (!playerTokens.compareAndSet(index, mask, mask | bit));
+            long input = Trace.currentInput();
+            if (input != 0) {
+                paintPlayer.set(slot, player);
+                paintInputNanos.set(slot, Trace.currentInputNanos());
+                paintStartNanos.set(slot, System.nanoTime());
+                paintInput.set(slot, input);
+            }
+            invalidateSlot(slot);
         }
 
         private void removeTokens() {
@@ -177,38 +279,75 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         }
 
         private void removeTokens(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            for (int player = 0; player < playerTokens.length; player++) {
-                playerTokens[player][row][column] = false;
-                tokenText[row][column].setText(generatePlayersTokenText(row, column));
-            }
+            for (int word = 0; word < maskWords; word++)
+                playerTokens.set(slot * maskWords + word, 0L);
+            invalidateSlot(slot);
         }
 
         private void removeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = false;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
+            int index = slot * maskWords + player / Long.SIZE;
+            long bit = 1L << (player % Long.SIZE);
+            long mask;
+            do {
+                mask = playerTokens.get(index);
+            } while (!playerTokens.compareAndSet(index, mask, mask & ~bit));
+            invalidateSlot(slot);
         }
 
-        private String generatePlayersTokenText(int row, int column) {
-            String text = "";
-            for (int player = 0; player < config.players; player++) {
-                if (playerTokens[player][row][column])
-                    text = text.concat(config.playerNames[player] + ", ");
-            }
-            if (text.length() < 2)
-                return "";
-            return text.substring(0, text.length() - 2);
+        /**
+         * Draws the names of the players that have a token on the slot, centered at the top of the cell.
+         */
+        private void paintTokens(Graphics g, int slot, int x, int y) {
+            int width = 0;
+            int count = 0;
+            for (int word = 0; word < maskWords; word++)
+                for (long mask = playerTokens.get(slot * maskWords + word); mask != 0; mask &= mask - 1) {
+                    width += nameGlyphs[word * Long.SIZE + Long.numberOfTrailingZeros(mask)].getWidth();
+                    count++;
+                }
+            if (count == 0)
+                return;
+            width += (count - 1) * separatorGlyph.getWidth();
+
+            int left = x + (config.cellWidth - width) / 2;
+            for (int word = 0; word < maskWords; word++)
+                for (long mask = playerTokens.get(slot * maskWords + word); mask != 0; mask &= mask - 1) {
+                    BufferedImage glyph = nameGlyphs[word * Long.SIZE + Long.numberOfTrailingZeros(mask)];
+                    g.drawImage(glyph, left, y, null);
+                    left += glyph.getWidth();
+                    if (--count > 0) {
+                        g.drawImage(separatorGlyph, left, y, null);
+                        left += separatorGlyph.getWidth();
+                    }
+                }
         }
 
         @Override
         public void paintComponent(Graphics g) {
-            // draw card images
-            for (int row = 0; row < config.rows; row++)
-                for (int column = 0; column < config.columns; column++)
-                    g.drawImage(grid[row][column], (column * config.cellWidth), (row * config.cellHeight), this);
+            // only the cells intersecting the clip (i.e. the dirty ones, unless the whole window is exposed) are drawn
+            Rectangle clip = g.getClipBounds();
+            int firstColumn = 0, lastColumn = config.columns - 1, firstRow = 0, lastRow = config.rows - 1;
+            if (clip != null) {
+                firstColumn = Math.max(firstColumn, clip.x / config.cellWidth);
+                lastColumn = Math.min(lastColumn, (clip.x + clip.width - 1) / config.cellWidth);
+                firstRow = Math.max(firstRow, clip.y / config.cellHeight);
+                lastRow = Math.min(lastRow, (clip.y + clip.height - 1) / config.cellHeight);
+            }
+
+            g.setColor(Color.BLACK);
+            for (int row = firstRow; row <= lastRow; row++)
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    int slot = row * config.columns + column;
+                    int x = column * config.cellWidth;
+                    int y = row * config.cellHeight;
+                    dirty.set(slot, 0);
+                    paintCard(g, slot, x, y);
+                    paintTokens(g, slot, x, y);
+                    g.drawRect(x, y, config.cellWidth - 1, config.cellHeight - 1);
+                    long input = paintInput.getAndSet(slot, 0);
+                    if (input != 0)
+                        Trace.span(Trace.PAINT, input, paintPlayer.get(slot), paintStartNanos.get(slot), paintInputNanos.get(slot));
+                }
         }
     }
 
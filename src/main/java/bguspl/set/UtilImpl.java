@@ -13,8 +13,29 @@ public class UtilImpl implements Util {
 
     private final Config config;
 
+    /**
+     * The precomputed index of the card completing every pair of cards (null if there is none).
+     */
+    private final SetIndex index;
+
+    /**
+     * The position of every card in the deck being searched plus 1 (0 if not in it), per thread; only the entries of
+     * the deck are set, and they are cleared when the search ends.
+     */
+    private final ThreadLocal<int[]> positions;
+
     public UtilImpl(Config config) {
+        this(config, null);
+    }
+
+    /**
+     * @param config - the game configuration.
+     * @param index  - the set index of the deck (see SetIndex.open), or null.
+     */
+    public UtilImpl(Config config, SetIndex index) {
         this.config = config;
+        this.index = index;
+        positions = ThreadLocal.withInitial(() -> new int[config.deckSize]);
     }
 
     private void cardToFeatures(int card, int[] features) {
@@ -40,24 +61,19 @@ public class UtilImpl implements Util {
 
     @Override
     public boolean testSet(int[] cards) {
-        int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
-        for (int i = 0; i < config.featureCount; ++i) {
+        // the features are taken out of the card ids on the fly (last feature first), so testing does not allocate
+        for (int i = 0, divisor = 1; i < config.featureCount; ++i, divisor *= config.featureSize) {
             boolean sameSame = true, butDifferent = true;
 
-            // check if this features is sameSame in all cards
-            for (int j = 1; j < features.length; ++j)
-                if (features[0][i] != features[j][i]) {
-                    sameSame = false;
-                    break;
-                }
-
-            // check if this feature is butDifferent in all cards
-            for (int j = 1; j < features.length; ++j)
-                for (int k = j; k < features.length; ++k)
-                    if (features[j - 1][i] == features[k][i]) {
+            // compare this feature in every pair of cards
+            for (int j = 1; j < cards.length; ++j) {
+                int feature = cards[j] / divisor % config.featureSize;
+                for (int k = 0; k < j; ++k)
+                    if (cards[k] / divisor % config.featureSize == feature)
                         butDifferent = false;
-                        break;
-                    }
+                    else
+                        sameSame = false;
+            }
 
             if (sameSame == butDifferent) return false;
         }
@@ -66,6 +82,7 @@ public class UtilImpl implements Util {
 
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
+        if (index != null) return findSetsIndexed(deck, count);
         LinkedList<int[]> sets = new LinkedList<>();
         int n = deck.size();
         int r = config.featureSize;
@@ -90,6 +107,37 @@ public class UtilImpl implements Util {
         return sets;
     }
 
+    /**
+     * Finds sets by looking up the card completing every pair of cards of the deck (O(n^2) instead of O(n^3) tests;
+     * the sets come in the same order as without the index).
+     */
+    private List<int[]> findSetsIndexed(List<Integer> deck, int count) {
+        LinkedList<int[]> sets = new LinkedList<>();
+        int n = deck.size();
+        int[] cards = new int[n];
+        int[] positions = this.positions.get();
+        try {
+            for (int i = 0; i < n; ++i) {
+                cards[i] = deck.get(i);
+                positions[cards[i]] = i + 1;
+            }
+            for (int i = 0; i < n; ++i)
+                for (int j = i + 1; j < n; ++j) {
+                    int k = positions[index.third(cards[i], cards[j])] - 1;
+                    if (k > j) {
+                        int[] set = {cards[i], cards[j], cards[k]};
+                        Arrays.sort(set);
+                        sets.add(set);
+                        if (sets.size() >= count) return sets;
+                    }
+                }
+            return sets;
+        } finally {
+            for (int card : cards)
+                positions[card] = 0;
+        }
+    }
+
     public void spin() {
         if (config.randomSpinMax <= 0) return;
         long cycles = ThreadLocalRandom.current().nextLong(config.randomSpinMin, config.randomSpinMax);
@@ -0,0 +1,333 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * A discrete-event clock for simulations: the game threads take turns, and time only passes when none of them can go
+ * on.
+ * Game threads must be registered (see track) and must do all their waiting through the clock. Exactly one of them
+ * runs at a time: the one holding the turn. When it waits in the clock (await, sleep or join) or ends, the turn is
+ * handed to the thread whose wait ended first in simulated time, the thread registered first among equals (threads
+ * are numbered in the order track is called). When none is ready, the time jumps forward to the earliest deadline and
+ * the threads waiting for it become ready, again in registration order. The order of the events of a game thus only
+ * depends on the game, so a game replays exactly, and a game that takes minutes in real time runs in as long as its
+ * computations take.
+ * A game thread that blocks outside the clock (e.g. on a monitor, or on a thread that is not a game thread) keeps the
+ * turn until it goes on, so a game thread must not wait in the clock while holding a monitor that another game thread
+ * needs. Threads that are not game threads (e.g. a user interface thread) may wait in and signal through the clock
+ * too: they are woken as soon as their wait is over, regardless of the turn.
+ */
+public class VirtualClock implements Clock {
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    /**
+     * A thread waiting in the clock, on a monitor or for a thread to end.
+     */
+    private static final class Waiter {
+
+        private final Thread thread;
+        private final Object monitor;
+        private final Thread joined;
+        private final long deadline;
+        private final long id;
+        private final long order;
+        private long readyAt;
+        private boolean ready;
+        private volatile boolean interrupted;
+        private volatile boolean woken;
+
+        private Waiter(Thread thread, Object monitor, Thread joined, long deadline, long id, long order) {
+            this.thread = thread;
+            this.monitor = monitor;
+            this.joined = joined;
+            this.deadline = deadline;
+            this.id = id;
+            this.order = order;
+        }
+    }
+
+    private static final Comparator<Waiter> BY_DEADLINE = Comparator.<Waiter>comparingLong(w -> w.deadline)
+            .thenComparingLong(w -> w.id).thenComparingLong(w -> w.order);
+    private static final Comparator<Waiter> BY_READY = Comparator.<Waiter>comparingLong(w -> w.readyAt)
+            .thenComparingLong(w -> w.id).thenComparingLong(w -> w.order);
+
+    private final Object lock = new Object();
+    private volatile long now;
+    private long order;
+
+    /**
+     * The game threads (by their numbers), the one holding the turn, the ones waiting in the clock and the number of
+     * the ones registered but not started yet.
+     */
+    private final Map<Thread, Long> ids = new HashMap<>();
+    private long nextId;
+    private Thread running;
+    private final Map<Thread, Waiter> parked = new HashMap<>();
+    private int pendingStarts;
+
+    /**
+     * The game threads whose wait is over, in the order they get the turn.
+     */
+    private final PriorityQueue<Waiter> ready = new PriorityQueue<>(BY_READY);
+    private final PriorityQueue<Waiter> timers = new PriorityQueue<>(BY_DEADLINE);
+    private final Map<Object, List<Waiter>> waiters = new IdentityHashMap<>();
+    private final Map<Thread, List<Waiter>> joiners = new HashMap<>();
+
+    private boolean stopped;
+
+    /**
+     * @param startMillis - the initial time.
+     */
+    public VirtualClock(long startMillis) {
+        now = startMillis;
+    }
+
+    public VirtualClock() {
+        this(0);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        if (millis <= 0) return;
+        Object monitor = new Object();
+        synchronized (monitor) {
+            await(monitor, millis);
+        }
+    }
+
+    @Override
+    public void await(Object monitor, long millis) throws InterruptedException {
+        if (Thread.interrupted()) throw new InterruptedException();
+        List<Waiter> wakeUps = new ArrayList<>();
+        Waiter waiter;
+        synchronized (lock) {
+            waiter = waiter(monitor, null, millis);
+            waiters.computeIfAbsent(monitor, m -> new ArrayList<>()).add(waiter);
+            dispatch(wakeUps);
+        }
+        deliver(wakeUps);
+        park(waiter);
+    }
+
+    @Override
+    public void signalAll(Object monitor) {
+        List<Waiter> wakeUps = new ArrayList<>();
+        synchronized (lock) {
+            List<Waiter> list = waiters.remove(monitor);
+            if (list != null)
+                for (Waiter waiter : list)
+                    ready(waiter, wakeUps);
+            dispatch(wakeUps);
+        }
+        deliver(wakeUps);
+    }
+
+    @Override
+    public void join(Thread thread, long millis) throws InterruptedException {
+        if (Thread.interrupted()) throw new InterruptedException();
+        Thread current = Thread.currentThread();
+        List<Waiter> wakeUps = new ArrayList<>();
+        Waiter waiter = null;
+        synchronized (lock) {
+            if (running == current && thread != current) {
+                while (!ids.containsKey(thread) && pendingStarts > 0 && thread.isAlive())
+                    lock.wait(1); // it may be a game thread that did not register yet
+                if (ids.containsKey(thread)) {
+                    waiter = waiter(new Object(), thread, millis);
+                    joiners.computeIfAbsent(thread, t -> new ArrayList<>()).add(waiter);
+                    dispatch(wakeUps);
+                }
+            }
+        }
+        if (waiter == null) { // not both game threads, or it already ended
+            thread.join(Math.max(0, millis));
+            return;
+        }
+        deliver(wakeUps);
+        synchronized (waiter.monitor) {
+            park(waiter);
+        }
+    }
+
+    @Override
+    public void interrupt(Thread thread) {
+        List<Waiter> wakeUps = new ArrayList<>();
+        synchronized (lock) {
+            Waiter waiter = parked.get(thread);
+            if (waiter == null) {
+                thread.interrupt(); // running, or not a game thread
+                return;
+            }
+            waiter.interrupted = true; // seen in its turn rather than whenever the interrupt reaches it
+            if (!waiter.ready)
+                ready(waiter, wakeUps);
+            dispatch(wakeUps);
+        }
+        deliver(wakeUps);
+    }
+
+    @Override
+    public Runnable track(Runnable task) {
+        long id;
+        synchronized (lock) {
+            pendingStarts++;
+            id = nextId++;
+        }
+        return () -> {
+            Thread current = Thread.currentThread();
+            List<Waiter> wakeUps = new ArrayList<>();
+            Waiter start;
+            synchronized (lock) {
+                pendingStarts--;
+                ids.put(current, id);
+                start = new Waiter(current, new Object(), null, NO_DEADLINE, id, order++);
+                parked.put(current, start);
+                ready(start, wakeUps);
+                dispatch(wakeUps);
+                lock.notifyAll(); // for the joins waiting for it to register
+            }
+            deliver(wakeUps);
+            try {
+                synchronized (start.monitor) {
+                    park(start);
+                }
+            } catch (InterruptedException e) {
+                current.interrupt(); // for the task to see
+            }
+            try {
+                task.run();
+            } finally {
+                wakeUps.clear();
+                synchronized (lock) {
+                    ids.remove(current);
+                    parked.remove(current);
+                    List<Waiter> list = joiners.remove(current);
+                    if (list != null)
+                        for (Waiter waiter : list)
+                            ready(waiter, wakeUps);
+                    if (running == current)
+                        running = null;
+                    dispatch(wakeUps);
+                }
+                deliver(wakeUps);
+            }
+        };
+    }
+
+    /**
+     * Stops the clock: the time does not advance anymore and the turn is not handed over anymore.
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            stopped = true;
+        }
+    }
+
+    /**
+     * Registers a wait of the calling thread (handing over the turn if it holds it). Must be called under the lock.
+     */
+    private Waiter waiter(Object monitor, Thread joined, long millis) {
+        Thread current = Thread.currentThread();
+        Waiter waiter = new Waiter(current, monitor, joined, millis > 0 ? now + millis : NO_DEADLINE,
+                ids.getOrDefault(current, Long.MAX_VALUE), order++);
+        if (waiter.deadline != NO_DEADLINE)
+            timers.add(waiter);
+        if (running == current) {
+            parked.put(current, waiter);
+            running = null;
+        }
+        return waiter;
+    }
+
+    /**
+     * Ends the wait of a waiter: a game thread waits for its turn, any other thread is woken (by deliver). Must be
+     * called under the lock.
+     */
+    private void ready(Waiter waiter, List<Waiter> wakeUps) {
+        waiter.ready = true;
+        List<Waiter> list = waiter.joined != null ? joiners.get(waiter.joined) : waiters.get(waiter.monitor);
+        if (list != null)
+            list.remove(waiter);
+        if (parked.get(waiter.thread) == waiter) {
+            waiter.readyAt = now;
+            ready.add(waiter);
+        } else {
+            wakeUps.add(waiter);
+        }
+    }
+
+    /**
+     * Hands the turn to the next ready game thread if no game thread holds it, advancing the time to the earliest
+     * deadline if none is ready. Must be called under the lock (the woken threads are notified later, by deliver).
+     */
+    private void dispatch(List<Waiter> wakeUps) {
+        while (running == null && pendingStarts == 0 && !stopped) {
+            if (ready.isEmpty()) {
+                while (!timers.isEmpty() && timers.peek().ready)
+                    timers.poll();
+                if (timers.isEmpty())
+                    return;
+                now = Math.max(now, timers.peek().deadline);
+                while (!timers.isEmpty() && timers.peek().deadline <= now) {
+                    Waiter waiter = timers.poll();
+                    if (!waiter.ready)
+                        ready(waiter, wakeUps);
+                }
+                continue; // the threads that are not game threads are just woken
+            }
+            Waiter next = ready.poll();
+            parked.remove(next.thread);
+            running = next.thread;
+            wakeUps.add(next);
+        }
+    }
+
+    /**
+     * Wakes the waiters taken off the clock. Must not be called under the lock.
+     * A waiter only goes on once it is woken here (not when it is taken off the clock), so that it cannot run and
+     * hand the turn back to a thread still holding its own monitor before its wait.
+     */
+    private static void deliver(List<Waiter> wakeUps) {
+        for (Waiter waiter : wakeUps)
+            synchronized (waiter.monitor) {
+                waiter.woken = true;
+                waiter.monitor.notifyAll();
+            }
+    }
+
+    /**
+     * Waits on the monitor of a waiter (held by the caller) until it is woken.
+     */
+    private void park(Waiter waiter) throws InterruptedException {
+        while (!waiter.woken) {
+            try {
+                waiter.monitor.wait();
+            } catch (InterruptedException e) { // not through interrupt
+                List<Waiter> wakeUps = new ArrayList<>();
+                synchronized (lock) {
+                    waiter.interrupted = true;
+                    if (!waiter.ready)
+                        ready(waiter, wakeUps);
+                    dispatch(wakeUps);
+                }
+                deliver(wakeUps);
+            }
+        }
+        if (waiter.interrupted) {
+            Thread.interrupted();
+            throw new InterruptedException();
+        }
+    }
+}
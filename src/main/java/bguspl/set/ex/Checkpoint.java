@@ -0,0 +1,165 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A snapshot of a game in progress, from which the game can be resumed (e.g. after a crash).
+ * The file is a header (magic number, format version and the game dimensions), the remaining turn time, the score
+ * and remaining freeze of every player, and then the game state segment as is (cards, tokens and deck order, see
+ * GameState). All numbers are big-endian.
+ * Note: pending claims are not kept (the players claim again after resuming) and neither is the random generator
+ * of the dealer (the deck order is kept, later shuffles differ).
+ */
+public class Checkpoint {
+
+    static final int MAGIC = 0x53455443; // "SETC"
+    static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 4 * Integer.BYTES + 3 * Integer.BYTES + Long.BYTES;
+
+    public final int tableSize;
+    public final int deckSize;
+    public final int players;
+
+    /**
+     * The turn time left (in milliseconds) and every player's score and remaining freeze (in milliseconds).
+     */
+    public final long timerMillis;
+    private final int[] scores;
+    private final long[] freezes;
+
+    /**
+     * A copy of the game state segment.
+     */
+    private final ByteBuffer segment;
+
+    private Checkpoint(int tableSize, int deckSize, long timerMillis, int[] scores, long[] freezes,
+                       ByteBuffer segment) {
+        this.tableSize = tableSize;
+        this.deckSize = deckSize;
+        this.players = scores.length;
+        this.timerMillis = timerMillis;
+        this.scores = scores;
+        this.freezes = freezes;
+        this.segment = segment;
+    }
+
+    /**
+     * Takes a snapshot of a game (on the dealer thread, which owns the deck and the scores).
+     *
+     * @param table       - the table.
+     * @param players     - the players.
+     * @param timerMillis - the turn time left.
+     * @param now         - the current time (for the remaining freezes).
+     * @return - the snapshot.
+     */
+    static Checkpoint capture(Table table, Player[] players, long timerMillis, long now) {
+        int[] scores = new int[players.length];
+        long[] freezes = new long[players.length];
+        for (int i = 0; i < players.length; i++) {
+            scores[i] = players[i].score();
+            freezes[i] = Math.max(0, players[i].frozenUntil() - now);
+        }
+        GameState state = table.state;
+        ByteBuffer segment = ByteBuffer.allocate(state.bytes());
+        table.whileLocked(() -> state.copyTo(segment));
+        segment.flip();
+        return new Checkpoint(state.tableSize(), state.deckSize(), timerMillis, scores, freezes, segment);
+    }
+
+    /**
+     * @return - the score of a player.
+     */
+    public int score(int player) {
+        return scores[player];
+    }
+
+    /**
+     * @return - the remaining freeze (in milliseconds) of a player.
+     */
+    public long freezeMillis(int player) {
+        return freezes[player];
+    }
+
+    /**
+     * @param config - the configuration of the resumed game (must have the dimensions of the checkpoint).
+     * @return - a new game state with the cards, tokens and deck of the checkpoint (and no claims).
+     */
+    public GameState state(Config config) {
+        GameState state = GameState.create(config);
+        if (state.bytes() != segment.remaining())
+            throw new IllegalArgumentException("the checkpoint is of a game of different dimensions");
+        state.copyFrom(segment.duplicate());
+        state.clearClaims();
+        return state;
+    }
+
+    /**
+     * Writes the checkpoint to a file, replacing it atomically (a crash while writing leaves the previous one).
+     *
+     * @param file - the file.
+     * @throws IOException - if writing failed.
+     */
+    public void write(Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + players * (Integer.BYTES + Long.BYTES));
+        header.putInt(MAGIC).putInt(VERSION).putInt(tableSize).putInt(deckSize).putInt(players)
+                .putInt(segment.remaining()).putInt(0).putLong(timerMillis);
+        for (int i = 0; i < players; i++)
+            header.putInt(scores[i]).putLong(freezes[i]);
+        header.flip();
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer[] buffers = {header, segment.duplicate()};
+            while (buffers[1].hasRemaining())
+                channel.write(buffers);
+            channel.force(false);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a checkpoint file.
+     *
+     * @param file - the file.
+     * @return - the checkpoint.
+     * @throws IOException - if the file cannot be read or is not a valid checkpoint.
+     */
+    public static Checkpoint read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = ByteBuffer.allocate((int) Math.min(channel.size(), Integer.MAX_VALUE));
+            while (in.hasRemaining() && channel.read(in) >= 0) ;
+            in.flip();
+            if (in.remaining() < HEADER_BYTES || in.getInt() != MAGIC)
+                throw new IOException(file + " is not a checkpoint");
+            int version = in.getInt();
+            if (version != VERSION)
+                throw new IOException("unsupported checkpoint version " + version);
+            int tableSize = in.getInt();
+            int deckSize = in.getInt();
+            int players = in.getInt();
+            int segmentBytes = in.getInt();
+            in.getInt(); // reserved
+            long timerMillis = in.getLong();
+            if (players < 0 || segmentBytes < 0
+                    || in.remaining() != players * (Integer.BYTES + Long.BYTES) + segmentBytes)
+                throw new IOException(file + " is truncated");
+            int[] scores = new int[players];
+            long[] freezes = new long[players];
+            for (int i = 0; i < players; i++) {
+                scores[i] = in.getInt();
+                freezes[i] = in.getLong();
+            }
+            return new Checkpoint(tableSize, deckSize, timerMillis, scores, freezes, in.slice());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package bguspl.set.ex;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Logger;
+
+/**
+ * Writes checkpoints of a game to a file on a background thread, so the dealer only pays for taking the snapshot.
+ * Only the latest checkpoint matters: one that is offered while the previous one is still being written replaces any
+ * other waiting checkpoint.
+ */
+public class Checkpointer {
+
+    private final Logger logger;
+    private final Path file;
+    private final Thread writer;
+
+    /**
+     * The checkpoint waiting to be written (guarded by this).
+     */
+    private Checkpoint pending;
+    private boolean closed;
+
+    /**
+     * @param logger - the logger.
+     * @param file   - the checkpoint file.
+     */
+    public Checkpointer(Logger logger, Path file) {
+        this.logger = logger;
+        this.file = file;
+        writer = new Thread(this::run, "checkpoint-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a checkpoint for writing (returns immediately).
+     */
+    public synchronized void offer(Checkpoint checkpoint) {
+        pending = checkpoint;
+        notifyAll();
+    }
+
+    /**
+     * Writes the waiting checkpoint (if any) and stops the writer thread.
+     *
+     * @param delete - true iff the file should be deleted instead (e.g. the game is over).
+     */
+    public void close(boolean delete) {
+        synchronized (this) {
+            closed = true;
+            if (delete) pending = null;
+            notifyAll();
+        }
+        try {
+            writer.join();
+            if (delete) Files.deleteIfExists(file);
+        } catch (InterruptedException ignored) {
+        } catch (IOException e) {
+            logger.warning("error deleting checkpoint " + file + ": " + e);
+        }
+    }
+
+    private void run() {
+        while (true) {
+            Checkpoint checkpoint;
+            synchronized (this) {
+                while (pending == null && !closed)
+                    try {
+                        wait();
+                    } catch (InterruptedException ignored) {
+                    }
+                if (pending == null) return;
+                checkpoint = pending;
+                pending = null;
+            }
+            long start = System.nanoTime();
+            try {
+                checkpoint.write(file);
+                logger.info("checkpoint written in " + (System.nanoTime() - start) / 1000 + " us");
+            } catch (IOException e) {
+                logger.severe("error writing checkpoint " + file + ": " + e);
+            }
+        }
+    }
+}
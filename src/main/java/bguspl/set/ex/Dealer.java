@@ -2,13 +2,11 @@ package bguspl.set.ex;
 
 import bguspl.set.Env;
 import bguspl.set.ThreadLogger;
+import bguspl.set.Trace;
 
+import java.nio.file.Paths;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
-import java.util.Vector;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.Random;
 
 /**
  * This class manages the dealer's threads and data
@@ -27,9 +25,9 @@ public class Dealer implements Runnable {
     private final Player[] players;
 
     /**
-     * The list of card ids that are left in the dealer's deck.
+     * The game state (the dealer's deck is kept in it).
      */
-    private final List<Integer> deck;
+    private final GameState state;
 
     /**
      * True iff game should be terminated.
@@ -43,7 +41,18 @@ public class Dealer implements Runnable {
 
     final private long warningTime;
 
-    private Integer playerToCheck;
+    private int playerToCheck;
+
+    /**
+     * The cards and the slots of the claim being checked (reused for every claim).
+     */
+    private final int[] claimCards;
+    private final int[] claimSlots;
+
+    /**
+     * The players whose tokens were on a removed card (their token counters go down with it).
+     */
+    private final int[] playersOnSlot;
 
     public volatile boolean dealerActive = true;
 
@@ -56,16 +65,66 @@ public class Dealer implements Runnable {
 
     private int tableSize;
 
+    /**
+     * The source of randomness for shuffling the deck.
+     */
+    private final Random random;
+
+    /**
+     * Chooses the cards to deal (see DealingPolicy).
+     */
+    private final DealingPolicy dealing;
+
+    /**
+     * Whether the hints of the table are used: printed (Hints) or read by a computer player's set finder strategy.
+     */
+    private final boolean hinted;
+
+    /**
+     * Writes the checkpoints of the game (null if the game is not checkpointed), and when the next one is due.
+     */
+    private final Checkpointer checkpointer;
+    private long nextCheckpoint;
+    private volatile boolean checkpointRequested;
+
+    /**
+     * The turn time left of a resumed game (-1 if the game was not resumed or the first turn started).
+     */
+    private long resumedTimerMillis = -1;
+
     public Dealer(Env env, Table table, Player[] players) {
+        this(env, table, players, -1);
+        for (int card = 0; card < env.config.deckSize; card++)
+            state.pushDeckCard(card);
+    }
+
+    /**
+     * Constructor for resuming a game: the deck (in its order) is the one in the game state of the table.
+     *
+     * @param timerMillis - the turn time left.
+     */
+    public Dealer(Env env, Table table, Player[] players, long timerMillis) {
         this.env = env;
         this.table = table;
         this.players = players;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
-        playerToCheck = null;
+        state = table.state;
+        resumedTimerMillis = timerMillis;
+        dealing = DealingPolicy.create(env.config.dealingPolicy, env);
+        boolean finder = false;
+        for (int i = env.config.humanPlayers; i < env.config.players; i++)
+            finder |= env.config.strategies[i].equals(Strategy.SET_FINDER);
+        hinted = env.config.hints || finder;
+        checkpointer = env.config.checkpointFile.isEmpty() ? null
+                : new Checkpointer(env.logger, Paths.get(env.config.checkpointFile));
+        playerToCheck = GameState.NONE;
         reshuffleTime = env.config.turnTimeoutMillis - 1;
         warningTime = env.config.turnTimeoutWarningMillis;
         this.featureSize = env.config.featureSize;
         this.tableSize = env.config.tableSize;
+        claimCards = new int[featureSize];
+        claimSlots = new int[featureSize];
+        playersOnSlot = new int[players.length];
+        this.random = new Random(env.config.randomSeed);
     }
 
     /**
@@ -76,21 +135,37 @@ public class Dealer implements Runnable {
         dealerThread = Thread.currentThread();
         env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
         for (int i = 0; i < players.length; i++) {
-            Thread t = new Thread(players[i]);
+            Thread t = new Thread(env.clock.track(players[i]), "player-" + i);
+            env.shutdown.register(t, players[i]::terminate);
             t.start();
         }
 
         while (!shouldFinish()) {
-            Collections.shuffle(deck);
+            if (resumedTimerMillis < 0)
+                state.shuffleDeck(random);
             placeCardsOnTable();
             updateTimerDisplay(true);
+            if (resumedTimerMillis >= 0) { // go on with the turn of the checkpoint
+                currTime -= reshuffleTime - resumedTimerMillis;
+                resumedTimerMillis = -1;
+                updateTimerDisplay(false);
+            }
+            nextCheckpoint = env.clock.currentTimeMillis() + env.config.checkpointMillis;
             timerLoop();
             removeAllCardsFromTable();
+            if (!terminate)
+                env.metrics.reshuffled();
         }
 
         announceWinners();
-        dealerActive = false;
+        synchronized (this) {
+            dealerActive = false;
+            env.clock.signalAll(this);
+        }
         closePlayerThreads();
+        table.hints().terminate();
+        if (checkpointer != null)
+            checkpointer.close(!terminate); // a finished game cannot be resumed
         env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
     }
 
@@ -99,33 +174,48 @@ public class Dealer implements Runnable {
      * not time out.
      */
     private void timerLoop() {
-        while (!terminate && System.currentTimeMillis() - currTime < reshuffleTime) {
-            sleepUntilWokenOrTimeout();
+        while (!terminate && env.clock.currentTimeMillis() - currTime < reshuffleTime) {
+            env.metrics.dealerLoop(sleepUntilWokenOrTimeout());
             updateTimerDisplay(false);
             removeCardsFromTable();
             placeCardsOnTable();
+            checkpoint();
         }
     }
 
+    /**
+     * Asks for a checkpoint of the game at the next iteration of the dealer (if the game is checkpointed).
+     */
+    public void requestCheckpoint() {
+        checkpointRequested = true;
+    }
+
+    /**
+     * Takes a checkpoint of the game if one is due or was asked for (it is written in the background).
+     */
+    private void checkpoint() {
+        if (checkpointer == null) return;
+        long now = env.clock.currentTimeMillis();
+        if (!checkpointRequested && (env.config.checkpointMillis <= 0 || now < nextCheckpoint)) return;
+        checkpointRequested = false;
+        nextCheckpoint = now + env.config.checkpointMillis;
+        checkpointer.offer(Checkpoint.capture(table, players, Math.max(0, reshuffleTime - (now - currTime)), now));
+    }
+
     /**
      * Called when the game should be terminated.
      */
     public void terminate() {
         dealerActive = false;
         terminate = true;
-        dealerThread.interrupt();
+        env.clock.interrupt(dealerThread);
     }
 
+    /**
+     * Stops the player threads (and their computer player threads) within the shutdown timeout.
+     */
     public void closePlayerThreads() {
-        for (int i = players.length - 1; i >= 0; i--) {
-            players[i].terminate();
-            try {
-                players[i].playerThread.interrupt();
-                players[i].playerThread.join();
-            } catch (InterruptedException e) {
-
-            }
-        }
+        env.shutdown.shutdown();
     }
 
     /**
@@ -134,40 +224,48 @@ public class Dealer implements Runnable {
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish() {
-        return terminate || env.util.findSets(deck, 1).size() == 0;
+        return terminate || env.util.findSets(state.deckView(), 1).size() == 0;
     }
 
     /**
      * Checks cards should be removed from the table and removes them.
      */
-    private void removeCardsFromTable() {
-        if (table.claims.size() != 0) {
+    void removeCardsFromTable() {
+        if (table.hasClaims()) {
             synchronized (table) {
-                playerToCheck = table.claims.remove(0);
+                long held = System.nanoTime();
+                playerToCheck = table.takeClaim();
                 if (players[playerToCheck].getCounter() == featureSize) {
-                    if (env.util.testSet(table.getPlayerTokens(false, playerToCheck))) {
+                    // the player tested its set: it still holds if no card was placed or removed since (only the
+                    // dealer places and removes cards, so the version cannot change before the cards are taken)
+                    if (table.version() == players[playerToCheck].claimVersion()
+                            || table.getPlayerTokens(false, playerToCheck, claimCards) == featureSize
+                            && env.util.testSet(claimCards)) {
+                        env.listener.claimResolved(playerToCheck, true);
+                        env.metrics.claimResolved(playerToCheck, true);
                         handleCorrectSet(playerToCheck);
                         players[playerToCheck].point();
                     } else {
+                        env.listener.claimResolved(playerToCheck, false);
+                        env.metrics.claimResolved(playerToCheck, false);
                         players[playerToCheck].penalty();
                     }
                 }
-                players[playerToCheck].changeCheck();
-                playerToCheck = null;
-                table.notifyAll();
+                Player claimer = players[playerToCheck];
+                Trace.span(Trace.VERDICT, claimer.claimInput(), playerToCheck, held, claimer.claimInputNanos());
+                claimer.changeCheck();
+                playerToCheck = GameState.NONE;
+                env.clock.signalAll(table);
+                env.metrics.tableMonitorHeld(System.nanoTime() - held);
             }
         }
         updateTimerDisplay(false);
     }
 
     private void handleCorrectSet(int playerToCheck) {
-        int[] playerSlots = table.getPlayerTokens(true, playerToCheck);
-        for (int i = 0; i < playerSlots.length; i++) {
-            Vector<Integer> tokensInSlot = table.getVectorSlot(playerSlots[i]);
-            table.removeCard(playerSlots[i]);
-            for (int j = 0; j < tokensInSlot.size(); j++) { // for all the players that put a token in this slot
-                players[tokensInSlot.get(j)].decreaseCounter();
-            }
+        int count = table.getPlayerTokens(true, playerToCheck, claimSlots);
+        for (int i = 0; i < count; i++) {
+            removeCard(claimSlots[i]);
             updateTimerDisplay(true);
         }
     }
@@ -176,42 +274,42 @@ public class Dealer implements Runnable {
      * Check if any cards can be removed from the deck and placed on the table.
      */
     private synchronized void placeCardsOnTable() {
-        boolean place = false;
-        for (int i = 0; i < tableSize && deck.size() > 0; i++) {
+        for (int i = 0; i < tableSize && state.deckCount() > 0; i++) {
             if (table.getCardfromSlot(i) == -1) {
-                table.placeCard(deck.remove(0), i);
-                place = true;
+                table.placeCard(state.removeDeckCard(dealing.next(table, state)), i);
             }
         }
         dealerActive = false;
-        this.notifyAll();
+        env.clock.signalAll(this);
 
-        if (env.config.hints && place) {
-            System.out.println("new hints:");
-            table.hints();
-        }
+        // after every deal and removal, for the players' strategies (printed too if hints are on)
+        if (hinted)
+            table.hints().request();
     }
 
     /**
      * Sleep for a fixed amount of time or until the thread is awakened for some
      * purpose.
+     *
+     * @return - true iff the dealer was woken up by a claim.
      */
-    private void sleepUntilWokenOrTimeout() {
+    private boolean sleepUntilWokenOrTimeout() {
         synchronized (table) {
             long waittime;
-            if (reshuffleTime - (System.currentTimeMillis() - currTime) <= warningTime)
+            if (reshuffleTime - (env.clock.currentTimeMillis() - currTime) <= warningTime)
                 waittime = 1;
             else
                 waittime = 500; // in case someone wakes the dealer up too early
-            long startWait = System.currentTimeMillis();
-            while (waittime > 0 && table.claims.isEmpty()) {
+            long startWait = env.clock.currentTimeMillis();
+            while (waittime > 0 && !table.hasClaims()) {
                 try {
-                    table.wait(waittime); // wait for one second (1000 milliseconds) or until woken up
-                    waittime = waittime - (System.currentTimeMillis() - startWait); // to make sure java does not wake
-                                                                                    // him up too early
+                    env.clock.await(table, waittime); // wait for one second (1000 milliseconds) or until woken up
+                    waittime = waittime - (env.clock.currentTimeMillis() - startWait); // to make sure java does not wake
+                                                                                       // him up too early
                 } catch (InterruptedException e) {
                 }
             }
+            return table.hasClaims();
         }
     }
 
@@ -221,32 +319,39 @@ public class Dealer implements Runnable {
     private void updateTimerDisplay(boolean reset) {
         if (reset) {
             env.ui.setCountdown(reshuffleTime, false);
-            currTime = System.currentTimeMillis();
+            currTime = env.clock.currentTimeMillis();
         } else {
-            long time = reshuffleTime - (System.currentTimeMillis() - currTime);
+            long time = reshuffleTime - (env.clock.currentTimeMillis() - currTime);
             if (time < 0)
                 time = 0;
             env.ui.setCountdown(time, time <= warningTime);
         }
     }
 
+    /**
+     * Removes a card from the table with the tokens of all the players on it.
+     */
+    private void removeCard(int slot) {
+        for (int i = table.removeCard(slot, playersOnSlot) - 1; i >= 0; i--)
+            players[playersOnSlot[i]].decreaseCounter();
+    }
+
     /**
      * Returns all the cards from the table to the deck.
      */
-    private synchronized void removeAllCardsFromTable() {
+    synchronized void removeAllCardsFromTable() {
         dealerActive = true;
         for (int i = 0; i < tableSize; i++) {
-            if (table.getCardfromSlot(i) != -1) {
-                deck.add(table.getCardfromSlot(i));
-                table.removeCard(i);
+            int card = table.getCardfromSlot(i);
+            if (card != -1) {
+                removeCard(i); // first: a card is never both on the table and in the deck
+                state.pushDeckCard(card);
             }
         }
-        for (int i = 0; i < players.length; i++) { // to reset the players info
-            players[i].resetCounter();
+        for (int i = 0; i < players.length; i++) // to reset the players info
             players[i].resetSetLegal();
-        }
         if (terminate) {
-            this.notifyAll();
+            env.clock.signalAll(this);
         }
     }
 
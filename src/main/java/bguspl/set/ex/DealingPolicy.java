@@ -0,0 +1,41 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+/**
+ * Chooses which card of the deck the dealer deals into the next empty slot of the table.
+ */
+public interface DealingPolicy {
+
+    /**
+     * The names of the available policies (see create).
+     */
+    String BLIND = "blind";
+    String SET_AWARE = "sets";
+
+    /**
+     * @param table - the table (with the cards dealt so far).
+     * @param state - the game state (its deck is not empty).
+     * @return - the position in the deck of the card to deal next.
+     */
+    int next(Table table, GameState state);
+
+    /**
+     * Creates a dealing policy by its name.
+     *
+     * @param name - the policy name (unknown names fall back to the blind policy).
+     * @param env  - the game environment.
+     * @return - the new policy.
+     */
+    static DealingPolicy create(String name, Env env) {
+        switch (name) {
+            case BLIND:
+                return (table, state) -> 0; // from the top of the deck
+            case SET_AWARE:
+                return new SetAwareDealingPolicy(env);
+            default:
+                env.logger.severe("unknown dealing policy " + name + ", using " + BLIND);
+                return (table, state) -> 0;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The state of a game in one contiguous segment of primitives (on or off the heap): the cards on the table, the
+ * tokens (a bit mask of players per slot), the dealer's deck and the queue of claims. A game costs a few hundred
+ * bytes and a handful of objects, whatever its size, so many idle games can be kept without burdening the GC.
+ * This class is not thread safe: the table guards it (the deck is only used by the dealer thread). The cards in the
+ * slots and the tokens are written with release and read with acquire semantics, so a single slot may be read without
+ * holding its lock.
+ *
+ * @inv card(s) == c iff slot(c) == s
+ */
+public class GameState {
+
+    /**
+     * The value of an empty slot and of a card that is not on the table.
+     */
+    public static final int NONE = -1;
+
+    // the header: deck size, claims queue head and length, and the version of the table
+    private static final int DECK_COUNT = 0;
+    private static final int CLAIMS_HEAD = 4;
+    private static final int CLAIMS_COUNT = 8;
+    private static final int VERSION = 12;
+    private static final int HEADER_BYTES = 16;
+
+    // the int and long views of the segment (in its byte order) for the ordered accesses
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final int tableSize;
+    private final int deckSize;
+    private final int players;
+    private final int maskWords;
+
+    // the byte offsets of the arrays in the segment
+    private final int slotToCard;
+    private final int cardToSlot;
+    private final int tokens;
+    private final int deck;
+    private final int claims;
+
+    private final ByteBuffer segment;
+
+    /**
+     * @param tableSize - the number of slots.
+     * @param deckSize  - the number of cards.
+     * @param players   - the number of players.
+     * @param direct    - true iff the segment should be allocated off the heap.
+     */
+    public GameState(int tableSize, int deckSize, int players, boolean direct) {
+        this.tableSize = tableSize;
+        this.deckSize = deckSize;
+        this.players = players;
+        maskWords = (players + Long.SIZE - 1) / Long.SIZE;
+        slotToCard = HEADER_BYTES;
+        cardToSlot = slotToCard + Integer.BYTES * tableSize;
+        tokens = align(cardToSlot + Integer.BYTES * deckSize);
+        deck = tokens + Long.BYTES * tableSize * maskWords;
+        claims = deck + Integer.BYTES * deckSize;
+        int bytes = claims + Integer.BYTES * players;
+        segment = direct ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes);
+        for (int slot = 0; slot < tableSize; slot++)
+            segment.putInt(slotToCard + Integer.BYTES * slot, NONE);
+        for (int card = 0; card < deckSize; card++)
+            segment.putInt(cardToSlot + Integer.BYTES * card, NONE);
+    }
+
+    /**
+     * @param config - the game configuration.
+     * @return - an empty state for a game of the configuration.
+     */
+    public static GameState create(Config config) {
+        return new GameState(config.tableSize, config.deckSize, config.players, config.directGameState);
+    }
+
+    private static int align(int offset) {
+        return (offset + Long.BYTES - 1) & -Long.BYTES;
+    }
+
+    public int tableSize() {
+        return tableSize;
+    }
+
+    public int deckSize() {
+        return deckSize;
+    }
+
+    /**
+     * @return - the size of the segment in bytes.
+     */
+    public int bytes() {
+        return segment.capacity();
+    }
+
+    /**
+     * Copies the whole segment (e.g. for a checkpoint).
+     *
+     * @param out - the buffer to copy to (at least bytes() remaining).
+     */
+    public void copyTo(ByteBuffer out) {
+        ByteBuffer all = segment.duplicate();
+        all.clear();
+        out.put(all);
+    }
+
+    /**
+     * Replaces the whole segment with a copy of another state of the same dimensions.
+     *
+     * @param in - the buffer to copy from (bytes() remaining).
+     */
+    public void copyFrom(ByteBuffer in) {
+        ByteBuffer all = segment.duplicate();
+        all.clear();
+        ByteBuffer copy = in.duplicate();
+        copy.limit(copy.position() + all.capacity());
+        all.put(copy);
+        in.position(copy.position());
+    }
+
+    /**
+     * @return - a number that changes whenever a card is placed or removed.
+     */
+    public int version() {
+        return segment.getInt(VERSION);
+    }
+
+    // the table
+
+    /**
+     * @return - the card in the slot, or NONE.
+     */
+    public int card(int slot) {
+        return (int) INTS.getAcquire(segment, slotToCard + Integer.BYTES * slot);
+    }
+
+    /**
+     * @return - the slot of the card, or NONE if it is not on the table.
+     */
+    public int slot(int card) {
+        return segment.getInt(cardToSlot + Integer.BYTES * card);
+    }
+
+    /**
+     * @return - the number of cards on the table.
+     */
+    public int cardCount() {
+        int count = 0;
+        for (int slot = 0; slot < tableSize; slot++)
+            if (card(slot) != NONE) count++;
+        return count;
+    }
+
+    /**
+     * Places a card in an empty slot.
+     */
+    public void placeCard(int card, int slot) {
+        segment.putInt(cardToSlot + Integer.BYTES * card, slot);
+        INTS.setRelease(segment, slotToCard + Integer.BYTES * slot, card);
+        segment.putInt(VERSION, version() + 1);
+    }
+
+    /**
+     * Removes the card in a slot and the tokens on it.
+     *
+     * @return - the card that was removed, or NONE if the slot was empty.
+     */
+    public int removeCard(int slot) {
+        int card = card(slot);
+        if (card == NONE) return NONE;
+        INTS.setRelease(segment, slotToCard + Integer.BYTES * slot, NONE);
+        segment.putInt(cardToSlot + Integer.BYTES * card, NONE);
+        clearTokens(slot);
+        segment.putInt(VERSION, version() + 1);
+        return card;
+    }
+
+    // the tokens
+
+    private int tokenWord(int slot, int player) {
+        return tokens + Long.BYTES * (slot * maskWords + player / Long.SIZE);
+    }
+
+    public boolean hasToken(int slot, int player) {
+        return ((long) LONGS.getAcquire(segment, tokenWord(slot, player)) & 1L << (player % Long.SIZE)) != 0;
+    }
+
+    /**
+     * @return - true iff the player did not have a token on the slot.
+     */
+    public boolean setToken(int slot, int player) {
+        int word = tokenWord(slot, player);
+        long mask = segment.getLong(word);
+        long bit = 1L << (player % Long.SIZE);
+        LONGS.setRelease(segment, word, mask | bit);
+        return (mask & bit) == 0;
+    }
+
+    /**
+     * @return - true iff the player had a token on the slot.
+     */
+    public boolean clearToken(int slot, int player) {
+        int word = tokenWord(slot, player);
+        long mask = segment.getLong(word);
+        long bit = 1L << (player % Long.SIZE);
+        LONGS.setRelease(segment, word, mask & ~bit);
+        return (mask & bit) != 0;
+    }
+
+    public void clearTokens(int slot) {
+        for (int word = 0; word < maskWords; word++)
+            LONGS.setRelease(segment, tokens + Long.BYTES * (slot * maskWords + word), 0L);
+    }
+
+    /**
+     * @param slot    - the slot.
+     * @param players - an array (of at least the number of players) to fill with the players with a token on the slot.
+     * @return - the number of players filled in.
+     */
+    public int playersWithToken(int slot, int[] players) {
+        int count = 0;
+        for (int word = 0; word < maskWords; word++)
+            for (long mask = segment.getLong(tokens + Long.BYTES * (slot * maskWords + word)); mask != 0; mask &= mask - 1)
+                players[count++] = word * Long.SIZE + Long.numberOfTrailingZeros(mask);
+        return count;
+    }
+
+    // the deck
+
+    public int deckCount() {
+        return segment.getInt(DECK_COUNT);
+    }
+
+    public int deckCard(int index) {
+        return segment.getInt(deck + Integer.BYTES * index);
+    }
+
+    private void setDeckCard(int index, int card) {
+        segment.putInt(deck + Integer.BYTES * index, card);
+    }
+
+    /**
+     * Adds a card at the bottom of the deck.
+     */
+    public void pushDeckCard(int card) {
+        int count = deckCount();
+        setDeckCard(count, card);
+        segment.putInt(DECK_COUNT, count + 1);
+    }
+
+    /**
+     * Removes a card from the deck (the cards after it move up).
+     *
+     * @return - the card.
+     */
+    public int removeDeckCard(int index) {
+        int card = deckCard(index);
+        int count = deckCount();
+        for (int i = index + 1; i < count; i++)
+            setDeckCard(i - 1, deckCard(i));
+        segment.putInt(DECK_COUNT, count - 1);
+        return card;
+    }
+
+    /**
+     * Shuffles the deck (the same permutation as Collections.shuffle with the same random).
+     */
+    public void shuffleDeck(Random random) {
+        for (int i = deckCount(); i > 1; i--) {
+            int j = random.nextInt(i);
+            int card = deckCard(i - 1);
+            setDeckCard(i - 1, deckCard(j));
+            setDeckCard(j, card);
+        }
+    }
+
+    /**
+     * @return - a read-only list view of the deck (e.g. for Util.findSets).
+     */
+    public List<Integer> deckView() {
+        return new AbstractList<Integer>() {
+            @Override
+            public Integer get(int index) {
+                return deckCard(index);
+            }
+
+            @Override
+            public int size() {
+                return deckCount();
+            }
+        };
+    }
+
+    // the claims queue (at most one claim per player)
+
+    /**
+     * @return - false iff the queue is full.
+     */
+    public boolean queueClaim(int player) {
+        int count = segment.getInt(CLAIMS_COUNT);
+        if (count == players) return false;
+        int tail = (segment.getInt(CLAIMS_HEAD) + count) % players;
+        segment.putInt(claims + Integer.BYTES * tail, player);
+        segment.putInt(CLAIMS_COUNT, count + 1);
+        return true;
+    }
+
+    public void clearClaims() {
+        segment.putInt(CLAIMS_HEAD, 0);
+        segment.putInt(CLAIMS_COUNT, 0);
+    }
+
+    public int claimCount() {
+        return segment.getInt(CLAIMS_COUNT);
+    }
+
+    /**
+     * @return - the player of a queued claim (0 is the oldest).
+     */
+    public int claim(int index) {
+        return segment.getInt(claims + Integer.BYTES * ((segment.getInt(CLAIMS_HEAD) + index) % players));
+    }
+
+    /**
+     * @return - the player of the oldest claim, or NONE if there are no claims.
+     */
+    public int takeClaim() {
+        int count = segment.getInt(CLAIMS_COUNT);
+        if (count == 0) return NONE;
+        int head = segment.getInt(CLAIMS_HEAD);
+        segment.putInt(CLAIMS_HEAD, (head + 1) % players);
+        segment.putInt(CLAIMS_COUNT, count - 1);
+        return segment.getInt(claims + Integer.BYTES * head);
+    }
+}
@@ -0,0 +1,249 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Arrays;
+
+/**
+ * Finds the legal sets on the table on a background thread, so that the dealer never waits for them.
+ * The sets are computed per table version and kept until the table changes; a computation is abandoned as soon as
+ * the table changes under it. Readers (the console printer, user interfaces, computer players) get an immutable
+ * snapshot and compare its version with the table's to know whether it is still current.
+ */
+public class HintEngine {
+
+    /**
+     * The legal sets of a table version, as the slots of their cards (in ascending order).
+     */
+    public static final class Hints {
+
+        public final int version;
+        private final int size;
+        private final int[] slots; // the slots of every set in turn
+
+        private Hints(int version, int size, int[] slots) {
+            this.version = version;
+            this.size = size;
+            this.slots = slots;
+        }
+
+        /**
+         * @return - the number of legal sets.
+         */
+        public int count() {
+            return slots.length / size;
+        }
+
+        /**
+         * @param set - the index of the set (less than count()).
+         * @param i   - the index of the card in the set (less than the feature size).
+         * @return - the slot of the card.
+         */
+        public int slot(int set, int i) {
+            return slots[set * size + i];
+        }
+
+        /**
+         * @param set - the index of the set (less than count()).
+         * @return - the slots of the set.
+         */
+        public int[] slots(int set) {
+            return Arrays.copyOfRange(slots, set * size, (set + 1) * size);
+        }
+    }
+
+    /**
+     * The result before any computation (matches no table version).
+     */
+    private static final Hints NONE = new Hints(Integer.MIN_VALUE, 1, new int[0]);
+
+    private final Env env;
+    private final Table table;
+    private final int tableSize;
+    private final int featureSize;
+
+    /**
+     * The latest version of the table (updated by the table) and the version hints were last requested for.
+     */
+    private volatile int tableVersion;
+    private volatile int requested = NONE.version;
+
+    /**
+     * The sets of the latest completed computation, and the version the worker last tried (worker thread only).
+     */
+    private volatile Hints latest = NONE;
+    private int attempted = NONE.version;
+
+    private Thread worker;
+    private volatile boolean terminate;
+
+    /**
+     * @param env   - the environment object.
+     * @param table - the table to find sets on.
+     */
+    public HintEngine(Env env, Table table) {
+        this.env = env;
+        this.table = table;
+        this.tableSize = env.config.tableSize;
+        this.featureSize = env.config.featureSize;
+    }
+
+    /**
+     * Called by the table (holding its monitor) whenever a card is placed or removed.
+     *
+     * @param version - the new version of the table.
+     */
+    void tableChanged(int version) {
+        tableVersion = version;
+    }
+
+    /**
+     * Asks for the sets of the current table (the worker thread is started on the first request, as a game thread of
+     * the clock that the shutdown of the game stops).
+     * Returns immediately; the sets are available from latest() once computed. Asking again for the same table does
+     * not wake the worker thread.
+     */
+    public synchronized void request() {
+        if (terminate || requested == tableVersion) return;
+        requested = tableVersion;
+        if (worker == null) {
+            worker = new Thread(env.clock.track(this::run), "hints");
+            worker.setDaemon(true);
+            env.shutdown.register(worker, this::stop);
+            worker.start();
+        }
+        env.clock.signalAll(this);
+    }
+
+    /**
+     * @return - the sets of the latest completed computation (compare its version with the table's).
+     */
+    public Hints latest() {
+        return latest;
+    }
+
+    /**
+     * @return - the sets of the current table, or null if they were not computed (yet).
+     */
+    public Hints current() {
+        Hints hints = latest;
+        return hints.version == tableVersion ? hints : null;
+    }
+
+    /**
+     * Tells the worker thread to stop (without waiting for it).
+     */
+    private synchronized void stop() {
+        terminate = true;
+        env.clock.signalAll(this);
+    }
+
+    /**
+     * Stops the worker thread.
+     */
+    public void terminate() {
+        stop();
+        Thread thread;
+        synchronized (this) {
+            thread = worker;
+        }
+        if (thread != null)
+            try {
+                env.clock.join(thread, 0);
+            } catch (InterruptedException ignored) {
+            }
+    }
+
+    private void run() {
+        int[] slotCards = new int[tableSize];
+        int[] cards = new int[tableSize];
+        int[] slots = new int[tableSize];
+        while (true) {
+            synchronized (this) {
+                // an abandoned computation is not retried: the table is changing and a new request will follow
+                while (!terminate && requested == attempted)
+                    try {
+                        env.clock.await(this, 0);
+                    } catch (InterruptedException ignored) {
+                    }
+                if (terminate) return;
+                attempted = requested;
+            }
+            Hints hints = compute(slotCards, cards, slots);
+            if (hints != null) {
+                latest = hints;
+                if (env.config.hints)
+                    print(hints, slotCards);
+            }
+        }
+    }
+
+    /**
+     * Finds all the sets of the table.
+     *
+     * @param slotCards - filled with the card in every slot (or GameState.NONE).
+     * @param cards     - scratch space for the cards on the table.
+     * @param slots     - scratch space for the slots of these cards.
+     * @return - the sets, or null if the table changed during the computation.
+     */
+    private Hints compute(int[] slotCards, int[] cards, int[] slots) {
+        int count = 0;
+        int version;
+        synchronized (table.state) {
+            version = table.state.version();
+            for (int slot = 0; slot < tableSize; slot++) {
+                slotCards[slot] = table.state.card(slot);
+                if (slotCards[slot] != GameState.NONE) {
+                    cards[count] = slotCards[slot];
+                    slots[count++] = slot;
+                }
+            }
+        }
+        if (version != tableVersion) return null;
+
+        // enumerates the combinations of featureSize cards in lexicographic order of their indices
+        int[] sets = new int[8 * featureSize];
+        int found = 0;
+        int[] picked = new int[featureSize];
+        int[] set = new int[featureSize];
+        for (int i = 0; i < featureSize; i++)
+            picked[i] = i;
+        while (featureSize <= count) {
+            if (tableVersion != version || terminate) return null;
+            for (int i = 0; i < featureSize; i++)
+                set[i] = cards[picked[i]];
+            if (env.util.testSet(set)) {
+                if (found == sets.length) sets = Arrays.copyOf(sets, 2 * found);
+                for (int i : picked)
+                    sets[found++] = slots[i];
+            }
+            int i = featureSize - 1;
+            while (i >= 0 && picked[i] == count - featureSize + i)
+                i--;
+            if (i < 0) break;
+            picked[i]++;
+            for (int j = i + 1; j < featureSize; j++)
+                picked[j] = picked[j - 1] + 1;
+        }
+        return new Hints(version, featureSize, Arrays.copyOf(sets, found));
+    }
+
+    /**
+     * Prints the sets to the console (one line per set).
+     */
+    private void print(Hints hints, int[] slotCards) {
+        StringBuilder sb = new StringBuilder("new hints:").append(System.lineSeparator());
+        int[] set = new int[featureSize];
+        for (int i = 0; i < hints.count(); i++) {
+            sb.append("Hint: Set found: slots: [");
+            for (int n = 0; n < featureSize; n++) {
+                if (n > 0) sb.append(", ");
+                sb.append(hints.slot(i, n));
+                set[n] = slotCards[hints.slot(i, n)];
+            }
+            sb.append("] features: ").append(Arrays.deepToString(env.util.cardsToFeatures(set)))
+                    .append(System.lineSeparator());
+        }
+        System.out.print(sb);
+    }
+}
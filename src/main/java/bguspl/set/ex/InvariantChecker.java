@@ -0,0 +1,143 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks the invariants of a running game (for stress tests, see StressHarness): the slots and the cards agree with
+ * each other (and with the deck once the game stopped), tokens are only on cards, no player has more tokens than a
+ * set, the tokens of every player agree with the player's counter, the claims queue holds at most one claim per
+ * player, and no claim waits in the queue for too long (i.e. is lost).
+ * A player updates its counter right after the table, so a counter may disagree with the table for a moment; only a
+ * disagreement that lasts as long as a lost claim is a violation.
+ * Every check locks the whole table once (see Table.whileLocked), so it sees a consistent state while the game goes on.
+ */
+public class InvariantChecker {
+
+    private final Env env;
+    private final Table table;
+    private final Player[] players;
+
+    /**
+     * How long a claim may wait in the queue (in real milliseconds), and since when each player's claim is queued
+     * (-1 if it is not).
+     */
+    private final long lostClaimMillis;
+    private final long[] queuedSince;
+
+    /**
+     * Since when each player's counter disagrees with its tokens on the table (-1 if it does not).
+     */
+    private final long[] miscountedSince;
+
+    // scratch space (checking thread only)
+    private final boolean[] seen;
+    private final int[] tokens;
+    private final boolean[] queued;
+
+    /**
+     * @param env             - the game environment.
+     * @param table           - the table of the game.
+     * @param players         - the players of the game.
+     * @param lostClaimMillis - how long a claim may wait for the dealer before it counts as lost.
+     */
+    public InvariantChecker(Env env, Table table, Player[] players, long lostClaimMillis) {
+        this.env = env;
+        this.table = table;
+        this.players = players;
+        this.lostClaimMillis = lostClaimMillis;
+        queuedSince = new long[players.length];
+        Arrays.fill(queuedSince, -1);
+        miscountedSince = new long[players.length];
+        Arrays.fill(miscountedSince, -1);
+        seen = new boolean[env.config.deckSize];
+        tokens = new int[players.length];
+        queued = new boolean[players.length];
+    }
+
+    /**
+     * Checks the invariants once.
+     *
+     * @param stopped - true iff all the game threads stopped (the deck, which only the dealer thread changes, is
+     *                checked then).
+     * @return - the violated invariants (empty if none).
+     */
+    public List<String> check(boolean stopped) {
+        List<String> violations = new ArrayList<>();
+        GameState state = table.state;
+        long now = System.currentTimeMillis();
+        table.whileLocked(() -> {
+            Arrays.fill(seen, false);
+            Arrays.fill(tokens, 0);
+            int cards = 0;
+            for (int slot = 0; slot < state.tableSize(); slot++) {
+                int card = state.card(slot);
+                for (int player = 0; player < players.length; player++)
+                    if (state.hasToken(slot, player)) {
+                        tokens[player]++;
+                        if (card == GameState.NONE)
+                            violations.add("player " + player + " has a token on empty slot " + slot);
+                    }
+                if (card == GameState.NONE) continue;
+                cards++;
+                if (card < 0 || card >= seen.length || seen[card]) {
+                    violations.add("slot " + slot + " holds card " + card + " twice or out of the deck");
+                    continue;
+                }
+                seen[card] = true;
+                if (state.slot(card) != slot)
+                    violations.add("card " + card + " is in slot " + slot + " but maps to slot " + state.slot(card));
+            }
+            if (cards != state.cardCount())
+                violations.add(cards + " cards on the table but the count is " + state.cardCount());
+            for (int card = 0; card < seen.length; card++)
+                if (state.slot(card) != GameState.NONE && !seen[card])
+                    violations.add("card " + card + " maps to slot " + state.slot(card) + " but is not there");
+            for (int i = 0; stopped && i < state.deckCount(); i++) {
+                int card = state.deckCard(i);
+                if (card < 0 || card >= seen.length || seen[card])
+                    violations.add("deck card " + card + " is duplicated or out of the deck");
+                else
+                    seen[card] = true;
+            }
+
+            int claims = state.claimCount();
+            if (claims > players.length)
+                violations.add(claims + " claims queued by " + players.length + " players");
+            Arrays.fill(queued, false);
+            for (int i = 0; i < Math.min(claims, players.length); i++) {
+                int player = state.claim(i);
+                if (player < 0 || player >= players.length || queued[player])
+                    violations.add("claim of player " + player + " is queued twice or unknown");
+                else
+                    queued[player] = true;
+            }
+            for (int player = 0; player < players.length; player++) {
+                if (!queued[player])
+                    queuedSince[player] = -1;
+                else if (queuedSince[player] < 0)
+                    queuedSince[player] = now;
+                else if (now - queuedSince[player] > lostClaimMillis)
+                    violations.add("claim of player " + player + " waits for " + (now - queuedSince[player])
+                            + " ms (lost)");
+            }
+        });
+
+        for (int player = 0; player < players.length; player++) {
+            if (tokens[player] > env.config.featureSize)
+                violations.add("player " + player + " has " + tokens[player] + " tokens");
+            int counter = players[player].getCounter();
+            if (counter == tokens[player])
+                miscountedSince[player] = -1;
+            else if (miscountedSince[player] < 0)
+                miscountedSince[player] = now;
+            else if (now - miscountedSince[player] > lostClaimMillis)
+                violations.add("player " + player + " counts " + counter + " tokens but has " + tokens[player]
+                        + " on the table");
+        }
+        return violations;
+    }
+}
@@ -1,13 +1,10 @@
 package bguspl.set.ex;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Random;
 
 import bguspl.set.Env;
-
-import java.util.concurrent.ArrayBlockingQueue;
-
-import java.lang.Math;
+import bguspl.set.Leaderboard;
+import bguspl.set.Trace;
 
 /**
  * This class manages the players' threads and data
@@ -58,14 +55,45 @@ public class Player implements Runnable {
      */
     private int score;
 
-    // the queue of keys = blocking queue
-    private BlockingQueue<Integer> queue;
+    // the queue of keys (a ring of featureSize slots, guarded by itself), their input ids and press times
+    private final int[] keys;
+    private final long[] keyInputs;
+    private final long[] keyNanos;
+    private int keysHead;
+    private int keysCount;
+
+    // the input id and press time of the key last taken from the queue (player thread only)
+    private long takenKeyInput;
+    private long takenKeyNanos;
+
+    // the input id and press time of the key that completed the pending claim (see Trace), and when it was made
+    private volatile long claimInput;
+    private volatile long claimInputNanos;
+    private long claimNanos;
+
+    // the cards of the pending claim and the version of the table they were tested against
+    private final int[] claimCards;
+    private volatile int claimVersion;
 
     private Dealer dealer;
 
+    /**
+     * The player's entry on the (cross game) leaderboard.
+     */
+    private final Leaderboard.Entry leaderboardEntry;
+
+    /**
+     * The number of tokens the player has on the table (the dealer takes away the ones on the cards it removes).
+     */
     private int counter;
 
-    private boolean freeze;
+    private volatile boolean freeze;
+
+    /**
+     * The time the current freeze ends at, and the freeze to start with (of a resumed game).
+     */
+    private volatile long frozenUntil;
+    private long resumedFreeze;
 
     private Boolean setLegal = null;
 
@@ -88,11 +116,14 @@ public class Player implements Runnable {
         this.table = table;
         this.id = id;
         this.human = human;
-        this.queue = new ArrayBlockingQueue<Integer>(env.config.featureSize);
+        this.keys = new int[env.config.featureSize];
+        this.keyInputs = new long[env.config.featureSize];
+        this.keyNanos = new long[env.config.featureSize];
+        this.claimCards = new int[env.config.featureSize];
         this.dealer = dealer;
-        this.counter = 0;
         this.freeze = false;
         this.featureSize = env.config.featureSize;
+        this.leaderboardEntry = env.leaderboard.entry(env.config.playerNames[id]);
     }
 
     /**
@@ -104,12 +135,14 @@ public class Player implements Runnable {
         playerThread = Thread.currentThread();
         if (!human)
             createArtificialIntelligence();
+        if (resumedFreeze > 0)
+            freeze(resumedFreeze);
 
         while (!terminate) {
             returnWhenDealerDone();
             int key = -1;
             try {
-                key = queue.take();
+                key = takeKey();
             } catch (InterruptedException e) {
             }
 
@@ -118,17 +151,25 @@ public class Player implements Runnable {
             }
 
             if (getCounter() == featureSize && setLegal == null) {
-                table.claims.add(id);
+                if (!preValidateClaim())
+                    continue;
+                if (!table.queueClaim(id)) {
+                    // cannot happen while every player has at most one claim in the queue (it waits for its verdict)
+                    env.logger.warning("player " + (id + 1) + " could not queue its claim: the queue is full");
+                    continue; // tries again after its next key
+                }
+                env.metrics.claimQueued(id);
                 synchronized (table) {
-                    table.notifyAll(); // to wake the dealer up
+                    env.clock.signalAll(table); // to wake the dealer up
                     while (!terminate && !check) {
                         try {
-                            table.wait();
+                            env.clock.await(table, 0);
                         } catch (InterruptedException e) {
 
                         }
                     }
                 }
+                Trace.span(Trace.CLAIM, claimInput, id, claimNanos, claimInputNanos);
                 if (setLegal != null) {
                     setFreeze();
                 }
@@ -138,8 +179,8 @@ public class Player implements Runnable {
 
         if (!human)
             try {
-                aiThread.interrupt();
-                aiThread.join();
+                env.clock.interrupt(aiThread);
+                env.clock.join(aiThread, 0);
             } catch (InterruptedException ignored) {
 
             }
@@ -148,12 +189,37 @@ public class Player implements Runnable {
 
     }
 
+    /**
+     * Takes the cards under the player's tokens as a claim and tests it on the player's thread: an illegal set is
+     * penalized here (with its freeze), only a legal one goes to the dealer.
+     *
+     * @return - true iff the claim is a legal set for the dealer to check (false if it was penalized, or if the dealer
+     * removed one of its cards meanwhile).
+     */
+    boolean preValidateClaim() {
+        claimNanos = System.nanoTime();
+        claimInput = takenKeyInput;
+        claimInputNanos = takenKeyNanos;
+        claimVersion = table.claimSnapshot(id, claimCards);
+        if (contains(claimCards, GameState.NONE))
+            return false; // the dealer removed one of the cards meanwhile
+        env.listener.claimSubmitted(id, claimCards);
+        if (env.util.testSet(claimCards))
+            return true;
+        env.listener.claimResolved(id, false);
+        env.metrics.claimRejectedLocally();
+        Trace.span(Trace.VERDICT, claimInput, id, claimNanos, claimInputNanos);
+        penalty();
+        setFreeze();
+        return false;
+    }
+
     public void returnWhenDealerDone() {
         synchronized (dealer) {
             // notice the while statement and not an if statement
             while (dealer.dealerActive) {
                 try {
-                    dealer.wait();
+                    env.clock.await(dealer, 0);
                 } catch (InterruptedException e) {
                 }
             }
@@ -168,20 +234,30 @@ public class Player implements Runnable {
      */
     private void createArtificialIntelligence() {
         // note: this is a very, very smart AI (!)
-        aiThread = new Thread(() -> {
+        Random random = new Random(env.config.randomSeed + 1 + id);
+        Strategy strategy = Strategy.create(env.config.strategies[id], env, random);
+        aiThread = new Thread(env.clock.track(() -> {
             env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
-            int tableSize = env.config.tableSize;
             while (!terminate) {
+                returnWhenDealerDone();
                 try {
-                    while (!freeze && !dealer.dealerActive) {
-                        queue.put((int) (Math.random() * tableSize));
+                    synchronized (keys) {
+                        while (!terminate && freeze)
+                            env.clock.await(keys, 0);
                     }
+                    if (env.config.computerKeyDelayMillis > 0)
+                        env.clock.sleep(env.config.computerKeyDelayMillis);
+                    int slot = strategy.nextKey(table, id);
+                    if (slot >= 0)
+                        putKey(slot, Trace.nextInput());
+                    else
+                        env.clock.sleep(Math.max(1, env.config.computerKeyDelayMillis));
                 } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
                 }
             }
             env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
-        }, "computer-" + id);
+        }), "computer-" + id);
+        env.shutdown.register(aiThread, null); // stopped by the player's terminate flag
         aiThread.start();
     }
 
@@ -190,6 +266,9 @@ public class Player implements Runnable {
      */
     public void terminate() {
         terminate = true;
+        synchronized (keys) {
+            env.clock.signalAll(keys);
+        }
     }
 
     /**
@@ -198,22 +277,79 @@ public class Player implements Runnable {
      * @param slot - the slot corresponding to the key pressed.
      */
     public void keyPressed(int slot) {
+        keyPressed(slot, Trace.nextInput());
+    }
+
+    /**
+     * This method is called when a key is pressed.
+     *
+     * @param slot  - the slot corresponding to the key pressed.
+     * @param input - the input id of the key press (see Trace).
+     */
+    public void keyPressed(int slot, long input) {
         try {
             if (!freeze && !dealer.dealerActive)
-                queue.put(slot);
+                putKey(slot, input);
         } catch (InterruptedException e) {
         }
     }
 
-    private void handleKey(int key) {
-        if (table.doesTokenExist(id, key) == -1) {
+    /**
+     * Adds a key to the queue of keys, waiting while the queue is full.
+     */
+    private void putKey(int slot, long input) throws InterruptedException {
+        long pressed = System.nanoTime();
+        synchronized (keys) {
+            while (!terminate && keysCount == keys.length)
+                env.clock.await(keys, 0);
+            if (terminate)
+                return;
+            keys[(keysHead + keysCount) % keys.length] = slot;
+            keyInputs[(keysHead + keysCount) % keys.length] = input;
+            keyNanos[(keysHead + keysCount) % keys.length] = pressed;
+            keysCount++;
+            env.clock.signalAll(keys);
+        }
+    }
+
+    /**
+     * Removes the next key from the queue of keys, waiting while the queue is empty.
+     *
+     * @return - the slot of the key, or -1 if the game was terminated.
+     */
+    private int takeKey() throws InterruptedException {
+        synchronized (keys) {
+            while (!terminate && keysCount == 0)
+                env.clock.await(keys, 0);
+            if (keysCount == 0)
+                return -1;
+            int slot = keys[keysHead];
+            takenKeyInput = keyInputs[keysHead];
+            takenKeyNanos = keyNanos[keysHead];
+            keysHead = (keysHead + 1) % keys.length;
+            keysCount--;
+            env.clock.signalAll(keys);
+            Trace.span(Trace.QUEUE, takenKeyInput, id, takenKeyNanos, takenKeyNanos);
+            return slot;
+        }
+    }
+
+    void handleKey(int key) {
+        if (!table.hasToken(id, key)) {
             if (getCounter() < featureSize) {
-                table.placeToken(id, key);
-                increaseCounter();
+                long start = System.nanoTime();
+                Trace.enter(takenKeyInput, takenKeyNanos); // for the user interface
+                boolean placed = table.placeToken(id, key);
+                Trace.enter(0, 0);
+                if (placed) { // not if the dealer removed the card meanwhile
+                    increaseCounter();
+                    Trace.span(Trace.TOKEN, takenKeyInput, id, start, takenKeyNanos);
+                    env.metrics.tokenPlaced(System.nanoTime() - takenKeyNanos);
+                }
             }
         } else {
-            table.removeToken(id, key);
-            decreaseCounter();
+            if (table.removeToken(id, key))
+                decreaseCounter();
             setLegal = null;
         }
     }
@@ -226,7 +362,9 @@ public class Player implements Runnable {
      */
     public void point() {
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
+        env.util.spin();
         env.ui.setScore(id, ++score);
+        leaderboardEntry.point();
         setLegal = true;
     }
 
@@ -244,18 +382,89 @@ public class Player implements Runnable {
             setLegal = null;
         } else
             time = env.config.penaltyFreezeMillis;
+        freeze(time);
+    }
+
+    private void freeze(long time) {
         freeze = true;
+        long frozenAt = env.clock.currentTimeMillis();
+        long frozenNanos = System.nanoTime();
+        frozenUntil = frozenAt + time;
         while (!terminate && time > 0) {
+            env.util.spin();
             env.ui.setFreeze(id, time);
             try {
-                Thread.sleep(1000);
+                env.clock.sleep(Math.min(1000, time));
             } catch (InterruptedException e) {
 
             }
             time = time - 1000;
         }
+        frozenUntil = 0;
         env.ui.setFreeze(id, 0);
-        freeze = false;
+        env.metrics.frozen(id, env.clock.currentTimeMillis() - frozenAt);
+        Trace.span(Trace.FREEZE, claimInput, id, frozenNanos, claimInputNanos);
+        synchronized (keys) {
+            freeze = false;
+            env.clock.signalAll(keys); // to wake the ai up
+        }
+    }
+
+    /**
+     * @return - true iff the player's key presses are currently ignored (after a claim).
+     */
+    public boolean isFrozen() {
+        return freeze;
+    }
+
+    /**
+     * @return - the time the player's current freeze ends at (0 if not frozen).
+     */
+    long frozenUntil() {
+        return frozenUntil;
+    }
+
+    /**
+     * Sets up the player of a resumed game (before its thread starts).
+     *
+     * @param score  - the score of the player.
+     * @param freeze - the remaining freeze of the player (in milliseconds).
+     */
+    public void resume(int score, long freeze) {
+        this.score = score;
+        env.ui.setScore(id, score);
+        resumedFreeze = freeze;
+        counter = 0;
+        for (int slot = 0; slot < env.config.tableSize; slot++)
+            if (table.hasToken(id, slot))
+                counter++;
+    }
+
+    /**
+     * @return - the version of the table the pending claim was tested against.
+     */
+    int claimVersion() {
+        return claimVersion;
+    }
+
+    /**
+     * @return - the input id of the key that completed the pending claim.
+     */
+    long claimInput() {
+        return claimInput;
+    }
+
+    /**
+     * @return - the press time of the key that completed the pending claim.
+     */
+    long claimInputNanos() {
+        return claimInputNanos;
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int v : values)
+            if (v == value) return true;
+        return false;
     }
 
     public void resetSetLegal() {
@@ -266,10 +475,6 @@ public class Player implements Runnable {
         return score;
     }
 
-    public void resetCounter() {
-        counter = 0;
-    }
-
     public synchronized void decreaseCounter() {
         counter--;
     }
@@ -0,0 +1,24 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Random;
+
+/**
+ * Presses random keys (the original computer player).
+ */
+public class RandomStrategy implements Strategy {
+
+    private final Random random;
+    private final int tableSize;
+
+    public RandomStrategy(Env env, Random random) {
+        this.random = random;
+        this.tableSize = env.config.tableSize;
+    }
+
+    @Override
+    public int nextKey(Table table, int player) {
+        return random.nextInt(tableSize);
+    }
+}
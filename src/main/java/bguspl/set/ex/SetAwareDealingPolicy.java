@@ -0,0 +1,69 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+/**
+ * Deals from the top of the deck as long as the table has enough live sets (DealTargetSets), and otherwise the card
+ * of the next few cards of the deck (DealWindow) with the highest set degree: the number of sets it would complete
+ * with the cards already on the table. Ties (and a window of cards that complete nothing) go to the card nearest
+ * the top, so the deck order decides as much as possible and every card is dealt within a bounded delay.
+ */
+public class SetAwareDealingPolicy implements DealingPolicy {
+
+    private final Env env;
+
+    /**
+     * The cards on the table and the cards of the set being tested (reused, so dealing does not allocate).
+     */
+    private final int[] cards;
+    private final int[] set;
+
+    public SetAwareDealingPolicy(Env env) {
+        this.env = env;
+        cards = new int[env.config.tableSize];
+        set = new int[env.config.featureSize];
+    }
+
+    @Override
+    public int next(Table table, GameState state) {
+        int count = 0;
+        for (int slot = 0; slot < env.config.tableSize; slot++) {
+            int card = table.getCardfromSlot(slot);
+            if (card != -1) cards[count++] = card;
+        }
+        if (countSets(count, set.length, 0, 0, env.config.dealTargetSets) >= env.config.dealTargetSets)
+            return 0;
+
+        int best = 0, bestDegree = 0;
+        int window = Math.min(env.config.dealWindow, state.deckCount());
+        for (int i = 0; i < window; i++) {
+            set[set.length - 1] = state.deckCard(i);
+            int degree = countSets(count, set.length - 1, 0, 0, Integer.MAX_VALUE);
+            if (degree > bestDegree) {
+                best = i;
+                bestDegree = degree;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Counts the sets made of the first cards of the set array (taken from the table) and the rest of it.
+     *
+     * @param count - the number of cards on the table.
+     * @param size  - the number of cards of the set to take from the table.
+     * @param taken - the number of cards taken so far.
+     * @param from  - the first table card that may be taken next.
+     * @param limit - the count at which to stop counting.
+     * @return - the number of sets found (at most limit).
+     */
+    private int countSets(int count, int size, int taken, int from, int limit) {
+        if (taken == size) return env.util.testSet(set) ? 1 : 0;
+        int sets = 0;
+        for (int i = from; i <= count - (size - taken) && sets < limit; i++) {
+            set[taken] = cards[i];
+            sets += countSets(count, size, taken + 1, i + 1, limit - sets);
+        }
+        return sets;
+    }
+}
@@ -0,0 +1,92 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Looks for a legal set on the table and places its tokens on it (removing its other tokens first).
+ * Uses the table's hints when they are current, and searches the table itself otherwise.
+ * Presses random keys when there is no set on the table.
+ */
+public class SetFinderStrategy implements Strategy {
+
+    private final Env env;
+    private final Random random;
+    private final int tableSize;
+
+    /**
+     * The cards of the set the player is going for (null if none).
+     */
+    private int[] target;
+
+    public SetFinderStrategy(Env env, Random random) {
+        this.env = env;
+        this.random = random;
+        this.tableSize = env.config.tableSize;
+    }
+
+    @Override
+    public int nextKey(Table table, int player) {
+        int[] slots = target == null ? null : slotsOf(table, target);
+        if (slots == null) {
+            HintEngine.Hints hints = table.hints().current();
+            if (hints != null) { // already computed in the background
+                if (hints.count() == 0) {
+                    target = null;
+                    return random.nextInt(tableSize);
+                }
+                slots = hints.slots(random.nextInt(hints.count()));
+                target = new int[slots.length];
+                for (int i = 0; i < slots.length; i++)
+                    target[i] = table.getCardfromSlot(slots[i]);
+                if (contains(target, -1)) return -1; // the table changed meanwhile
+            }
+        }
+        if (slots == null) {
+            List<Integer> cards = new ArrayList<>(tableSize);
+            for (int slot = 0; slot < tableSize; slot++)
+                if (table.getCardfromSlot(slot) != -1)
+                    cards.add(table.getCardfromSlot(slot));
+            List<int[]> sets = env.util.findSets(cards, 1);
+            if (sets.isEmpty()) {
+                target = null;
+                return random.nextInt(tableSize);
+            }
+            target = sets.get(0);
+            slots = slotsOf(table, target);
+            if (slots == null) return -1; // the table changed meanwhile
+        }
+
+        for (int slot = 0; slot < tableSize; slot++)
+            if (table.hasToken(player, slot) && !contains(slots, slot))
+                return slot;
+        for (int slot : slots)
+            if (!table.hasToken(player, slot))
+                return slot;
+        return -1; // all the tokens are placed, waiting for the dealer
+    }
+
+    /**
+     * @return - the slots of the cards, or null if any of them is not on the table.
+     */
+    private int[] slotsOf(Table table, int[] cards) {
+        int[] slots = new int[cards.length];
+        for (int i = 0; i < cards.length; i++) {
+            slots[i] = -1;
+            for (int slot = 0; slot < tableSize && slots[i] == -1; slot++)
+                if (table.getCardfromSlot(slot) == cards[i])
+                    slots[i] = slot;
+            if (slots[i] == -1) return null;
+        }
+        return slots;
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int v : values)
+            if (v == value) return true;
+        return false;
+    }
+}
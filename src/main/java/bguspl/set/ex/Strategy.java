@@ -0,0 +1,44 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Random;
+
+/**
+ * Chooses the key presses of a computer player.
+ */
+public interface Strategy {
+
+    /**
+     * The names of the available strategies (see create).
+     */
+    String RANDOM = "random";
+    String SET_FINDER = "finder";
+
+    /**
+     * @param table  - the table.
+     * @param player - the id of the player.
+     * @return - the slot of the next key to press, or -1 if there is nothing to press right now.
+     */
+    int nextKey(Table table, int player);
+
+    /**
+     * Creates a strategy by its name.
+     *
+     * @param name   - the strategy name (unknown names fall back to the random strategy).
+     * @param env    - the game environment.
+     * @param random - the source of randomness of the player.
+     * @return - the new strategy.
+     */
+    static Strategy create(String name, Env env, Random random) {
+        switch (name) {
+            case RANDOM:
+                return new RandomStrategy(env, random);
+            case SET_FINDER:
+                return new SetFinderStrategy(env, random);
+            default:
+                env.logger.severe("unknown strategy " + name + ", using " + RANDOM);
+                return new RandomStrategy(env, random);
+        }
+    }
+}
@@ -2,18 +2,14 @@ package bguspl.set.ex;
 
 import bguspl.set.Env;
 
-import java.util.Arrays;
-import java.util.List;
-import java.util.Objects;
-import java.util.Vector;
-import java.util.stream.Collectors;
-
-import javax.swing.text.html.HTMLDocument.Iterator;
-
 /**
  * This class contains the data that is visible to the player.
- *
- * @inv slotToCard[x] == y iff cardToSlot[y] == x
+ * The data itself is kept in a compact game state that this class guards with a lock per slot (for the card in the
+ * slot and the tokens on it) and the state object (for the version, the deck and the claims). Placing and removing a
+ * card takes both, the state first, so the players' token operations on different slots never wait for each other,
+ * and holding the state alone keeps the cards (but not the tokens) still. Reading a single slot takes no lock (see
+ * GameState).
+ * The players keep count of their tokens: placeToken, removeToken and removeCard tell whose tokens they changed.
  */
 public class Table {
 
@@ -23,35 +19,37 @@ public class Table {
     private final Env env;
 
     /**
-     * Mapping between a slot and the card placed in it (null if none).
+     * The cards, tokens, deck and claims of the game.
      */
-    protected final Integer[] slotToCard; // card per slot (if any)
+    protected final GameState state;
+
+    private final int featureSize;
 
     /**
-     * Mapping between a card and the slot it is in (null if none).
+     * The monitors of the slots.
      */
-    protected final Integer[] cardToSlot; // slot per card (if any)
-
-    private Vector<Integer>[] tokens;
-
-    public Vector<Integer> claims;
+    private final Object[] slotLocks;
 
-    private int featureSize;
+    /**
+     * The legal sets of the table (computed on request, in the background).
+     */
+    private final HintEngine hints;
 
     /**
      * Constructor for testing.
      *
-     * @param env        - the game environment objects.
-     * @param slotToCard - mapping between a slot and the card placed in it (null if
-     *                   none).
-     * @param cardToSlot - mapping between a card and the slot it is in (null if
-     *                   none).
+     * @param env   - the game environment objects.
+     * @param state - the game state to keep the table in.
      */
-    public Table(Env env, Integer[] slotToCard, Integer[] cardToSlot) {
+    public Table(Env env, GameState state) {
         this.env = env;
-        this.slotToCard = slotToCard;
-        this.cardToSlot = cardToSlot;
+        this.state = state;
         this.featureSize = env.config.featureSize;
+        this.slotLocks = new Object[state.tableSize()];
+        for (int slot = 0; slot < slotLocks.length; slot++)
+            slotLocks[slot] = new Object();
+        this.hints = new HintEngine(env, this);
+        hints.tableChanged(version());
     }
 
     /**
@@ -60,28 +58,60 @@ public class Table {
      * @param env - the game environment objects.
      */
     public Table(Env env) {
+        this(env, GameState.create(env.config));
+    }
 
-        this(env, new Integer[env.config.tableSize], new Integer[env.config.deckSize]);
-        this.tokens = new Vector[env.config.tableSize];
-        for (int i = 0; i < tokens.length; i++) {
-            tokens[i] = new Vector<>();
+    /**
+     * @return - the hint engine of the table: request() computes the legal sets of the current table in the
+     * background (printing them when hints are on), current() returns them once computed.
+     */
+    public HintEngine hints() {
+        return hints;
+    }
+
+    /**
+     * Runs an action while the whole table is locked (the state and then every slot, in order), e.g. to copy or check
+     * the state consistently.
+     *
+     * @param action - the action.
+     */
+    public void whileLocked(Runnable action) {
+        synchronized (state) {
+            whileLocked(0, action);
+        }
+    }
+
+    private void whileLocked(int slot, Runnable action) {
+        if (slot == slotLocks.length) {
+            action.run();
+            return;
+        }
+        synchronized (slotLocks[slot]) {
+            whileLocked(slot + 1, action);
+        }
+    }
+
+    /**
+     * @return - a number that changes whenever a card is placed or removed.
+     */
+    public int version() {
+        synchronized (state) {
+            return state.version();
         }
-        claims = new Vector<>();
     }
 
     /**
-     * This method prints all possible legal sets of cards that are currently on the
-     * table.
+     * Shows the whole table on the user interface (e.g. of a resumed game).
      */
-    public void hints() {
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
-            StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
-            List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted()
-                    .collect(Collectors.toList());
-            int[][] features = env.util.cardsToFeatures(set);
-            System.out.println(
-                    sb.append("slots: ").append(slots).append(" features: ").append(Arrays.deepToString(features)));
+    public void showState() {
+        int[] players = new int[env.config.players];
+        whileLocked(() -> {
+            for (int slot = 0; slot < env.config.tableSize; slot++)
+                if (state.card(slot) != GameState.NONE) {
+                    env.ui.placeCard(state.card(slot), slot);
+                    for (int i = state.playersWithToken(slot, players) - 1; i >= 0; i--)
+                        env.ui.placeToken(players[i], slot);
+                }
         });
     }
 
@@ -91,11 +121,9 @@ public class Table {
      * @return - the number of cards on the table.
      */
     public int countCards() {
-        int cards = 0;
-        for (Integer card : slotToCard)
-            if (card != null)
-                ++cards;
-        return cards;
+        synchronized (state) {
+            return state.cardCount();
+        }
     }
 
     /**
@@ -107,42 +135,48 @@ public class Table {
      * @post - the card placed is on the table, in the assigned slot.
      */
     public void placeCard(int card, int slot) {
-        try {
-            Thread.sleep(env.config.tableDelayMillis);
-        } catch (InterruptedException ignored) {
-        }
-
-        synchronized (tokens[slot]) {
-            cardToSlot[card] = slot;
-            slotToCard[slot] = card;
-            env.ui.placeCard(card, slot);
+        // committed at once: the user interface animates the card in (over tableDelayMillis) on its own time
+        synchronized (state) {
+            synchronized (slotLocks[slot]) {
+                state.placeCard(card, slot);
+                hints.tableChanged(state.version());
+                env.util.spin();
+                env.ui.placeCard(card, slot);
+            }
         }
     }
 
     /**
-     * Removes a card from a grid slot on the table.
+     * Removes a card from a grid slot on the table (with the tokens on it).
      *
-     * @param slot - the slot from which to remove the card.
+     * @param slot    - the slot from which to remove the card.
+     * @param players - an array (of at least the number of players) to fill with the players whose tokens were on it.
+     * @return - the number of players filled in.
      */
-    public void removeCard(int slot) {
-        try {
-            Thread.sleep(env.config.tableDelayMillis);
-        } catch (InterruptedException ignored) {
-        }
-
-        synchronized (tokens[slot]) {
-            if (slotToCard[slot] != null) {
-                cardToSlot[slotToCard[slot]] = null;
-                slotToCard[slot] = null;
-                tokens[slot] = new Vector<>();
-                env.ui.removeTokens(slot);
-                env.ui.removeCard(slot);
+    public int removeCard(int slot, int[] players) {
+        synchronized (state) {
+            synchronized (slotLocks[slot]) {
+                int count = state.playersWithToken(slot, players);
+                if (state.removeCard(slot) != GameState.NONE) {
+                    hints.tableChanged(state.version());
+                    env.util.spin();
+                    env.ui.removeTokens(slot);
+                    env.ui.removeCard(slot);
+                }
+                return count;
             }
         }
     }
 
-    public Vector<Integer> getVectorSlot(int slot) {
-        return tokens[slot];
+    /**
+     * @param slot    - the slot.
+     * @param players - an array (of at least the number of players) to fill with the players with a token on the slot.
+     * @return - the number of players filled in.
+     */
+    public int playersWithToken(int slot, int[] players) {
+        synchronized (slotLocks[slot]) {
+            return state.playersWithToken(slot, players);
+        }
     }
 
     /**
@@ -150,18 +184,23 @@ public class Table {
      *
      * @param player - the player the token belongs to.
      * @param slot   - the slot on which to place the token.
+     * @return - true iff a token was placed (i.e. there is a card in the slot without a token of the player).
      */
-    public void placeToken(int player, int slot) {
-        if (slotToCard[slot] != null) {
-            synchronized (tokens[slot]) {
-                env.ui.placeToken(player, slot);
-                tokens[slot].add(player);
-            }
+    public boolean placeToken(int player, int slot) {
+        synchronized (slotLocks[slot]) {
+            if (state.card(slot) == GameState.NONE || !state.setToken(slot, player))
+                return false;
+            env.util.spin();
+            env.ui.placeToken(player, slot);
+            return true;
         }
     }
 
-    public int doesTokenExist(int player, int slot) {
-        return tokens[slot].indexOf(player); // return the index of the palyer and -1 if doesnt exist
+    /**
+     * @return - true iff the player has a token on the slot.
+     */
+    public boolean hasToken(int player, int slot) {
+        return state.hasToken(slot, player);
     }
 
     /**
@@ -172,35 +211,98 @@ public class Table {
      * @return - true iff a token was successfully removed.
      */
     public boolean removeToken(int player, int slot) {
-        if (doesTokenExist(player, slot) != -1) {
-            synchronized (tokens[slot]) {
-                tokens[slot].remove(doesTokenExist(player, slot));
-                env.ui.removeToken(player, slot);
-                return true;
-            }
+        synchronized (slotLocks[slot]) {
+            if (!state.clearToken(slot, player))
+                return false;
+            env.util.spin();
+            env.ui.removeToken(player, slot);
+            return true;
         }
-        return false;
     }
 
     public int[] getPlayerTokens(boolean bySlot, int player) {
         int[] cards = new int[featureSize];
+        getPlayerTokens(bySlot, player, cards);
+        return cards;
+    }
+
+    /**
+     * Reads a player's tokens into an array (so the dealer can reuse one). A token whose card is removed meanwhile is
+     * skipped.
+     *
+     * @param bySlot - true for the slots of the tokens, false for the cards in them.
+     * @param player - the player.
+     * @param tokens - the array to fill (at most its length tokens are read).
+     * @return - the number of tokens read.
+     */
+    public int getPlayerTokens(boolean bySlot, int player, int[] tokens) {
         int counter = 0; // the amount of tokesns the player can place
-        for (int i = 0; i < tokens.length && counter < featureSize; i++) {
-            if (tokens[i].indexOf(player) != -1) {
+        for (int i = 0; i < env.config.tableSize && counter < tokens.length; i++) {
+            if (state.hasToken(i, player)) {
+                int card = state.card(i); // read after the token: the card is removed before its tokens
+                if (card == GameState.NONE)
+                    continue;
                 if (!bySlot)
-                    cards[counter] = slotToCard[i]; // return the card number
+                    tokens[counter] = card; // return the card number
                 else
-                    cards[counter] = i; // return the slot number
+                    tokens[counter] = i; // return the slot number
                 counter++;
             }
         }
-        return cards;
+        return counter;
+    }
+
+    /**
+     * Reads the cards of a player's tokens together with the version of the table, so the player can test its set
+     * without holding the table (the cards stay still meanwhile, and only the player itself adds its tokens).
+     *
+     * @param player - the player.
+     * @param cards  - an array of featureSize cards to fill (with GameState.NONE past the player's tokens).
+     * @return - the version of the table the cards were read at.
+     */
+    public int claimSnapshot(int player, int[] cards) {
+        int counter = 0;
+        synchronized (state) {
+            for (int slot = 0; slot < env.config.tableSize && counter < cards.length; slot++)
+                if (state.hasToken(slot, player))
+                    cards[counter++] = state.card(slot);
+            for (int i = counter; i < cards.length; i++)
+                cards[i] = GameState.NONE;
+            return state.version();
+        }
     }
 
     public int getCardfromSlot(int slot) {
-        if (slotToCard[slot] == null)
-            return -1;
-        return slotToCard[slot];
+        return state.card(slot);
+    }
+
+    /**
+     * Queues a player's claim for the dealer to check.
+     *
+     * @param player - the player id.
+     * @return - false iff the claim was not queued because the queue is full.
+     */
+    public boolean queueClaim(int player) {
+        synchronized (state) {
+            return state.queueClaim(player);
+        }
+    }
+
+    /**
+     * @return - true iff there are claims waiting for the dealer.
+     */
+    public boolean hasClaims() {
+        synchronized (state) {
+            return state.claimCount() > 0;
+        }
     }
 
+    /**
+     * @return - the player of the oldest claim, or GameState.NONE if there are none.
+     */
+    public int takeClaim() {
+        synchronized (state) {
+            return state.takeClaim();
+        }
+    }
 }
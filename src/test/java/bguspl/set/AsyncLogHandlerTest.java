@@ -0,0 +1,76 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AsyncLogHandlerTest {
+
+    private Path file;
+    private Logger logger;
+    private AsyncLogHandler handler;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("set-game", ".binlog");
+        handler = new AsyncLogHandler(file, 4); // tiny ring so the producer has to wait for the writer
+        logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+        Main.setLoggerLevelAndFormat(logger, Level.ALL, "[%2$s] %3$s%n");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        handler.close();
+        Files.deleteIfExists(file);
+    }
+
+    private String[] decode() throws IOException {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        try (InputStream in = Files.newInputStream(file)) {
+            new LogDecoder(new PrintStream(text, true, "UTF-8")).decode(in);
+        }
+        return text.toString("UTF-8").split(System.lineSeparator());
+    }
+
+    @Test
+    void decodesTemplatesAndTextInOrder() throws IOException {
+        TemplateLogger log = new TemplateLogger(logger);
+        logger.info("thread dealer starting.");
+        for (int slot = 0; slot < 10; slot++)
+            log.severe(LogTemplate.PLACE_CARD, 70 + slot, slot);
+        log.severe(LogTemplate.REMOVE_ALL_TOKENS);
+        handler.flush();
+
+        String[] lines = decode();
+        assertEquals(12, lines.length);
+        assertEquals("[INFO] thread dealer starting.", lines[0]);
+        for (int slot = 0; slot < 10; slot++)
+            assertEquals("[SEVERE] placing card " + (70 + slot) + " in slot " + slot, lines[slot + 1]);
+        assertEquals("[SEVERE] removing all tokens", lines[11]);
+    }
+
+    @Test
+    void disabledLevelIsNotRecorded() throws IOException {
+        logger.setLevel(Level.OFF);
+        new TemplateLogger(logger).severe(LogTemplate.KEY_PRESSED, 81, 1);
+        logger.setLevel(Level.ALL);
+        new TemplateLogger(logger).severe(LogTemplate.KEY_PRESSED, 87, 2);
+        handler.flush();
+
+        assertArrayEquals(new String[]{"[SEVERE] key 87 was pressed by player 2"}, decode());
+    }
+}
@@ -0,0 +1,143 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class BotGatewayTest {
+
+    private BotGateway gateway;
+    private Player[] players;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "1");
+        properties.put("ComputerPlayers", "1");
+        properties.put("BotSecret", "s3cret");
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        players = new Player[]{mock(Player.class), mock(Player.class)};
+        gateway = new BotGateway(logger, new Config(logger, properties), 0, players);
+    }
+
+    @AfterEach
+    void tearDown() {
+        gateway.dispose();
+    }
+
+    private static void readUntil(SpectatorClient client, BooleanSupplier condition) {
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            while (!condition.getAsBoolean())
+                assertNotNull(client.next(), "connection closed");
+        });
+    }
+
+    @Test
+    void botPressesKeysAndGetsDeltasAndVerdicts() throws IOException {
+        try (ReferenceBot bot = new ReferenceBot(gateway.getPort(), 0, "s3cret")) {
+            readUntil(bot, () -> bot.authenticated);
+
+            bot.press(3, 1, 4);
+            verify(players[0], timeout(5000)).keyPressed(4);
+            InOrder order = inOrder(players[0]);
+            order.verify(players[0]).keyPressed(3);
+            order.verify(players[0]).keyPressed(1);
+            order.verify(players[0]).keyPressed(4);
+
+            gateway.placeCard(7, 2);
+            gateway.claimResolved(0, true);
+            gateway.claimResolved(0, false);
+            gateway.claimResolved(1, true); // not the bot's player
+            readUntil(bot, () -> bot.cards[2] == 7 && bot.legal + bot.illegal == 2);
+            assertEquals(1, bot.legal);
+            assertEquals(1, bot.illegal);
+        }
+    }
+
+    @Test
+    void botsOnlyPlayHumanSeatsWithTheSecret() throws IOException {
+        try (ReferenceBot wrongSecret = new ReferenceBot(gateway.getPort(), 0, "guess");
+             ReferenceBot computerSeat = new ReferenceBot(gateway.getPort(), 1, "s3cret")) {
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                while (wrongSecret.next() != null) ;
+                while (computerSeat.next() != null) ;
+            });
+            assertTrue(!wrongSecret.authenticated && !computerSeat.authenticated);
+        }
+        try (ReferenceBot bot = new ReferenceBot(gateway.getPort(), 0, "s3cret");
+             ReferenceBot second = new ReferenceBot(gateway.getPort(), 0, "s3cret")) {
+            readUntil(bot, () -> bot.authenticated);
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                while (second.next() != null) ; // the seat is taken
+            });
+            second.press(5);
+            verify(players[0], after(100).never()).keyPressed(5);
+        } catch (IOException expected) { // pressing on a closed connection
+        }
+    }
+
+    @Test
+    void referenceBotGoesForASet() throws IOException {
+        try (ReferenceBot bot = new ReferenceBot(gateway.getPort(), 0, "s3cret")) {
+            int[] cards = {0, 1, 2, 5, 9};  // cards 0, 1, 2 are a set (only the last feature differs)
+            for (int slot = 0; slot < cards.length; slot++)
+                gateway.placeCard(cards[slot], slot);
+            gateway.placeToken(0, 4);
+            readUntil(bot, () -> bot.authenticated && bot.cards[4] == 9 && bot.hasToken(0, 4));
+
+            assertArrayEquals(new int[]{4, 0, 1, 2}, bot.nextKeys());
+            gateway.setFreeze(0, 1000);
+            readUntil(bot, () -> bot.freezes[0] == 1000);
+            assertEquals(0, bot.nextKeys().length);
+            assertNull(bot.winners);
+        }
+    }
+
+    @Test
+    void aBotBreakingTheProtocolWhileStalledFreesItsSeat() throws IOException, InterruptedException {
+        CountDownLatch released = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            released.await();
+            return null;
+        }).when(players[0]).keyPressed(anyInt());
+        try (ReferenceBot bot = new ReferenceBot(gateway.getPort(), 0, "s3cret")) {
+            readUntil(bot, () -> bot.authenticated);
+            int[] batch = new int[BotGateway.MAX_BATCH];
+            bot.press(batch);
+            bot.press(batch); // the keys fill the ring, so the next message waits for the player
+            bot.press(1, 99); // an invalid slot, parsed by the feeder thread once the player takes keys
+            Thread.sleep(100);
+            released.countDown();
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                while (bot.next() != null) ;
+            });
+        }
+        try (ReferenceBot bot = new ReferenceBot(gateway.getPort(), 0, "s3cret")) {
+            readUntil(bot, () -> bot.authenticated);
+        }
+    }
+}
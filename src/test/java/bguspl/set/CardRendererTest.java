@@ -0,0 +1,65 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CardRendererTest {
+
+    private static Config config(String... properties) {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setLevel(Level.OFF);
+        Properties props = new Properties();
+        props.setProperty("LogLevel", "OFF");
+        for (int i = 0; i + 1 < properties.length; i += 2)
+            props.setProperty(properties[i], properties[i + 1]);
+        return new Config(logger, props);
+    }
+
+    private static boolean samePixels(BufferedImage a, BufferedImage b) {
+        for (int x = 0; x < a.getWidth(); x++)
+            for (int y = 0; y < a.getHeight(); y++)
+                if (a.getRGB(x, y) != b.getRGB(x, y)) return false;
+        return true;
+    }
+
+    @Test
+    void drawsCardsOfDecksWithoutImages() {
+        Config config = config("FeatureSize", "4", "FeatureCount", "6");
+        CardRenderer renderer = new CardRenderer(config);
+        BufferedImage first = renderer.render(0);
+        assertEquals(config.cellWidth, first.getWidth());
+        assertEquals(config.cellHeight, first.getHeight());
+        assertFalse(samePixels(first, renderer.render(config.deckSize - 1)));
+        assertFalse(samePixels(first, renderer.render(1))); // only an extra feature differs
+    }
+
+    @Test
+    void cacheKeepsOnlyTheRecentlyUsedCards() {
+        Config config = config("FeatureSize", "5", "FeatureCount", "5", "CardCacheSize", "16");
+        CardRenderer renderer = new CardRenderer(config);
+        Object recent = renderer.image(0);
+        for (int card = 1; card < 200; card++) {
+            renderer.image(card);
+            assertSame(recent, renderer.image(0)); // used on every turn, so never dropped
+        }
+        assertEquals(16, renderer.cached());
+    }
+
+    @Test
+    void standardDeckUsesTheCardImages() {
+        CardRenderer renderer = new CardRenderer(config());
+        assertNotNull(renderer.image(80));
+        assertFalse(renderer.image(80) instanceof BufferedImage);
+        assertTrue(new CardRenderer(config("ProceduralCards", "True")).image(80) instanceof BufferedImage);
+    }
+}
@@ -0,0 +1,125 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ColumnarExporterTest {
+
+    @TempDir
+    Path directory;
+
+    private static Logger quietLogger() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        return logger;
+    }
+
+    @Test
+    void rowsAreReadBack() throws IOException, InterruptedException {
+        Path file = directory.resolve("game.setx");
+        ColumnarExporter exporter = new ColumnarExporter(quietLogger(), file, 4);
+        VirtualClock clock = new VirtualClock(1000);
+        ColumnarExporter.Recorder recorder = exporter.recorder(7, clock);
+        recorder.placeCard(10, 0);
+        recorder.placeCard(11, 2);
+        recorder.placeToken(1, 2);
+        recorder.claimSubmitted(1, new int[]{10, 11, 12});
+        recorder.claimResolved(1, false);
+        recorder.removeToken(1, 2);
+        recorder.removeCard(0);
+        recorder.dispose();
+        recorder.placeCard(12, 1); // ignored after dispose
+        exporter.close();
+        clock.shutdown();
+
+        try (ColumnarReader reader = new ColumnarReader(file)) {
+            assertEquals(Arrays.asList("game", "time", "type", "player", "slot", "legal", "card0", "card1", "card2",
+                    "card3"), reader.columns());
+            assertEquals(7, reader.rows());
+            assertEquals(1, reader.games());
+            assertEquals(0, reader.dropped());
+            assertArrayEquals(new long[]{7, 7, 7, 7, 7, 7, 7}, reader.longs("game"));
+            assertArrayEquals(new long[]{1000, 1000, 1000, 1000, 1000, 1000, 1000}, reader.longs("time"));
+            assertArrayEquals(new int[]{ColumnarExporter.BOARD, ColumnarExporter.BOARD, ColumnarExporter.PLACE_TOKEN,
+                    ColumnarExporter.CLAIM, ColumnarExporter.VERDICT, ColumnarExporter.REMOVE_TOKEN,
+                    ColumnarExporter.BOARD}, reader.ints("type"));
+            assertArrayEquals(new int[]{-1, -1, 1, 1, 1, 1, -1}, reader.ints("player"));
+            assertArrayEquals(new int[]{-1, -1, 2, -1, -1, 2, -1}, reader.ints("slot"));
+            assertArrayEquals(new int[]{-1, -1, -1, -1, 0, -1, -1}, reader.ints("legal"));
+            assertArrayEquals(new int[]{10, 10, 11, 10, -1, 11, -1}, reader.ints("card0"));
+            assertArrayEquals(new int[]{-1, -1, -1, 11, -1, -1, -1}, reader.ints("card1"));
+            assertArrayEquals(new int[]{-1, 11, -1, 12, -1, -1, 11}, reader.ints("card2"));
+        }
+    }
+
+    @Test
+    void concurrentGamesSpanManyChunks() throws IOException, InterruptedException {
+        Path file = directory.resolve("games.setx");
+        ColumnarExporter exporter = new ColumnarExporter(quietLogger(), file, 12);
+        int games = 8;
+        int rows = 3 * ColumnarExporter.CHUNK_ROWS + 5;
+        Thread[] threads = new Thread[games];
+        for (int game = 0; game < games; game++) {
+            ColumnarExporter.Recorder recorder = exporter.recorder(game, new SystemClock());
+            threads[game] = new Thread(() -> {
+                for (int row = 0; row < rows; row++)
+                    recorder.placeToken(row % 6, row % 12);
+                recorder.dispose();
+            });
+            threads[game].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        exporter.close();
+
+        try (ColumnarReader reader = new ColumnarReader(file)) {
+            assertEquals((long) games * rows, reader.rows());
+            assertEquals(games * 4, reader.chunks());
+            assertEquals(games, reader.games());
+            long[] perGame = new long[games];
+            for (long game : reader.longs("game"))
+                perGame[(int) game]++;
+            for (long count : perGame)
+                assertEquals(rows, count);
+            long sum = 0;
+            for (int player : reader.ints("player"))
+                sum += player;
+            assertEquals(sumOfPlayers(rows) * games, sum);
+        }
+    }
+
+    private static long sumOfPlayers(int rows) {
+        long sum = 0;
+        for (int row = 0; row < rows; row++)
+            sum += row % 6;
+        return sum;
+    }
+
+    @Test
+    void rejectsDecksLargerThanTheCardColumns() throws IOException {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", "3");
+        properties.put("FeatureCount", "9"); // 19683 cards
+        assertEquals(12, ColumnarExporter.cards(new Config(quietLogger(), properties)));
+        properties.put("FeatureCount", "10"); // 59049 cards
+        assertThrows(IOException.class, () -> ColumnarExporter.cards(new Config(quietLogger(), properties)));
+    }
+
+    @Test
+    void rejectsIncompleteFiles() throws IOException {
+        Path file = directory.resolve("partial.setx");
+        Files.write(file, new byte[64]);
+        assertThrows(IOException.class, () -> new ColumnarReader(file).close());
+    }
+}
@@ -0,0 +1,78 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+
+class GameJournalTest {
+
+    private Path file;
+    private Config config;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("set-game", ".journal");
+        Properties properties = new Properties();
+        properties.put("Rows", "2");
+        properties.put("Columns", "3");
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        config = new Config(logger, properties);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void replayReproducesRecordedCalls() throws IOException, InterruptedException {
+        GameJournal journal = new GameJournal(file, config, new SystemClock());
+        journal.placeCard(80, 5);
+        journal.placeToken(1, 5);
+        journal.setCountdown(59_999, false);
+        journal.claimSubmitted(1, new int[]{80, 3, 41});
+        journal.claimResolved(1, true);
+        journal.removeTokens(5);
+        journal.removeCard(5);
+        journal.setScore(1, 1);
+        journal.setFreeze(1, 1000);
+        journal.announceWinner(new int[]{1});
+        journal.dispose();
+
+        JournalReplayer replayer = new JournalReplayer(file);
+        assertEquals(2, replayer.rows);
+        assertEquals(3, replayer.columns);
+        assertEquals(config.players, replayer.players);
+
+        UserInterface ui = mock(UserInterface.class);
+        GameListener listener = mock(GameListener.class);
+        replayer.replay(ui, listener, Double.POSITIVE_INFINITY);
+
+        InOrder order = inOrder(ui, listener);
+        order.verify(ui).placeCard(80, 5);
+        order.verify(ui).placeToken(1, 5);
+        order.verify(ui).setCountdown(59_999, false);
+        order.verify(listener).claimSubmitted(eq(1), aryEq(new int[]{80, 3, 41}));
+        order.verify(listener).claimResolved(1, true);
+        order.verify(ui).removeTokens(5);
+        order.verify(ui).removeCard(5);
+        order.verify(ui).setScore(1, 1);
+        order.verify(ui).setFreeze(1, 1000);
+        order.verify(ui).announceWinner(aryEq(new int[]{1}));
+        order.verifyNoMoreInteractions();
+    }
+}
@@ -0,0 +1,65 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameMetricsTest {
+
+    @Test
+    void bucketsCoverEveryValue() {
+        for (long value = 0; value < 100_000; value++) {
+            long lowest = LatencyHistogram.lowestOf(LatencyHistogram.bucketOf(value));
+            assertTrue(lowest <= value && value - lowest <= value / 8, "value " + value);
+        }
+        assertTrue(LatencyHistogram.lowestOf(LatencyHistogram.bucketOf(Long.MAX_VALUE)) > 0);
+    }
+
+    @Test
+    void percentilesAreWithinABucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++)
+            histogram.record(micros * 1000);
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500.5, histogram.getMeanMicros(), 0.001);
+        assertEquals(1000, histogram.getMaxMicros());
+        assertTrue(Math.abs(histogram.getP50Micros() - 500) <= 500 / 8);
+        assertTrue(Math.abs(histogram.getP99Micros() - 990) <= 990 / 8);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getP90Micros());
+    }
+
+    @Test
+    void countersAreVisibleOverJmx() throws JMException {
+        GameMetrics metrics = new GameMetrics(2);
+        metrics.claimQueued(1);
+        metrics.claimResolved(1, false);
+        metrics.claimRejectedLocally(); // counted, with no latency
+        metrics.frozen(1, 3000);
+        metrics.register("test");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName game = new ObjectName(GameMetrics.DOMAIN + ":type=Game,game=\"test\"");
+            assertEquals(1L, server.getAttribute(game, "ClaimsQueued"));
+            assertEquals(2L, server.getAttribute(game, "ClaimsRejected"));
+            assertArrayEquals(new long[]{0, 3000}, (long[]) server.getAttribute(game, "PlayerFreezeMillis"));
+            ObjectName latency = new ObjectName(GameMetrics.DOMAIN + ":type=Latency,game=\"test\",name=claimToVerdict");
+            assertEquals(1L, server.getAttribute(latency, "Count"));
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().queryNames(
+                new ObjectName(GameMetrics.DOMAIN + ":game=\"test\",*"), null).iterator().hasNext());
+    }
+}
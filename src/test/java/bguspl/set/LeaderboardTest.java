@@ -0,0 +1,79 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LeaderboardTest {
+
+    @Test
+    void concurrentPointsAreAllCountedAndRanked() throws InterruptedException {
+        Leaderboard leaderboard = new Leaderboard(3);
+        int players = 8;
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                // player i scores (i + 1) * 100 points, spread over all the threads
+                for (int player = 0; player < players; player++) {
+                    Leaderboard.Entry entry = leaderboard.entry("player " + player);
+                    for (int point = 0; point < (player + 1) * 100 / threads.length; point++)
+                        entry.point();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(players, leaderboard.getPlayerCount());
+        assertEquals(100 * players * (players + 1) / 2, leaderboard.getTotalPoints());
+        assertArrayEquals(new String[]{"player 7: 800", "player 6: 700", "player 5: 600"},
+                leaderboard.getTopPlayers());
+    }
+
+    @Test
+    void percentileRankCountsThePlayersBelow() {
+        Leaderboard leaderboard = new Leaderboard(Leaderboard.DEFAULT_SIZE);
+        for (int player = 0; player < 4; player++) {
+            Leaderboard.Entry entry = leaderboard.entry("player " + player);
+            for (int point = 0; point < player; point++)
+                entry.point();
+        }
+
+        assertSame(leaderboard.entry("player 1"), leaderboard.entry("player 1"));
+        assertEquals(0, leaderboard.percentileRank("player 0"));
+        assertEquals(75, leaderboard.percentileRank("player 3"));
+        assertEquals(0, leaderboard.percentileRank("nobody"));
+        assertEquals(3, leaderboard.top().length); // a player without points never reached the top
+    }
+
+    @Test
+    void aTieDoesNotDisplaceALeader() {
+        Leaderboard leaderboard = new Leaderboard(2);
+        leaderboard.entry("first").point();
+        leaderboard.entry("first").point();
+        leaderboard.entry("second").point();
+        leaderboard.entry("third").point();
+
+        assertArrayEquals(new String[]{"first: 2", "second: 1"}, leaderboard.getTopPlayers());
+        leaderboard.entry("third").point();
+        assertArrayEquals(new String[]{"first: 2", "third: 2"}, leaderboard.getTopPlayers());
+    }
+
+    @Test
+    void theScoreBucketsGrowWithTheScores() {
+        int previous = 0;
+        for (long points = 1; points > 0 && points < Long.MAX_VALUE / 2; points += 1 + points / 7) {
+            int bucket = Leaderboard.bucket(points);
+            assertTrue(bucket >= previous && bucket < Leaderboard.BUCKETS, points + " in bucket " + bucket);
+            assertTrue(Leaderboard.bucket(points - 1) <= bucket);
+            previous = bucket;
+        }
+        assertEquals(Leaderboard.BUCKETS - 1, Leaderboard.bucket(Long.MAX_VALUE));
+        assertEquals(63, Leaderboard.bucket(63)); // exact up to here
+        assertEquals(Leaderboard.bucket(1008), Leaderboard.bucket(1023)); // within 1/32 of each other
+    }
+}
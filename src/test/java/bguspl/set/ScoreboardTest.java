@@ -0,0 +1,139 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScoreboardTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void everyGameIsClaimedOnce() throws IOException, InterruptedException {
+        Path file = directory.resolve("board");
+        Scoreboard.create(file, 2, 1, 3, 4, 100, 0);
+        // two mappings of the file, as in two processes
+        Scoreboard[] boards = {Scoreboard.open(file), Scoreboard.open(file)};
+        Set<Long> claimed = new HashSet<>();
+        Thread[] shards = new Thread[2];
+        for (int shard = 0; shard < shards.length; shard++) {
+            int s = shard;
+            shards[shard] = new Thread(() -> {
+                for (long game = boards[s].claim(s); game < boards[s].total(); game = boards[s].claim(s))
+                    synchronized (claimed) {
+                        assertTrue(claimed.add(game));
+                    }
+            });
+            shards[shard].start();
+        }
+        for (Thread shard : shards)
+            shard.join();
+
+        assertEquals(300, claimed.size());
+        assertEquals(300, boards[0].claimed(0) + boards[1].claimed(1));
+    }
+
+    @Test
+    void totalsAreSummarized() throws IOException {
+        Path file = directory.resolve("board");
+        Scoreboard writer = Scoreboard.create(file, 2, 2, 1, 2, 10, 0);
+        writer.started(1, 42);
+        writer.add(1, 0, 0, new GameResult("v", 0, new String[]{"finder", "random"}, new int[]{3, 1}, 60_000, 4,
+                new long[]{0, 0, 5, 100_000}));
+        writer.add(1, 1, 0, new GameResult("v", 1, new String[]{"finder", "random"}, new int[]{2, 2}, 30_000, 4,
+                new long[]{1, 1, 1, 1}));
+        writer.fail(0, 1, 0);
+        writer.finished(1, Scoreboard.DONE);
+
+        Scoreboard reader = Scoreboard.open(file);
+        assertEquals(42, reader.pid(1));
+        assertEquals(Scoreboard.DONE, reader.state(1));
+        assertEquals(Scoreboard.STARTING, reader.state(0));
+        assertEquals(2, reader.played(1));
+        assertEquals(1, reader.failed(0));
+        assertEquals(3, reader.finished());
+
+        Tournament.Summary summary = new Tournament.Summary("v");
+        reader.summarize(0, summary, new String[]{"finder", "random"});
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        summary.print(new PrintStream(bytes));
+        String report = bytes.toString();
+        assertTrue(report.contains("2 games (1 failed), 2 players"), report);
+        assertTrue(report.contains("mean 45.0 s, longest 60.0 s, 5.3 sets/minute"), report);
+        assertTrue(report.contains("p50 1, p90 100000, p99 100000, max 100000 (8 claims, 100.0% legal)"), report);
+        assertTrue(report.contains("finder   mean score 2.50, win rate 75.0%"), report);
+        assertTrue(report.contains("random   mean score 1.50, win rate 25.0%"), report);
+    }
+
+    @Test
+    void aReaderNeverSeesHalfAGame() throws IOException, InterruptedException {
+        Path file = directory.resolve("board");
+        Scoreboard.create(file, 1, 1, 1, 2, 200, 0);
+        Scoreboard writer = Scoreboard.open(file), reader = Scoreboard.open(file);
+        long[] latencies = new long[1000]; // as many claims as legal ones
+        Thread shard = new Thread(() -> {
+            for (int game = 0; game < 200; game++)
+                writer.add(0, 0, 0, new GameResult("v", game, new String[]{"finder", "random"}, new int[]{1, 0},
+                        1000, latencies.length, latencies));
+        });
+        shard.start();
+        while (shard.isAlive()) {
+            Tournament.Summary summary = new Tournament.Summary("v");
+            reader.summarize(0, summary, new String[]{"finder", "random"});
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            summary.print(new PrintStream(bytes));
+            String claims = summary.games() * latencies.length + " claims, 100.0% legal";
+            assertTrue(summary.games() == 0 || bytes.toString().contains(claims), bytes.toString());
+        }
+        shard.join();
+        assertEquals(200, reader.played(0));
+    }
+
+    @Test
+    void theGamesOfADeadShardAreLostWithTheirVariants() throws IOException {
+        Path file = directory.resolve("board");
+        Scoreboard shard = Scoreboard.create(file, 1, 2, 2, 2, 10, 0);
+        assertEquals(0, shard.claim(0));
+        assertEquals(1, shard.claim(0));
+        assertEquals(2, shard.claim(0));
+        assertEquals(3, shard.claim(0));
+        shard.add(0, 1, 0, new GameResult("v", 0, new String[]{"finder", "random"}, new int[]{3, 1}, 60_000, 4,
+                new long[]{1}));
+        // the shard dies playing games 1, 2 and 3
+
+        Scoreboard coordinator = Scoreboard.open(file);
+        assertEquals(3, coordinator.lost(0));
+        assertEquals(1, coordinator.played(0));
+        assertEquals(3, coordinator.failed(0));
+        assertEquals(0, coordinator.lost(0));
+        String[] strategies = {"finder", "random"};
+        for (int variant = 0; variant < 2; variant++) {
+            Tournament.Summary summary = new Tournament.Summary("v" + variant);
+            coordinator.summarize(variant, summary, strategies);
+            assertEquals(variant == 0 ? 1 : 0, summary.games());
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            summary.print(new PrintStream(bytes));
+            String report = bytes.toString();
+            assertTrue(report.contains(variant == 0 ? "1 games (1 failed)" : "0 games (2 failed)"), report);
+        }
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        Path file = directory.resolve("other");
+        Files.write(file, new byte[128]);
+        assertThrows(IOException.class, () -> Scoreboard.open(file));
+    }
+}
@@ -0,0 +1,84 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SetIndexTest {
+
+    @TempDir
+    Path directory;
+
+    private static Config config(int featureCount) {
+        Properties properties = new Properties();
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        return new Config(logger, properties);
+    }
+
+    @Test
+    void completesEveryPairToASet() throws IOException {
+        Config config = config(5);
+        Path file = directory.resolve("deck.index");
+        SetIndex.generate(file, config.featureCount);
+        SetIndex index = SetIndex.open(file, config);
+        UtilImpl util = new UtilImpl(config);
+
+        for (int a = 0; a < config.deckSize; a++)
+            for (int b = 0; b < config.deckSize; b++)
+                if (a != b) {
+                    int c = index.third(a, b);
+                    assertTrue(c != a && c != b);
+                    assertTrue(util.testSet(new int[]{a, b, c}));
+                }
+    }
+
+    @Test
+    void findsTheSameSetsAsWithoutTheIndex() throws IOException {
+        Config config = config(4);
+        Path file = directory.resolve("deck.index");
+        SetIndex.generate(file, config.featureCount);
+        UtilImpl plain = new UtilImpl(config);
+        UtilImpl indexed = new UtilImpl(config, SetIndex.open(file, config));
+
+        Random random = new Random(7);
+        List<Integer> deck = new ArrayList<>();
+        for (int card = 0; card < config.deckSize; card++)
+            deck.add(card);
+        for (int round = 0; round < 50; round++) {
+            Collections.shuffle(deck, random);
+            List<Integer> table = deck.subList(0, 3 + random.nextInt(config.deckSize - 3));
+            List<int[]> expected = plain.findSets(table, Integer.MAX_VALUE);
+            List<int[]> found = indexed.findSets(table, Integer.MAX_VALUE);
+            assertEquals(expected.size(), found.size());
+            for (int i = 0; i < expected.size(); i++)
+                assertArrayEquals(expected.get(i), found.get(i));
+            assertEquals(Math.min(1, expected.size()), indexed.findSets(table, 1).size());
+        }
+    }
+
+    @Test
+    void rejectsAnIndexOfAnotherDeck() throws IOException {
+        Path file = directory.resolve("deck.index");
+        SetIndex.generate(file, 3);
+        assertThrows(IOException.class, () -> SetIndex.open(file, config(4)));
+
+        Files.write(file, new byte[]{1, 2, 3});
+        assertThrows(IOException.class, () -> SetIndex.open(file, config(3)));
+    }
+}
@@ -0,0 +1,45 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedTournamentTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shardsPlayAllTheGames() throws IOException, InterruptedException {
+        Path variant = directory.resolve("finders.properties");
+        Files.write(variant, Arrays.asList("HumanPlayers=1", "ComputerPlayers=1", "Strategies=finder, finder",
+                "ComputerKeyDelaySeconds=0.1", "TableDelaySeconds=0.1", "PointFreezeSeconds=1"));
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.OFF);
+
+        ShardedTournament tournament = new ShardedTournament(logger, variant.toString());
+        Scoreboard board = tournament.run(directory.resolve("board"), 2, 1, 3, 0,
+                new PrintStream(new ByteArrayOutputStream()));
+
+        assertEquals(3, board.finished());
+        assertEquals(3, board.played(0) + board.played(1));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        tournament.report(board, new PrintStream(bytes), 1000);
+        String report = bytes.toString();
+        assertTrue(report.contains("3 games (0 failed), 2 players"), report);
+        assertTrue(report.contains("shard 1 (pid " + board.pid(1) + "): " + board.played(1) + " games, 0 failed, done"),
+                report);
+    }
+}
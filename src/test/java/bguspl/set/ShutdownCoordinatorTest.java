@@ -0,0 +1,90 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShutdownCoordinatorTest {
+
+    private static Logger quietLogger() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        return logger;
+    }
+
+    /**
+     * A thread that waits on a monitor until its flag is set (rechecking it after every interrupt).
+     */
+    private static class Waiter implements Runnable {
+
+        private volatile boolean terminate;
+
+        @Override
+        public synchronized void run() {
+            while (!terminate)
+                try {
+                    wait(); // a bare wait: only the interrupt wakes it up
+                } catch (InterruptedException ignored) {
+                }
+        }
+    }
+
+    @Test
+    void stopsAllThreadsAtOnce() {
+        ShutdownCoordinator coordinator = new ShutdownCoordinator(quietLogger(), 5000);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Waiter waiter = new Waiter();
+            Thread thread = new Thread(waiter, "waiter-" + i);
+            coordinator.register(thread, () -> waiter.terminate = true);
+            threads.add(thread);
+            thread.start();
+        }
+        Thread sleeper = new Thread(() -> {
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException ignored) {
+            }
+        }, "sleeper");
+        coordinator.register(sleeper, null);
+        threads.add(sleeper);
+        sleeper.start();
+
+        long start = System.nanoTime();
+        assertEquals(Collections.emptyList(), coordinator.shutdown());
+        assertTrue(System.nanoTime() - start < 1_000_000_000L);
+        for (Thread thread : threads)
+            assertTrue(!thread.isAlive(), thread.getName());
+    }
+
+    @Test
+    void reportsTheThreadsThatMissTheDeadline() throws InterruptedException {
+        ShutdownCoordinator coordinator = new ShutdownCoordinator(quietLogger(), 200);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread stubborn = new Thread(() -> {
+            while (release.getCount() > 0)
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+        }, "stubborn");
+        coordinator.register(stubborn, null);
+        stubborn.start();
+
+        long start = System.nanoTime();
+        List<Thread> late = coordinator.shutdown();
+        long millis = (System.nanoTime() - start) / 1_000_000L;
+        assertEquals(Collections.singletonList(stubborn), late);
+        assertTrue(millis >= 200 && millis < 1000, millis + " ms");
+
+        release.countDown();
+        stubborn.join();
+    }
+}
@@ -0,0 +1,80 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpectatorServerTest {
+
+    private SpectatorServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Properties properties = new Properties();
+        properties.put("Rows", "2");
+        properties.put("Columns", "2");
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "3");
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        server = new SpectatorServer(logger, new Config(logger, properties), 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.dispose();
+    }
+
+    private static void readUntil(SpectatorClient client, BooleanSupplier condition) {
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            while (!condition.getAsBoolean())
+                assertNotNull(client.next(), "connection closed");
+        });
+    }
+
+    @Test
+    void newClientGetsSnapshotThenDeltas() throws IOException {
+        server.placeCard(5, 1);
+        server.placeToken(2, 1);
+        server.setScore(0, 2);
+
+        try (SpectatorClient client = new SpectatorClient(server.getPort())) {
+            assertEquals(2, client.rows);
+            assertEquals(3, client.players);
+            readUntil(client, () -> client.cards[1] == 5 && client.hasToken(2, 1) && client.scores[0] == 2);
+
+            server.removeToken(2, 1);
+            server.removeCard(1);
+            server.setCountdown(4200, true);
+            readUntil(client, () -> client.cards[1] == -1 && client.countdown == 4200);
+            assertFalse(client.hasToken(2, 1));
+            assertTrue(client.warn);
+
+            server.announceWinner(new int[]{0, 2});
+            readUntil(client, () -> client.winners != null);
+            assertArrayEquals(new int[]{0, 2}, client.winners);
+        }
+    }
+
+    @Test
+    void clientThatDoesNotReadGetsLatestState() throws IOException {
+        try (SpectatorClient client = new SpectatorClient(server.getPort())) {
+            for (int i = 0; i < 100_000; i++)
+                server.setCountdown(i, false);
+            readUntil(client, () -> client.countdown == 99_999);
+        }
+    }
+}
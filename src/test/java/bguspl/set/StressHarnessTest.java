@@ -0,0 +1,23 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StressHarnessTest {
+
+    @Test
+    void gamesPassTheirInvariants() throws InterruptedException {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.OFF);
+        StressHarness harness = new StressHarness(logger, 3, 20);
+
+        harness.run(2, 1, 2);
+
+        assertTrue(harness.failures().isEmpty(), harness.failures().toString());
+    }
+}
@@ -0,0 +1,96 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TournamentTest {
+
+    private Path file;
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("finders", ".properties");
+        Files.write(file, Arrays.asList("HumanPlayers=1", "ComputerPlayers=1", "Strategies=finder, finder",
+                "ComputerKeyDelaySeconds=0.1", "TableDelaySeconds=0.1", "PointFreezeSeconds=1"));
+        logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.OFF);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void gameResultIsConsistent() throws InterruptedException {
+        Tournament tournament = new Tournament(logger, file.toString());
+        GameResult result = tournament.play(0, 7);
+
+        assertEquals(2, result.scores.length);
+        assertEquals("finder", result.strategies[1]);
+        assertEquals(Arrays.stream(result.scores).sum(), result.legalClaims);
+        assertTrue(result.legalClaims > 0);
+        assertTrue(result.latencies.length >= result.legalClaims);
+        assertTrue(result.durationMillis > 0);
+    }
+
+    @Test
+    void reportSummarizesAllGames() throws InterruptedException {
+        Tournament tournament = new Tournament(logger, file.toString());
+        tournament.run(2, 0, 2);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        tournament.report(new PrintStream(bytes), 1000);
+        String report = bytes.toString();
+        assertTrue(report.contains("2 games (0 failed), 2 players"), report);
+        assertTrue(report.contains("finder"), report);
+    }
+
+    @Test
+    void aSeedReplaysItsGame() throws InterruptedException {
+        Tournament tournament = new Tournament(logger, file.toString());
+        List<String> first = Collections.synchronizedList(new ArrayList<>());
+        List<String> second = Collections.synchronizedList(new ArrayList<>());
+        GameResult one = tournament.play(0, 7, recorder(first));
+        GameResult two = tournament.play(0, 7, recorder(second));
+
+        assertTrue(first.size() > 10, first.toString());
+        assertEquals(first, second);
+        assertArrayEquals(one.scores, two.scores);
+        assertArrayEquals(one.latencies, two.latencies);
+        assertEquals(one.durationMillis, two.durationMillis);
+    }
+
+    private static GameListener recorder(List<String> events) {
+        return new GameListener() {
+            @Override
+            public void claimSubmitted(int player, int[] cards) {
+                events.add(player + " claims " + Arrays.toString(cards));
+            }
+
+            @Override
+            public void claimResolved(int player, boolean legal) {
+                events.add(player + (legal ? " scores" : " is penalized"));
+            }
+        };
+    }
+}
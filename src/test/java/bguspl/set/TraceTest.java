@@ -0,0 +1,47 @@
+package bguspl.set;
+
+import jdk.jfr.Recording;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TraceTest {
+
+    @Test
+    void analyzerReportsEveryRecordedStage() throws IOException {
+        Path file = Files.createTempFile("trace", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(Trace.SPAN_EVENT);
+            recording.start();
+            for (int i = 0; i < 10; i++) {
+                long input = Trace.nextInput();
+                long pressed = System.nanoTime() - 2_000_000;
+                Trace.span(Trace.QUEUE, input, 0, pressed, pressed);
+                Trace.span(Trace.PAINT, input, 0, pressed + 1_000_000, pressed);
+            }
+            recording.stop();
+            recording.dump(file);
+
+            Map<String, LatencyHistogram> histograms = TraceAnalyzer.analyze(file);
+            assertEquals(10, histograms.get(Trace.QUEUE).getCount());
+            assertEquals(10, histograms.get(Trace.PAINT).getCount());
+            assertEquals(0, histograms.get(Trace.CLAIM).getCount());
+            assertTrue(histograms.get(TraceAnalyzer.KEY_TO_PAINT).getP50Micros() >= 1500);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            TraceAnalyzer.print(histograms, new PrintStream(bytes));
+            String table = bytes.toString();
+            assertTrue(table.contains(Trace.PAINT) && !table.contains(Trace.CLAIM), table);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
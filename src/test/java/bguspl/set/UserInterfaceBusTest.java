@@ -0,0 +1,256 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserInterfaceBusTest {
+
+    private static final Logger logger = Logger.getAnonymousLogger();
+
+    static {
+        logger.setUseParentHandlers(false);
+    }
+
+    private static Config config(int capacity) {
+        Properties properties = new Properties();
+        properties.put("UiQueueCapacity", Integer.toString(capacity));
+        return new Config(logger, properties);
+    }
+
+    /**
+     * Keeps what a user interface would show (and the order of the card calls), optionally blocking until released.
+     */
+    private static class Screen extends UserInterfaceTee {
+
+        final CountDownLatch released;
+        final int[] cards;
+        final int[] scores;
+        final List<String> calls = new ArrayList<>();
+        final List<Long> tokenInputs = new ArrayList<>();
+        long countdown;
+        int countdowns;
+        boolean disposed;
+        volatile boolean waited; // a call waited to be released
+
+        Screen(Config config, boolean blocked) {
+            released = new CountDownLatch(blocked ? 1 : 0);
+            cards = new int[config.tableSize];
+            Arrays.fill(cards, -1);
+            scores = new int[config.players];
+        }
+
+        private void await() {
+            waited = true;
+            try {
+                released.await();
+            } catch (InterruptedException ignored) {
+            }
+        }
+
+        @Override
+        public synchronized void placeCard(int card, int slot) {
+            await();
+            cards[slot] = card;
+            calls.add("place " + card + " " + slot);
+        }
+
+        @Override
+        public synchronized void removeCard(int slot) {
+            await();
+            cards[slot] = -1;
+            calls.add("remove " + slot);
+        }
+
+        @Override
+        public synchronized void placeToken(int player, int slot) {
+            tokenInputs.add(Trace.currentInput());
+            tokenInputs.add(Trace.currentInputNanos());
+        }
+
+        @Override
+        public synchronized void removeToken(int player, int slot) {
+            tokenInputs.add(Trace.currentInput());
+        }
+
+        @Override
+        public synchronized void setCountdown(long millies, boolean warn) {
+            countdown = millies;
+            countdowns++;
+        }
+
+        @Override
+        public synchronized void setScore(int player, int score) {
+            scores[player] = score;
+        }
+
+        @Override
+        public synchronized void dispose() {
+            disposed = true;
+        }
+    }
+
+    @Test
+    void deliversTheEventsInOrderAndTheLatestValues() {
+        Config config = config(1024);
+        UserInterfaceBus bus = new UserInterfaceBus(logger, config, new SystemClock());
+        Screen screen = new Screen(config, false);
+        bus.add("screen", screen, UserInterfaceBus.Overflow.RESYNC);
+
+        bus.placeCard(5, 0);
+        bus.placeCard(6, 1);
+        bus.removeCard(0);
+        for (int millis = 1000; millis >= 0; millis--)
+            bus.setCountdown(millis, false);
+        bus.setScore(1, 3);
+        bus.dispose();
+
+        synchronized (screen) {
+            assertEquals(Arrays.asList("place 5 0", "place 6 1", "remove 0"), screen.calls);
+            assertEquals(0, screen.countdown);
+            assertTrue(screen.countdowns <= 1001);
+            assertEquals(3, screen.scores[1]);
+            assertTrue(screen.disposed);
+        }
+    }
+
+    @Test
+    void aSlowSinkDoesNotSlowTheGameAndCatchesUpWithTheWholeTable() throws InterruptedException {
+        Config config = config(4);
+        UserInterfaceBus bus = new UserInterfaceBus(logger, config, new SystemClock());
+        Screen slow = new Screen(config, true);
+        Screen direct = new Screen(config, false);
+        bus.add("slow", slow, UserInterfaceBus.Overflow.RESYNC);
+        bus.addDirect(direct);
+
+        long start = System.nanoTime();
+        for (int round = 0; round < 100; round++)
+            for (int slot = 0; slot < config.tableSize; slot++) {
+                bus.removeCard(slot);
+                bus.placeCard(round * config.tableSize + slot, slot);
+            }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+
+        slow.released.countDown();
+        bus.dispose();
+        synchronized (slow) {
+            assertArrayEquals(direct.cards, slow.cards);
+            assertTrue(slow.calls.size() < direct.calls.size()); // the dropped events were not delivered
+            assertTrue(slow.disposed);
+        }
+    }
+
+    @Test
+    void aResyncSendsOnlyWhatChanged() {
+        Config config = config(4);
+        UserInterfaceBus bus = new UserInterfaceBus(logger, config, new SystemClock());
+        Screen slow = new Screen(config, true);
+        bus.add("slow", slow, UserInterfaceBus.Overflow.RESYNC);
+
+        bus.placeCard(7, 0);
+        while (!slow.waited) Thread.yield(); // the sink blocks delivering it
+        for (int card = 10; card < 20; card++)
+            bus.placeCard(card, 1);
+        slow.released.countDown();
+        bus.dispose();
+
+        synchronized (slow) {
+            assertEquals(Arrays.asList("place 7 0", "place 19 1"), slow.calls);
+        }
+    }
+
+    @Test
+    void aGrowingSinkGetsEveryEvent() {
+        Config config = config(4);
+        UserInterfaceBus bus = new UserInterfaceBus(logger, config, new SystemClock());
+        Screen slow = new Screen(config, true);
+        bus.add("slow", slow, UserInterfaceBus.Overflow.GROW);
+
+        List<String> expected = new ArrayList<>();
+        for (int card = 0; card < 100; card++) {
+            bus.placeCard(card, card % config.tableSize);
+            expected.add("place " + card + " " + card % config.tableSize);
+        }
+        slow.released.countDown();
+        bus.dispose();
+
+        synchronized (slow) {
+            assertEquals(expected, slow.calls);
+        }
+    }
+
+    @Test
+    void aTokenCarriesTheInputOfThePostingThreadToTheSink() {
+        Config config = config(1024);
+        UserInterfaceBus bus = new UserInterfaceBus(logger, config, new SystemClock());
+        Screen screen = new Screen(config, false);
+        bus.add("screen", screen, UserInterfaceBus.Overflow.RESYNC);
+
+        Trace.enter(42, 1234);
+        try {
+            bus.placeToken(0, 3);
+        } finally {
+            Trace.enter(0, 0);
+        }
+        bus.placeToken(1, 4);
+        bus.removeToken(0, 3);
+        bus.dispose();
+
+        synchronized (screen) {
+            assertEquals(Arrays.asList(42L, 1234L, 0L, 0L, 0L), screen.tokenInputs);
+        }
+    }
+
+    @Test
+    void aRecordingSinkGetsTheGameEventsInOrderWithThePostTimes() {
+        Config config = config(1024);
+        long[] now = {1000};
+        UserInterfaceBus bus = new UserInterfaceBus(logger, config, new SystemClock() {
+            @Override
+            public long currentTimeMillis() {
+                return now[0];
+            }
+        });
+        Clock events = bus.eventClock();
+        List<String> calls = new ArrayList<>();
+        class Recorder extends UserInterfaceTee implements GameListener {
+            @Override
+            public void placeToken(int player, int slot) {
+                calls.add(events.currentTimeMillis() + " token " + player + " " + slot);
+            }
+
+            @Override
+            public void claimSubmitted(int player, int[] cards) {
+                calls.add(events.currentTimeMillis() + " claim " + player + " " + Arrays.toString(cards));
+            }
+
+            @Override
+            public void claimResolved(int player, boolean legal) {
+                calls.add(events.currentTimeMillis() + " verdict " + player + " " + legal);
+            }
+        }
+        Recorder recorder = new Recorder();
+        bus.add("recorder", recorder, recorder, UserInterfaceBus.Overflow.GROW);
+
+        bus.placeToken(1, 0);
+        now[0] = 1010;
+        bus.claimSubmitted(1, new int[]{4, 5, 6});
+        now[0] = 1025;
+        bus.claimResolved(1, true);
+        now[0] = 5000;
+        bus.dispose();
+
+        assertEquals(Arrays.asList("1000 token 1 0", "1010 claim 1 [4, 5, 6]", "1025 verdict 1 true"), calls);
+        assertEquals(5000, events.currentTimeMillis());
+    }
+}
@@ -0,0 +1,61 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UtilImplTest {
+
+    /**
+     * @return - true iff every feature is the same on all cards or different on all cards.
+     */
+    private static boolean isSet(int[][] features) {
+        for (int feature = 0; feature < features[0].length; feature++) {
+            boolean same = true, different = true;
+            for (int i = 0; i < features.length; i++)
+                for (int j = i + 1; j < features.length; j++)
+                    if (features[i][feature] == features[j][feature]) different = false;
+                    else same = false;
+            if (!same && !different) return false;
+        }
+        return true;
+    }
+
+    @Test
+    void testSetAgreesWithTheFeatures() {
+        for (String size : new String[]{"3", "4"}) {
+            Properties properties = new Properties();
+            properties.put("FeatureSize", size);
+            properties.put("FeatureCount", "3");
+            Logger logger = Logger.getAnonymousLogger();
+            logger.setUseParentHandlers(false);
+            Config config = new Config(logger, properties);
+            UtilImpl util = new UtilImpl(config);
+
+            int[] cards = new int[config.featureSize];
+            int[] picked = new int[config.featureSize];
+            for (int i = 0; i < picked.length; i++)
+                picked[i] = i;
+            int sets = 0;
+            while (true) {
+                for (int i = 0; i < cards.length; i++)
+                    cards[i] = picked[i];
+                boolean expected = isSet(util.cardsToFeatures(cards));
+                assertEquals(expected, util.testSet(cards), () -> Arrays.toString(cards));
+                if (expected) sets++;
+                int i = picked.length - 1;
+                while (i >= 0 && picked[i] == config.deckSize - picked.length + i) i--;
+                if (i < 0) break;
+                picked[i]++;
+                for (int j = i + 1; j < picked.length; j++)
+                    picked[j] = picked[j - 1] + 1;
+            }
+            if (config.featureSize == 3) // every pair of cards completes exactly one set
+                assertEquals(config.deckSize * (config.deckSize - 1) / 2 / 3, sets);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VirtualClockTest {
+
+    private VirtualClock clock;
+
+    @BeforeEach
+    void setUp() {
+        clock = new VirtualClock(1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        clock.shutdown();
+    }
+
+    /**
+     * Tracks all the tasks before starting any of them, so that simulated time cannot advance before they all run.
+     */
+    private Thread[] start(Runnable... tasks) {
+        Thread[] threads = new Thread[tasks.length];
+        for (int i = 0; i < tasks.length; i++)
+            threads[i] = new Thread(clock.track(tasks[i]));
+        for (Thread thread : threads)
+            thread.start();
+        return threads;
+    }
+
+    private static void join(Thread... threads) throws InterruptedException {
+        for (Thread thread : threads)
+            thread.join(5000);
+    }
+
+    @Test
+    void sleepAdvancesSimulatedTimeOnly() throws InterruptedException {
+        AtomicLong woke = new AtomicLong();
+        long realStart = System.currentTimeMillis();
+        join(start(() -> {
+            try {
+                clock.sleep(60_000);
+                woke.set(clock.currentTimeMillis());
+            } catch (InterruptedException ignored) {
+            }
+        }));
+
+        assertEquals(61_000, woke.get());
+        assertTrue(System.currentTimeMillis() - realStart < 5000);
+    }
+
+    @Test
+    void timedWaitsWakeInDeadlineOrder() throws InterruptedException {
+        Object monitor = new Object();
+        AtomicLong first = new AtomicLong();
+        AtomicLong second = new AtomicLong();
+        join(start(() -> {
+            synchronized (monitor) {
+                try {
+                    clock.await(monitor, 500);
+                    second.set(clock.currentTimeMillis());
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }, () -> {
+            synchronized (monitor) {
+                try {
+                    clock.await(monitor, 200);
+                    first.set(clock.currentTimeMillis());
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }));
+
+        assertEquals(1200, first.get());
+        assertEquals(1500, second.get());
+    }
+
+    @Test
+    void aThreadBlockedOutsideTheClockHoldsTheTime() throws InterruptedException {
+        CountDownLatch released = new CountDownLatch(1);
+        AtomicLong blocked = new AtomicLong();
+        AtomicLong slept = new AtomicLong();
+        Thread[] threads = start(() -> {
+            try {
+                clock.sleep(100);
+                slept.set(clock.currentTimeMillis());
+            } catch (InterruptedException ignored) {
+            }
+        }, () -> {
+            try {
+                released.await(); // not in the clock: the other thread waits for it
+                blocked.set(clock.currentTimeMillis());
+            } catch (InterruptedException ignored) {
+            }
+        });
+        Thread.sleep(200);
+        released.countDown();
+        join(threads);
+
+        assertEquals(1000, blocked.get());
+        assertEquals(1100, slept.get());
+    }
+
+    @Test
+    void manyStepsTakeLittleRealTime() throws InterruptedException {
+        Object monitor = new Object();
+        AtomicLong woke = new AtomicLong();
+        long realStart = System.currentTimeMillis();
+        join(start(() -> {
+            try {
+                for (int i = 0; i < 10_000; i++)
+                    clock.sleep(1);
+                woke.set(clock.currentTimeMillis());
+            } catch (InterruptedException ignored) {
+            }
+        }, () -> {
+            synchronized (monitor) {
+                try {
+                    for (int i = 0; i < 1000; i++)
+                        clock.await(monitor, 10);
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }));
+
+        assertEquals(11_000, woke.get());
+        assertTrue(System.currentTimeMillis() - realStart < 5000);
+    }
+
+    @Test
+    void signalWakesBeforeTheDeadline() throws InterruptedException {
+        Object monitor = new Object();
+        AtomicLong woke = new AtomicLong();
+        join(start(() -> {
+            synchronized (monitor) {
+                try {
+                    clock.await(monitor, 0);
+                    woke.set(clock.currentTimeMillis());
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }, () -> {
+            try {
+                clock.sleep(300);
+                synchronized (monitor) {
+                    clock.signalAll(monitor);
+                }
+            } catch (InterruptedException ignored) {
+            }
+        }));
+
+        assertEquals(1300, woke.get());
+    }
+}
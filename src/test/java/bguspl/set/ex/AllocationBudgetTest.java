@@ -0,0 +1,161 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Budgets of the bytes the gameplay hot paths may allocate per operation (once warmed up), measured with the
+ * thread allocation counters of the JVM, so a change that makes them allocate again fails here.
+ */
+class AllocationBudgetTest {
+
+    private static final int WARM_UP = 20_000;
+    private static final int OPERATIONS = 20_000;
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    private Env env;
+    private Table table;
+    private Player player;
+    private Dealer dealer;
+
+    // a legal set (the cards differ in the first feature only) and an illegal one
+    private final int[] set = {0, 1, 2};
+    private final int[] notSet = {0, 1, 3};
+
+    @BeforeAll
+    static void setUpCounters() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("TableDelaySeconds", "0");
+        properties.put("Hints", "False");
+        properties.put("PenaltyFreezeSeconds", "0");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        env = new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config));
+        table = new Table(env);
+        Player[] players = new Player[config.players];
+        dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+        player = players[0];
+        for (int slot = 0; slot < config.tableSize; slot++)
+            table.placeCard(slot, slot);
+    }
+
+    @AfterEach
+    void tearDown() {
+        table.hints().terminate();
+    }
+
+    /**
+     * @return - the bytes the current thread allocated so far.
+     */
+    private static long allocated() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Asserts that an operation allocates at most a budget of bytes, on average over many runs after a warm up.
+     */
+    private static void assertBudget(String name, long budget, Runnable operation) {
+        for (int i = 0; i < WARM_UP; i++)
+            operation.run();
+        long start = allocated();
+        for (int i = 0; i < OPERATIONS; i++)
+            operation.run();
+        long perOperation = (allocated() - start) / OPERATIONS;
+        assertTrue(perOperation <= budget,
+                name + " allocates " + perOperation + " bytes per operation, the budget is " + budget);
+    }
+
+    @Test
+    void handlingAKey() {
+        assertBudget("Player.handleKey", 0, () -> {
+            player.handleKey(5); // places a token
+            player.handleKey(5); // removes it
+        });
+    }
+
+    @Test
+    void placingAndRemovingTokens() {
+        assertBudget("Table.placeToken/removeToken", 0, () -> {
+            table.placeToken(1, 7);
+            table.removeToken(1, 7);
+        });
+    }
+
+    @Test
+    void verifyingALegalClaim() {
+        assertBudget("Dealer.removeCardsFromTable (legal)", 0, () -> {
+            for (int slot : set)
+                table.placeToken(0, slot);
+            table.queueClaim(0);
+            dealer.removeCardsFromTable();
+            for (int slot : set)
+                table.placeCard(slot, slot); // deal the same cards again
+        });
+    }
+
+    @Test
+    void preValidatingAnIllegalClaim() {
+        for (int slot : notSet)
+            table.placeToken(0, slot);
+        assertBudget("Player.preValidateClaim (illegal)", 0, () -> {
+            if (player.preValidateClaim())
+                throw new AssertionError("an illegal set went to the dealer");
+        });
+    }
+
+    @Test
+    void preValidatingALegalClaim() {
+        for (int slot : set)
+            table.placeToken(0, slot);
+        assertBudget("Player.preValidateClaim (legal)", 0, () -> {
+            if (!player.preValidateClaim())
+                throw new AssertionError("a legal set was penalized");
+        });
+    }
+
+    @Test
+    void verifyingAnIllegalClaim() {
+        // in play the players reject illegal sets themselves (see preValidatingAnIllegalClaim): this keeps the
+        // dealer's own rejection, for claims that reach it some other way, in budget too
+        assertBudget("Dealer.removeCardsFromTable (illegal)", 0, () -> {
+            for (int slot : notSet)
+                table.placeToken(0, slot);
+            table.queueClaim(0);
+            dealer.removeCardsFromTable();
+            for (int slot : notSet)
+                table.removeToken(0, slot);
+        });
+    }
+
+    @Test
+    void testingSets() {
+        Util util = env.util;
+        assertBudget("Util.testSet", 0, () -> {
+            if (!util.testSet(set) || util.testSet(notSet))
+                throw new AssertionError("testSet is wrong");
+        });
+    }
+}
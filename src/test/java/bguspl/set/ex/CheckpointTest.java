@@ -0,0 +1,120 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CheckpointTest {
+
+    private Env env;
+    private Table table;
+    private Player[] players;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("TableDelaySeconds", "0");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        env = new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config));
+        table = new Table(env);
+        for (int slot = 0; slot < config.tableSize; slot++)
+            table.placeCard(slot * 7, slot);
+        for (int card = config.deckSize - 1; card >= 0; card--)
+            if (card % 7 != 0 || card / 7 >= config.tableSize)
+                table.state.pushDeckCard(card);
+        table.placeToken(0, 2);
+        table.placeToken(1, 2);
+        table.placeToken(1, 5);
+        table.queueClaim(1);
+
+        players = new Player[config.players];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = mock(Player.class);
+            when(players[i].score()).thenReturn(10 * i + 3);
+            when(players[i].frozenUntil()).thenReturn(i == 0 ? 1500L : 0L);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        table.hints().terminate();
+    }
+
+    @Test
+    void restoresTheGameOfTheFile() throws IOException {
+        Path file = directory.resolve("game.checkpoint");
+        Checkpoint.capture(table, players, 42_000, 1000).write(file);
+        Checkpoint checkpoint = Checkpoint.read(file);
+
+        assertEquals(42_000, checkpoint.timerMillis);
+        for (int i = 0; i < players.length; i++)
+            assertEquals(10 * i + 3, checkpoint.score(i));
+        assertEquals(500, checkpoint.freezeMillis(0));
+        assertEquals(0, checkpoint.freezeMillis(1));
+
+        Table restored = new Table(env, checkpoint.state(env.config));
+        try {
+            for (int slot = 0; slot < env.config.tableSize; slot++)
+                assertEquals(table.getCardfromSlot(slot), restored.getCardfromSlot(slot));
+            assertEquals(table.state.deckView(), restored.state.deckView());
+            assertTrue(restored.hasToken(0, 2));
+            assertTrue(restored.hasToken(1, 2));
+            assertTrue(restored.hasToken(1, 5));
+            assertFalse(restored.hasToken(0, 5));
+            assertFalse(restored.hasClaims()); // the players claim again
+        } finally {
+            restored.hints().terminate();
+        }
+        assertFalse(Files.exists(directory.resolve("game.checkpoint.tmp")));
+    }
+
+    @Test
+    void rejectsFilesThatAreNotCheckpoints() throws IOException {
+        Path file = directory.resolve("game.checkpoint");
+        Checkpoint.capture(table, players, 0, 0).write(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer version = ByteBuffer.allocate(Integer.BYTES).putInt(Checkpoint.VERSION + 1);
+            version.flip();
+            channel.write(version, Integer.BYTES);
+        }
+        assertThrows(IOException.class, () -> Checkpoint.read(file));
+
+        Files.write(file, new byte[]{1, 2, 3});
+        assertThrows(IOException.class, () -> Checkpoint.read(file));
+    }
+
+    @Test
+    void rejectsAGameOfOtherDimensions() throws IOException {
+        Path file = directory.resolve("game.checkpoint");
+        Checkpoint.capture(table, players, 0, 0).write(file);
+        Properties properties = new Properties();
+        properties.put("ComputerPlayers", "1");
+        Config other = new Config(env.logger, properties);
+
+        Checkpoint checkpoint = Checkpoint.read(file);
+        assertThrows(IllegalArgumentException.class, () -> checkpoint.state(other));
+    }
+}
@@ -0,0 +1,68 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class DealerTest {
+
+    private GameState state;
+    private Table table;
+    private Dealer dealer;
+    private boolean cardInTheDeck;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("TableDelaySeconds", "0");
+        properties.put("Hints", "False");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        Env env = new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config));
+        state = GameState.create(config);
+        table = new Table(env, state) {
+            @Override
+            public int removeCard(int slot, int[] players) {
+                for (int i = 0; i < state.deckCount(); i++)
+                    if (state.deckCard(i) == state.card(slot))
+                        cardInTheDeck = true;
+                return super.removeCard(slot, players);
+            }
+        };
+        Player[] players = new Player[config.players];
+        dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        table.hints().terminate();
+    }
+
+    @Test
+    void removeAllCardsFromTable_TakesEveryCardOffTheTableBeforeReturningItToTheDeck() {
+        int deck = state.deckCount();
+        int[] cards = new int[5];
+        for (int slot = 0; slot < cards.length; slot++) {
+            cards[slot] = state.removeDeckCard(0);
+            table.placeCard(cards[slot], slot);
+        }
+
+        dealer.removeAllCardsFromTable();
+
+        assertFalse(cardInTheDeck);
+        assertEquals(0, table.countCards());
+        assertEquals(deck, state.deckCount());
+        for (int i = 0; i < cards.length; i++)
+            assertEquals(cards[i], state.deckCard(deck - cards.length + i));
+    }
+}
@@ -0,0 +1,127 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DealingPolicyTest {
+
+    private Env env;
+    private Table table;
+    private DealingPolicy policy;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("TableDelaySeconds", "0");
+        properties.put("DealWindow", "4");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        env = new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config));
+        table = new Table(env);
+        policy = DealingPolicy.create(DealingPolicy.SET_AWARE, env);
+    }
+
+    @AfterEach
+    void tearDown() {
+        table.hints().terminate();
+    }
+
+    /**
+     * @return - the card completing two cards to a set.
+     */
+    private int third(int a, int b) {
+        for (int card = 0; card < env.config.deckSize; card++)
+            if (card != a && card != b && env.util.testSet(new int[]{a, b, card}))
+                return card;
+        throw new AssertionError();
+    }
+
+    /**
+     * @return - the cards on the table.
+     */
+    private List<Integer> tableCards() {
+        List<Integer> cards = new ArrayList<>();
+        for (int slot = 0; slot < env.config.tableSize; slot++)
+            if (table.getCardfromSlot(slot) != -1) cards.add(table.getCardfromSlot(slot));
+        return cards;
+    }
+
+    /**
+     * @return - true iff a card of the deck completes a set with the cards on the table.
+     */
+    private boolean deckCompletesASet() {
+        List<Integer> cards = tableCards();
+        int live = env.util.findSets(cards, Integer.MAX_VALUE).size();
+        for (int i = 0; i < table.state.deckCount(); i++) {
+            cards.add(table.state.deckCard(i));
+            if (env.util.findSets(cards, Integer.MAX_VALUE).size() > live) return true;
+            cards.remove(cards.size() - 1);
+        }
+        return false;
+    }
+
+    /**
+     * Deals the card the policy chooses into a slot, and asserts the invariant of the policy: after the deal the table
+     * has the target number of live sets, or no card of the deck could have completed one.
+     */
+    private void dealAndAssertTheInvariant(DealingPolicy policy, int slot) {
+        boolean completable = deckCompletesASet();
+        table.placeCard(table.state.removeDeckCard(policy.next(table, table.state)), slot);
+        int live = env.util.findSets(tableCards(), env.config.dealTargetSets).size();
+        assertTrue(live >= env.config.dealTargetSets || !completable, "no set on " + tableCards());
+    }
+
+    @Test
+    void dealsACardCompletingASetWhenTheTableHasNone() {
+        table.placeCard(0, 0);
+        table.placeCard(1, 1);
+        int third = third(0, 1);
+        for (int card = 2; table.state.deckCount() < 3; card++)
+            if (card != third) table.state.pushDeckCard(card); // completes nothing with the two cards on the table
+        table.state.pushDeckCard(third);
+
+        assertEquals(3, policy.next(table, table.state));
+
+        dealAndAssertTheInvariant(policy, 2);
+    }
+
+    @Test
+    void keepsTheInvariantWhileFillingTheTable() {
+        Properties properties = new Properties();
+        properties.put("TableDelaySeconds", "0");
+        properties.put("DealWindow", "81"); // the whole deck
+        Config config = new Config(env.logger, properties);
+        DealingPolicy policy = DealingPolicy.create(DealingPolicy.SET_AWARE,
+                new Env(env.logger, config, env.ui, new UtilImpl(config)));
+        for (int card = 0; card < env.config.deckSize; card++)
+            table.state.pushDeckCard(card);
+        table.state.shuffleDeck(new Random(7));
+
+        for (int slot = 0; slot < env.config.tableSize; slot++)
+            dealAndAssertTheInvariant(policy, slot);
+    }
+
+    @Test
+    void dealsFromTheTopWhileTheTableHasASet() {
+        table.placeCard(0, 0);
+        table.placeCard(1, 1);
+        table.placeCard(third(0, 1), 2);
+        for (int card : new int[]{5, 6, third(5, 6), 7})
+            table.state.pushDeckCard(card);
+
+        assertEquals(0, policy.next(table, table.state));
+        assertEquals(0, DealingPolicy.create(DealingPolicy.BLIND, env).next(table, table.state));
+    }
+}
@@ -0,0 +1,72 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameStateTest {
+
+    @Test
+    void removingACardRemovesItsTokens() {
+        GameState state = new GameState(12, 81, 70, true); // more players than a token word
+        state.placeCard(40, 3);
+        assertTrue(state.setToken(3, 1));
+        assertTrue(state.setToken(3, 65));
+        assertFalse(state.setToken(3, 65));
+
+        int[] players = new int[70];
+        assertEquals(2, state.playersWithToken(3, players));
+        assertArrayEquals(new int[]{1, 65}, new int[]{players[0], players[1]});
+
+        int version = state.version();
+        assertEquals(40, state.removeCard(3));
+        assertEquals(GameState.NONE, state.slot(40));
+        assertFalse(state.hasToken(3, 65));
+        assertEquals(version + 1, state.version());
+        assertEquals(GameState.NONE, state.removeCard(3));
+    }
+
+    @Test
+    void deckShufflesLikeCollections() {
+        GameState state = new GameState(12, 81, 2, false);
+        List<Integer> expected = new ArrayList<>();
+        for (int card = 0; card < 81; card++) {
+            state.pushDeckCard(card);
+            expected.add(card);
+        }
+        state.shuffleDeck(new Random(7));
+        Collections.shuffle(expected, new Random(7));
+        assertEquals(expected, state.deckView());
+
+        assertEquals((int) expected.remove(0), state.removeDeckCard(0));
+        assertEquals(expected, state.deckView());
+    }
+
+    @Test
+    void claimsAreCheckedInOrder() {
+        GameState state = new GameState(12, 81, 3, false);
+        for (int round = 0; round < 3; round++) { // around the ring
+            assertTrue(state.queueClaim(2));
+            assertTrue(state.queueClaim(0));
+            assertTrue(state.queueClaim(1));
+            assertFalse(state.queueClaim(1));
+            assertEquals(2, state.takeClaim());
+            assertEquals(0, state.takeClaim());
+            assertEquals(1, state.takeClaim());
+            assertEquals(GameState.NONE, state.takeClaim());
+        }
+    }
+
+    @Test
+    void stateIsCompact() {
+        assertTrue(new GameState(12, 81, 2, false).bytes() < 1024);
+    }
+}
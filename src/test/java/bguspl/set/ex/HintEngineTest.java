@@ -0,0 +1,119 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HintEngineTest {
+
+    private Env env;
+    private Table table;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("TableDelaySeconds", "0");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        env = new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config));
+        table = new Table(env);
+        for (int slot = 0; slot < config.tableSize; slot++)
+            table.placeCard(slot * 5, slot);
+    }
+
+    @AfterEach
+    void tearDown() {
+        table.hints().terminate();
+    }
+
+    private HintEngine.Hints awaitCurrent() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (table.hints().current() == null && System.currentTimeMillis() < deadline)
+            Thread.sleep(1);
+        return table.hints().current();
+    }
+
+    @Test
+    void findsEverySetOfTheTableAsSlotMasks() throws InterruptedException {
+        table.hints().request();
+        HintEngine.Hints hints = awaitCurrent();
+
+        assertNotNull(hints);
+        assertEquals(table.version(), hints.version);
+        Set<List<Integer>> expected = new HashSet<>();
+        int size = env.config.tableSize;
+        for (int a = 0; a < size; a++)
+            for (int b = a + 1; b < size; b++)
+                for (int c = b + 1; c < size; c++)
+                    if (env.util.testSet(new int[]{a * 5, b * 5, c * 5}))
+                        expected.add(Arrays.asList(a, b, c));
+        Set<List<Integer>> found = new HashSet<>();
+        for (int i = 0; i < hints.count(); i++)
+            found.add(Arrays.asList(hints.slot(i, 0), hints.slot(i, 1), hints.slot(i, 2)));
+        assertTrue(!expected.isEmpty());
+        assertEquals(expected, found);
+    }
+
+    @Test
+    void hintsAreStaleOnceTheTableChanges() throws InterruptedException {
+        table.hints().request();
+        HintEngine.Hints hints = awaitCurrent();
+        assertNotNull(hints);
+
+        table.removeCard(0, new int[env.config.players]);
+        assertNull(table.hints().current());
+        assertEquals(hints, table.hints().latest());
+
+        table.hints().request();
+        hints = awaitCurrent();
+        assertNotNull(hints);
+        for (int i = 0; i < hints.count(); i++)
+            assertTrue(hints.slot(i, 0) > 0);
+    }
+
+    @Test
+    void theShutdownOfTheGameStopsTheWorker() throws InterruptedException {
+        table.hints().request();
+        assertNotNull(awaitCurrent());
+        assertEquals(1, env.shutdown.running().size());
+
+        assertTrue(env.shutdown.shutdown().isEmpty());
+        assertTrue(env.shutdown.running().isEmpty());
+    }
+
+    @Test
+    void findsTheSetsOfTablesLargerThanALong() throws InterruptedException {
+        table.hints().terminate();
+        Properties properties = new Properties();
+        properties.put("Rows", "9");
+        properties.put("Columns", "9");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        env = new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config));
+        table = new Table(env);
+        for (int slot = 0; slot < config.tableSize; slot++)
+            table.placeCard(slot, slot);
+
+        table.hints().request();
+        HintEngine.Hints hints = awaitCurrent();
+
+        assertNotNull(hints);
+        assertEquals(81 * 80 / 6, hints.count()); // every pair of cards is in exactly one set
+        for (int i = 0; i < hints.count(); i++)
+            assertTrue(env.util.testSet(hints.slots(i))); // card i is in slot i
+    }
+}
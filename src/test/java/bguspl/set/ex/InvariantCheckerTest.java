@@ -0,0 +1,100 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class InvariantCheckerTest {
+
+    private Table table;
+    private Player[] players;
+    private InvariantChecker invariants;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("TableDelaySeconds", "0");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        Env env = new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config));
+        table = new Table(env);
+        players = new Player[config.players];
+        for (int i = 0; i < players.length; i++)
+            players[i] = mock(Player.class);
+        for (int slot = 0; slot < config.tableSize; slot++)
+            table.placeCard(slot, slot);
+        for (int card = config.tableSize; card < config.deckSize; card++)
+            table.state.pushDeckCard(card);
+        invariants = new InvariantChecker(env, table, players, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        table.hints().terminate();
+    }
+
+    @Test
+    void aConsistentGamePasses() {
+        table.placeToken(0, 1);
+        table.placeToken(0, 2);
+        table.placeToken(1, 2);
+        when(players[0].getCounter()).thenReturn(2);
+        when(players[1].getCounter()).thenReturn(1);
+        table.queueClaim(0);
+
+        assertEquals(0, invariants.check(true).size());
+    }
+
+    @Test
+    void findsACounterThatKeepsDisagreeingWithTheTable() throws InterruptedException {
+        table.placeToken(0, 1);
+        assertEquals(0, invariants.check(false).size()); // first seen (the player may be about to count it)
+        Thread.sleep(5);
+
+        List<String> violations = invariants.check(false);
+        assertEquals(1, violations.size());
+        assertTrue(violations.get(0).contains("player 0 counts 0 tokens but has 1"), violations.toString());
+    }
+
+    @Test
+    void findsACardThatIsBothOnTheTableAndInTheDeck() {
+        table.state.pushDeckCard(3);
+
+        assertEquals(0, invariants.check(false).size()); // the deck is the dealer's while the game runs
+        List<String> violations = invariants.check(true);
+        assertEquals(1, violations.size());
+        assertTrue(violations.get(0).contains("deck card 3"), violations.toString());
+    }
+
+    @Test
+    void findsAClaimThatIsNeverTaken() throws InterruptedException {
+        table.queueClaim(1);
+        assertEquals(0, invariants.check(false).size()); // first seen
+        Thread.sleep(5);
+
+        List<String> violations = invariants.check(false);
+        assertEquals(1, violations.size());
+        assertTrue(violations.get(0).contains("lost"), violations.toString());
+    }
+
+    @Test
+    void findsTooManyTokens() {
+        for (int slot = 0; slot < 4; slot++)
+            table.placeToken(1, slot);
+
+        List<String> violations = invariants.check(false);
+        assertEquals(1, violations.size());
+        assertTrue(violations.get(0).contains("player 1 has 4 tokens"), violations.toString());
+    }
+}
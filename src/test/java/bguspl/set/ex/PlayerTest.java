@@ -52,6 +52,19 @@ class PlayerTest {
         assertInvariants();
     }
 
+    @Test
+    void handleKey_CountsTheTokensTheTablePlaced() {
+        when(table.placeToken(player.id, 3)).thenReturn(true);
+        player.handleKey(3);
+        player.handleKey(4); // the dealer removed the card meanwhile
+        assertEquals(1, player.getCounter());
+
+        when(table.hasToken(player.id, 3)).thenReturn(true);
+        when(table.removeToken(player.id, 3)).thenReturn(true);
+        player.handleKey(3);
+        assertEquals(0, player.getCounter());
+    }
+
     @Test
     void point() {
 
@@ -12,12 +12,14 @@ import java.util.Properties;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TableTest {
 
     Table table;
-    private Integer[] slotToCard;
-    private Integer[] cardToSlot;
+    private GameState state;
+    private Config config;
 
     @BeforeEach
     void setUp() {
@@ -31,35 +33,31 @@ class TableTest {
         properties.put("PlayerKeys1", "81,87,69,82");
         properties.put("PlayerKeys2", "85,73,79,80");
         MockLogger logger = new MockLogger();
-        Config config = new Config(logger, properties);
-        slotToCard = new Integer[config.tableSize];
-        cardToSlot = new Integer[config.deckSize];
+        config = new Config(logger, properties);
+        state = GameState.create(config);
 
         Env env = new Env(logger, config, new MockUserInterface(), new MockUtil());
-        table = new Table(env, slotToCard, cardToSlot);
+        table = new Table(env, state);
     }
 
     private int fillSomeSlots() {
-        slotToCard[1] = 3;
-        slotToCard[2] = 5;
-        cardToSlot[3] = 1;
-        cardToSlot[5] = 2;
+        state.placeCard(3, 1);
+        state.placeCard(5, 2);
 
         return 2;
     }
 
     private void fillAllSlots() {
-        for (int i = 0; i < slotToCard.length; ++i) {
-            slotToCard[i] = i;
-            cardToSlot[i] = i;
+        for (int i = 0; i < config.tableSize; ++i) {
+            state.placeCard(i, i);
         }
     }
 
     private void placeSomeCardsAndAssert() throws InterruptedException {
         table.placeCard(8, 2);
 
-        assertEquals(8, (int) slotToCard[2]);
-        assertEquals(2, (int) cardToSlot[8]);
+        assertEquals(8, state.card(2));
+        assertEquals(2, state.slot(8));
     }
 
     @Test
@@ -79,7 +77,7 @@ class TableTest {
     void countCards_AllSlotsAreFilled() {
 
         fillAllSlots();
-        assertEquals(slotToCard.length, table.countCards());
+        assertEquals(config.tableSize, table.countCards());
     }
 
     @Test
@@ -95,6 +93,47 @@ class TableTest {
         placeSomeCardsAndAssert();
     }
 
+    @Test
+    void removeCard_TellsWhoseTokensWentWithIt() {
+        fillSomeSlots();
+        assertTrue(table.placeToken(0, 1));
+        assertTrue(table.placeToken(0, 2));
+        assertTrue(table.placeToken(1, 2));
+        assertFalse(table.placeToken(1, 2)); // already there
+
+        int[] players = new int[config.players];
+        assertEquals(2, table.removeCard(2, players)); // with the tokens of both players on it
+        assertEquals(0, players[0]);
+        assertEquals(1, players[1]);
+        assertFalse(table.placeToken(0, 2)); // no card
+        assertTrue(table.hasToken(0, 1));
+    }
+
+    @Test
+    void queueClaim_FailsWhenTheQueueIsFull() {
+        for (int player = 0; player < config.players; player++)
+            assertTrue(table.queueClaim(player));
+        assertFalse(table.queueClaim(0));
+        assertEquals(0, table.takeClaim());
+    }
+
+    @Test
+    void placeAndRemoveCard_DoNotWaitForTheAnimation() {
+        Properties properties = new Properties();
+        properties.put("TableDelaySeconds", "10");
+        MockLogger logger = new MockLogger();
+        Config config = new Config(logger, properties);
+        Table table = new Table(new Env(logger, config, new MockUserInterface(), new MockUtil()));
+
+        long start = System.currentTimeMillis();
+        table.placeCard(8, 2);
+        table.removeCard(2, new int[config.players]);
+
+        assertTrue(System.currentTimeMillis() - start < config.tableDelayMillis);
+        assertEquals(0, table.countCards());
+        table.hints().terminate();
+    }
+
     static class MockUserInterface implements UserInterface {
         @Override
         public void dispose() {